@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonException;
+import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonStructure;
+import com.baasbox.android.test.common.JsonFixtures;
+import com.baasbox.android.test.common.TestBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.Arrays;
+
+/**
+ * Checks the compact binary encoding of json structures.
+ */
+public class BinaryJsonTest extends TestBase {
+
+    public void testRoundTrip() throws Exception {
+        JsonObject expected = JsonObject.decode(JsonFixtures.listResponse(50));
+        assertEquals(expected, JsonStructure.decodeBinary(expected.encodeBinary()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        expected.encodeBinary(out, false);
+        assertEquals(expected, JsonStructure.decodeBinary(new ByteArrayInputStream(out.toByteArray())));
+        assertTrue(expected.encodeBinary().length < out.size());
+    }
+
+    public void testNumbersKeepTheirType() throws Exception {
+        JsonArray numbers = new JsonArray().add(Long.MIN_VALUE).add(-1).add(0).add(1.0).add(Double.MAX_VALUE);
+        JsonArray decoded = (JsonArray) JsonStructure.decodeBinary(numbers.encodeBinary());
+        assertEquals(Long.valueOf(Long.MIN_VALUE), decoded.getLong(0));
+        assertEquals(Long.valueOf(-1), decoded.getLong(1));
+        assertEquals(Double.valueOf(1.0), decoded.getDouble(3));
+        assertEquals(numbers.toString(), decoded.toString());
+    }
+
+    public void testBinaryValues() throws Exception {
+        byte[] payload = new byte[]{0, 1, 2, (byte) 0xff};
+        JsonObject o = new JsonObject().put("payload", payload);
+        JsonObject decoded = (JsonObject) JsonStructure.decodeBinary(o.encodeBinary());
+        assertEquals(o.toString(), decoded.toString());
+    }
+
+    public void testReportsTruncatedContent() throws Exception {
+        byte[] bytes = JsonObject.decode(JsonFixtures.listResponse(5)).encodeBinary();
+        try {
+            JsonStructure.decodeBinary(Arrays.copyOf(bytes, bytes.length - 1));
+            fail();
+        } catch (JsonException e) {
+            // expected
+        }
+    }
+
+    public void testRejectsLengthsPastTheEnd() throws Exception {
+        // an array holding a binary value that claims Integer.MAX_VALUE bytes
+        byte[] bytes = {'B', 'J', 1, 0, 8, 1, 6, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 7};
+        try {
+            JsonStructure.decodeBinary(bytes);
+            fail();
+        } catch (JsonException e) {
+            // expected
+        }
+        try {
+            JsonStructure.decodeBinary(new ByteArrayInputStream(bytes));
+            fail();
+        } catch (EOFException e) {
+            // expected
+        }
+    }
+}
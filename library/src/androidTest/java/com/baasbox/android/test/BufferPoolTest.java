@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import com.baasbox.android.impl.BufferPool;
+import com.baasbox.android.impl.PooledBufferedInputStream;
+import com.baasbox.android.test.common.TestBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class BufferPoolTest extends TestBase {
+
+    @Override
+    protected void beforeTest() throws Exception {
+        super.beforeTest();
+        BufferPool.shared().clear();
+    }
+
+    public void testReleasedBuffersAreReused() {
+        BufferPool pool = BufferPool.shared();
+        BufferPool.Stats before = pool.stats();
+        byte[] first = pool.acquire(3000);
+        assertEquals(4096, first.length);
+        pool.release(first);
+        byte[] second = pool.acquire(4000);
+        assertSame(first, second);
+        pool.release(second);
+
+        BufferPool.Stats after = pool.stats();
+        assertEquals(1, after.misses - before.misses);
+        assertEquals(1, after.hits - before.hits);
+        assertEquals(4096, after.pooledBytes);
+    }
+
+    public void testOversizedBuffersAreNotRetained() {
+        BufferPool pool = BufferPool.shared();
+        BufferPool.Stats before = pool.stats();
+        byte[] big = pool.acquire(1024 * 1024);
+        assertEquals(1024 * 1024, big.length);
+        pool.release(big);
+        BufferPool.Stats after = pool.stats();
+        assertEquals(1, after.dropped - before.dropped);
+        assertEquals(0, after.pooledBytes);
+    }
+
+    public void testPooledStreamReadsEverything() throws Exception {
+        byte[] content = new byte[20000];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+        PooledBufferedInputStream in = new PooledBufferedInputStream(new ByteArrayInputStream(content));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(in.read());
+        byte[] chunk = new byte[1000];
+        int read;
+        while ((read = in.read(chunk, 0, chunk.length)) != -1) {
+            out.write(chunk, 0, read);
+        }
+        in.close();
+        assertTrue(Arrays.equals(content, out.toByteArray()));
+        assertTrue(BufferPool.shared().stats().pooledBytes > 0);
+    }
+}
@@ -318,6 +318,45 @@ public class DocumentsTest extends BaasTestBase{
         }
     }
 
+    public void testSavesOnlyChangedFields(){
+        BaasDocument doc =new  BaasDocument(testColl).put("counter", 1).put("title", "title");
+        assertTrue(doc.saveSync().isSuccess());
+
+        doc.put("counter", 2);
+        BaasResult<BaasDocument> saved = doc.saveSync(SaveMode.CHANGED_FIELDS);
+        assertTrue(saved.isSuccess());
+        assertFalse(doc.isDirty());
+        try {
+            BaasDocument d = BaasDocument.fetch(testColl, doc.getId(), BaasHandler.NOOP).<BaasDocument>await().get();
+            assertEquals(2L, d.getLong("counter", 0));
+            assertEquals("title", d.getString("title"));
+            assertEquals(doc.getVersion(), d.getVersion());
+        } catch (BaasException e) {
+            fail();
+        }
+    }
+
+    public void testChangedFieldsChecksVersion(){
+        BaasDocument doc =new  BaasDocument(testColl).put("counter", 1).put("title", "title");
+        assertTrue(doc.saveSync().isSuccess());
+
+        try {
+            BaasDocument d = BaasDocument.fetch(testColl, doc.getId(), BaasHandler.NOOP).<BaasDocument>await().get();
+            d.put("counter", 5);
+            assertTrue(d.saveSync(SaveMode.IGNORE_VERSION).isSuccess());
+
+            BaasResult<BaasDocument> failedDoc = doc.put("counter", 2).saveSync(SaveMode.CHANGED_FIELDS);
+            assertTrue(failedDoc.isFailed());
+            assertEquals(BaasClientException.class,failedDoc.error().getClass());
+
+            failedDoc = doc.put("counter", 3).put("title", "other").saveSync(SaveMode.CHANGED_FIELDS);
+            assertTrue(failedDoc.isFailed());
+            assertEquals(BaasClientException.class,failedDoc.error().getClass());
+        } catch (BaasException e) {
+            fail();
+        }
+    }
+
     public void testCannotRefreshUnboundDocument(){
         BaasDocument doc = new BaasDocument("coll");
         boolean hasThrown = false;
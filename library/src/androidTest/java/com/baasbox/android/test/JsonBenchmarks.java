@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import android.os.Parcel;
+import android.util.Log;
+import com.baasbox.android.BaasDocument;
+import com.baasbox.android.impl.ParallelExecutor;
+import com.baasbox.android.json.ArraySlices;
+import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonStructure;
+import com.baasbox.android.test.common.JsonFixtures;
+import com.baasbox.android.test.common.TestBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timings of the json codecs on list responses, logged under the <code>JsonBenchmarks</code> tag.
+ * <p>
+ * The methods are not named as tests, so they are left out of the test run;
+ * run them one at a time with
+ * <code>adb shell am instrument -w -e class com.baasbox.android.test.JsonBenchmarks#benchmarkReaders &lt;test package&gt;/android.test.InstrumentationTestRunner</code>.
+ * </p>
+ */
+public class JsonBenchmarks extends TestBase {
+    private static final String TAG = "JsonBenchmarks";
+    private static final int WARM_UP = 3;
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    /**
+     * Returns the microseconds taken by <code>rounds</code> runs of <code>body</code>, after a warm up.
+     */
+    private static long time(int rounds, Body body) throws Exception {
+        for (int i = 0; i < WARM_UP; i++) {
+            body.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            body.run();
+        }
+        return (System.nanoTime() - start) / 1000;
+    }
+
+    private static void report(String format, Object... args) {
+        Log.d(TAG, String.format(format, args));
+    }
+
+    public void benchmarkReaders() throws Exception {
+        final byte[] bytes = JsonFixtures.listResponse(500).getBytes("UTF-8");
+        long chars = time(20, new Body() {
+            @Override
+            public void run() throws Exception {
+                JsonObject.decode(new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8"));
+            }
+        });
+        long utf8 = time(20, new Body() {
+            @Override
+            public void run() {
+                JsonObject.decode(new ByteArrayInputStream(bytes));
+            }
+        });
+        report("%d bytes x 20: reader %d us, utf8 %d us", bytes.length, chars, utf8);
+    }
+
+    public void benchmarkBinaryCodec() throws Exception {
+        final JsonObject json = JsonObject.decode(JsonFixtures.listResponse(500));
+        final byte[] text = json.encodeBytes();
+        final byte[] binary = json.encodeBinary();
+        long textDecode = time(20, new Body() {
+            @Override
+            public void run() {
+                JsonObject.decode(text);
+            }
+        });
+        long binaryDecode = time(20, new Body() {
+            @Override
+            public void run() {
+                JsonStructure.decodeBinary(binary);
+            }
+        });
+        long textEncode = time(20, new Body() {
+            @Override
+            public void run() {
+                json.encodeBytes();
+            }
+        });
+        long binaryEncode = time(20, new Body() {
+            @Override
+            public void run() {
+                json.encodeBinary();
+            }
+        });
+        report("text %d bytes, binary %d bytes x 20: decode text %d us, binary %d us; encode text %d us, binary %d us",
+                text.length, binary.length, textDecode, binaryDecode, textEncode, binaryEncode);
+    }
+
+    public void benchmarkParcel() throws Exception {
+        final List<BaasDocument> docs = JsonFixtures.documents(1000);
+        final int[] sizes = new int[2];
+        long parcel = time(10, new Body() {
+            @Override
+            public void run() {
+                Parcel p = Parcel.obtain();
+                p.writeTypedList(docs);
+                sizes[0] = p.dataSize();
+                p.setDataPosition(0);
+                p.createTypedArrayList(BaasDocument.CREATOR);
+                p.recycle();
+            }
+        });
+        long text = time(10, new Body() {
+            @Override
+            public void run() {
+                Parcel p = Parcel.obtain();
+                p.writeInt(docs.size());
+                for (BaasDocument d : docs) {
+                    p.writeString(d.toJson().toString());
+                }
+                sizes[1] = p.dataSize();
+                p.setDataPosition(0);
+                int n = p.readInt();
+                List<BaasDocument> out = new ArrayList<BaasDocument>(n);
+                for (int i = 0; i < n; i++) {
+                    out.add(BaasDocument.from(JsonObject.decode(p.readString())));
+                }
+                p.recycle();
+            }
+        });
+        report("%d documents x 10: parcel %d bytes %d us, text %d bytes %d us",
+                docs.size(), sizes[0], parcel, sizes[1], text);
+    }
+
+    public void benchmarkParallelDecode() throws Exception {
+        final byte[] bytes = JsonFixtures.listResponse(5000).getBytes("UTF-8");
+        int cores = ParallelExecutor.shared().maxParallelism();
+        long sequential = 0;
+        for (int threads = 1; threads <= cores; threads++) {
+            final int parallelism = threads;
+            long elapsed = time(5, new Body() {
+                @Override
+                public void run() throws Exception {
+                    ParallelDecodeTest.decode(ArraySlices.of(bytes, "data"), parallelism);
+                }
+            });
+            if (threads == 1) {
+                sequential = elapsed;
+            }
+            report("%d bytes x 5 on %d cores: %d us, speedup %.2f",
+                    bytes.length, threads, elapsed, (double) sequential / elapsed);
+        }
+    }
+
+    public void benchmarkAllocations() throws Exception {
+        JsonContextTest.Call[] calls = JsonContextTest.calls();
+        for (int i = 0; i < calls.length; i++) {
+            long[] bytes = JsonContextTest.measure(calls[i], 1000);
+            report("%s: first call %d bytes, reused %d bytes", JsonContextTest.NAMES[i], bytes[0], bytes[1]);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import android.os.Debug;
+import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.test.common.TestBase;
+
+import java.io.StringReader;
+
+/**
+ * Checks that json readers and writers reusing the per thread context give the same results,
+ * and allocate less than the first call of a thread, which builds the context.
+ */
+public class JsonContextTest extends TestBase {
+    private static final int ROUNDS = 100;
+    static final String[] NAMES = {"decode string", "decode bytes", "encode", "encode bytes"};
+
+    private static final JsonObject BODY = new JsonObject()
+            .put("username", "jdoe")
+            .put("password", "secret")
+            .put("appcode", "1234567890");
+
+    interface Call {
+        Object run() throws Exception;
+    }
+
+    static Call[] calls() throws Exception {
+        final String text = BODY.toString();
+        final byte[] bytes = text.getBytes("UTF-8");
+        return new Call[]{
+                new Call() {
+                    @Override
+                    public Object run() {
+                        return JsonObject.decode(text);
+                    }
+                },
+                new Call() {
+                    @Override
+                    public Object run() {
+                        return JsonObject.decode(bytes);
+                    }
+                },
+                new Call() {
+                    @Override
+                    public Object run() {
+                        return BODY.encode();
+                    }
+                },
+                new Call() {
+                    @Override
+                    public Object run() {
+                        return BODY.encodeBytes();
+                    }
+                }
+        };
+    }
+
+    /**
+     * Returns the bytes allocated by the first call on a new thread, and the average of the following <code>rounds</code>.
+     */
+    static long[] measure(final Call call, final int rounds) throws Exception {
+        final long[] result = new long[2];
+        final Exception[] failure = new Exception[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                Debug.startAllocCounting();
+                try {
+                    long start = Debug.getThreadAllocSize();
+                    call.run();
+                    result[0] = Debug.getThreadAllocSize() - start;
+                    start = Debug.getThreadAllocSize();
+                    for (int i = 0; i < rounds; i++) {
+                        call.run();
+                    }
+                    result[1] = (Debug.getThreadAllocSize() - start) / rounds;
+                } catch (Exception e) {
+                    failure[0] = e;
+                } finally {
+                    Debug.stopAllocCounting();
+                }
+            }
+        };
+        t.start();
+        t.join();
+        if (failure[0] != null) throw failure[0];
+        return result;
+    }
+
+    public void testReusedContextsGiveTheSameResults() throws Exception {
+        JsonObject big = new JsonObject();
+        for (int i = 0; i < 100; i++) {
+            big.put("k" + i, new JsonArray().add("\u00E9 \"x" + i).add(i).add(new JsonObject().put("z", i * 1.5)));
+        }
+        String text = big.encode();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(text, big.encode());
+            assertEquals(big, JsonObject.decode(text));
+            assertEquals(big, JsonObject.decode(big.encodeBytes()));
+            assertEquals(big, JsonObject.decode(new StringReader(text)));
+        }
+    }
+
+    public void testReusedCallsAllocateLess() throws Exception {
+        Call[] calls = calls();
+        for (int i = 0; i < calls.length; i++) {
+            long[] bytes = measure(calls[i], ROUNDS);
+            assertTrue(NAMES[i] + " allocated " + bytes[1] + " bytes, first call " + bytes[0],
+                    bytes[1] < bytes[0]);
+        }
+    }
+}
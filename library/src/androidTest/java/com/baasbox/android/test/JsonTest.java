@@ -5,10 +5,26 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Bundle;
+import com.baasbox.android.DocumentReader;
+import com.baasbox.android.impl.Base64;
 import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonPath;
+import com.baasbox.android.json.KeyTable;
 import com.baasbox.android.test.common.BaasTestBase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
 /**
  * Created by Andrea Tortorella on 22/04/14.
  */
@@ -25,6 +41,240 @@ public class JsonTest extends BaasTestBase{
         assertEquals(j,o);
     }
 
+    public void testDecodeFromReader() throws Exception {
+        String text = "{\"data\":[{\"name\":\"caf\u00e9\",\"n\":1}],\"result\":\"ok\"}";
+        InputStream in = new ByteArrayInputStream(text.getBytes("UTF-8"));
+        JsonObject decoded = JsonObject.decode(new InputStreamReader(in, "UTF-8"));
+        assertEquals(JsonObject.decode(text), decoded);
+        assertEquals("caf\u00e9", decoded.getArray("data").getObject(0).getString("name"));
+    }
+
+    public void testDecodeLazily() throws Exception {
+        String text = "{\"data\":[{\"name\":\"caf\u00E9\",\"o\":{\"a\":[1,2.5,null]},\"q\":\"\\\"x\\\"\"}],\"result\":\"ok\"}";
+        JsonObject eager = JsonObject.decode(text);
+        JsonObject lazy = JsonObject.decodeLazily(text.getBytes("UTF-8"));
+        JsonObject copy = lazy.copy();
+        JsonObject doc = lazy.getArray("data").getObject(0);
+        assertEquals("caf\u00E9", doc.getString("name"));
+        doc.put("name", "changed");
+        assertEquals("changed", doc.getString("name"));
+        assertEquals(eager, copy);
+        assertEquals(eager.toString(), copy.toString());
+    }
+
+    public void testDecodeNumbers() throws Exception {
+        String text = "{\"l\":-42,\"d\":-2.5e-3,\"f\":0.1,\"big\":9223372036854775808,\"max\":9223372036854775807}";
+        JsonObject[] decoded = {JsonObject.decode(text), JsonObject.decode(text.getBytes("UTF-8"))};
+        for (JsonObject o : decoded) {
+            assertEquals(Long.valueOf(-42), o.get("l"));
+            assertEquals(Double.valueOf(-2.5e-3), o.get("d"));
+            assertEquals(Double.valueOf(0.1), o.get("f"));
+            assertEquals(Double.valueOf(9223372036854775808d), o.get("big"));
+            assertEquals(Long.valueOf(Long.MAX_VALUE), o.get("max"));
+        }
+    }
+
+    public void testCopiesAreIndependent() throws Exception {
+        JsonObject source = new JsonObject()
+                .put("name", "a")
+                .put("nested", new JsonObject().put("inner", new JsonObject().put("n", 1)))
+                .put("list", new JsonArray().add("x").add("y"));
+        JsonObject inner = source.getObject("nested").getObject("inner");
+        JsonArray list = source.getArray("list");
+        JsonObject copy = source.copy();
+        source.put("name", "b");
+        inner.put("n", 2);
+        list.add("z");
+        assertEquals("a", copy.getString("name"));
+        assertEquals(Long.valueOf(1), copy.getObject("nested").getObject("inner").getLong("n"));
+        assertEquals(2, copy.getArray("list").size());
+        copy.getArray("list").remove(0);
+        assertEquals(3, list.size());
+    }
+
+    public void testIteratorsOfSharedCopies() throws Exception {
+        JsonObject source = new JsonObject().put("a", 1).put("b", 2).put("c", 3);
+        JsonObject copy = source.copy();
+
+        Iterator<Map.Entry<String, Object>> it = copy.iterator();
+        it.next().setValue(10L);
+        it.next();
+        it.remove();
+        assertEquals(Long.valueOf(1), source.getLong("a"));
+        assertTrue(source.contains("b"));
+        assertEquals(Long.valueOf(10), copy.getLong("a"));
+        assertFalse(copy.contains("b"));
+
+        copy = source.copy();
+        Iterator<String> names = copy.fields().iterator();
+        names.next();
+        copy.put("d", 4);
+        names.remove();
+        assertTrue(source.contains("a"));
+        assertFalse(source.contains("d"));
+        assertFalse(copy.contains("a"));
+        assertTrue(copy.contains("d"));
+
+        copy = source.copy();
+        copy.fields().retainAll(Collections.singleton("c"));
+        assertEquals(3, source.size());
+        assertEquals(1, copy.size());
+    }
+
+    public void testEncodeUtf8() throws Exception {
+        JsonObject o = new JsonObject()
+                .put("text", "caf\u00e9 \"quoted\"\n\ud83d\ude00")
+                .put("list", new JsonArray().add(1).add(2.5).add(false));
+        byte[] expected = o.encode().getBytes("UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        o.encode(out);
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+        assertTrue(Arrays.equals(expected, o.encodeBytes()));
+        assertEquals(o, JsonObject.decode(o.encodeBytes()));
+    }
+
+    public void testSharedKeys() throws Exception {
+        KeyTable keys = KeyTable.shared();
+        keys.seedSystemFields();
+        String text = "{\"@rid\":\"#1:2\",\"customField\":1}";
+        long hits = keys.stats().hits;
+        JsonObject a = JsonObject.decode(text);
+        JsonObject b = JsonObject.decode(text.getBytes("UTF-8"));
+        assertSame(KeyTable.SYSTEM_FIELDS[0], a.fields().iterator().next());
+        assertSame(a.fields().toArray()[1], b.fields().toArray()[1]);
+        assertTrue(keys.stats().hits >= hits + 3);
+    }
+
+    public void testStreamedValuesAreNotShared() throws Exception {
+        KeyTable keys = KeyTable.shared();
+        JsonObject.decode(new ByteArrayInputStream("{\"values\":[]}".getBytes("UTF-8")));
+        StringBuilder text = new StringBuilder("{\"values\":[");
+        for (int i = 0; i < 50; i++) {
+            text.append(i == 0 ? "\"" : ",\"").append("streamed value ").append(i).append('"');
+        }
+        text.append("]}");
+        int size = keys.stats().size;
+        JsonObject o = JsonObject.decode(new ByteArrayInputStream(text.toString().getBytes("UTF-8")));
+        assertEquals("streamed value 49", o.getArray("values").getString(49));
+        assertEquals(size, keys.stats().size);
+    }
+
+    public void testObjectsKeepInsertionOrder() throws Exception {
+        JsonObject o = new JsonObject();
+        for (int i = 0; i < 40; i++) {
+            o.put("f" + (39 - i), i);
+            if (i == 5) o.remove("f36");
+        }
+        o.put("f39", "first");
+        String text = o.toString();
+        assertEquals(39, o.size());
+        assertTrue(text.startsWith("{\"f39\":\"first\",\"f38\":1,\"f37\":2,\"f35\":4"));
+        assertEquals(Long.valueOf(39), o.getLong("f0"));
+        assertEquals(o, JsonObject.decode(text));
+    }
+
+    public void testJsonPath() throws Exception {
+        String text = "{\"result\":\"ok\",\"data\":[{\"id\":\"1\",\"author\":{\"name\":\"a\"}},{\"id\":\"2\",\"author\":{\"name\":\"b\"}}]}";
+        JsonPath names = JsonPath.compile("$.data[*].author.name");
+        assertEquals(new JsonArray().add("a").add("b"), names.select(JsonObject.decode(text)));
+
+        JsonInput in = JsonInput.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "UTF-8");
+        assertEquals(new JsonArray().add("a").add("b"), names.select(in));
+        in.close();
+
+        in = JsonInput.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "UTF-8");
+        assertEquals("2", JsonPath.compile("$['data'][1].id").<String>selectFirst(in));
+        in.close();
+        assertNull(JsonPath.compile("$.data[5].id").selectFirst(JsonObject.decode(text)));
+    }
+
+    public void testJsonPathRepeatedNames() throws Exception {
+        String text = "{\"a\":{\"b\":1,\"c\":2,\"b\":3},\"d\":4,\"a\":{\"b\":5,\"b\":6}}";
+        String[] paths = {"$.a.b", "$.a.*", "$.*", "$.*.b"};
+        for (String p : paths) {
+            JsonPath path = JsonPath.compile(p);
+            JsonArray decoded = path.select(JsonObject.decode(text));
+            JsonInput in = JsonInput.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "UTF-8");
+            assertEquals(p, decoded, path.select(in));
+            in.close();
+            in = JsonInput.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "UTF-8");
+            assertEquals(p, decoded.<Object>get(0, null), path.<Object>selectFirst(in));
+            in.close();
+        }
+        assertEquals(new JsonArray().add(6), JsonPath.compile("$.a.b").select(JsonObject.decode(text)));
+    }
+
+    public void testDocumentReader() throws Exception {
+        String text = "{\"id\":\"a1\",\"@version\":3,\"title\":\"caf\u00e9\",\"tags\":[\"x\"]}";
+        DocumentReader<String[]> reader = new DocumentReader<String[]>() {
+            @Override
+            public String[] read(JsonInput in) throws IOException {
+                String[] doc = new String[2];
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if ("id".equals(name)) {
+                        doc[0] = in.nextString();
+                    } else if ("title".equals(name)) {
+                        doc[1] = in.nextString();
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                return doc;
+            }
+        };
+        JsonInput in = JsonInput.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "UTF-8");
+        String[] doc = reader.read(in);
+        in.close();
+        assertEquals("a1", doc[0]);
+        assertEquals("caf\u00e9", doc[1]);
+    }
+
+    public void testStreamingBase64() throws Exception {
+        byte[] data = new byte[10000];
+        new Random(7).nextBytes(data);
+        String encoded = Base64.encodeToString(data, Base64.NO_WRAP);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(data.length, Base64.encode(new ByteArrayInputStream(data), out, Base64.NO_WRAP));
+        assertEquals(encoded, new String(out.toByteArray(), "US-ASCII"));
+
+        out.reset();
+        Base64.decode(new ByteArrayInputStream(encoded.getBytes("US-ASCII")), out, Base64.NO_WRAP);
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+
+        String text = "{\"blob\":\"" + encoded + "\"}";
+        JsonInput in = JsonInput.open(new ByteArrayInputStream(text.getBytes("UTF-8")), "UTF-8");
+        in.beginObject();
+        assertEquals("blob", in.nextName());
+        out.reset();
+        assertEquals(data.length, in.nextBinary(out));
+        in.endObject();
+        in.close();
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+    }
+
+    public void testStreamingEscapedBase64() throws Exception {
+        byte[] data = new byte[40000];
+        new Random(11).nextBytes(data);
+        String encoded = Base64.encodeToString(data, Base64.NO_WRAP).replace("/", "\\/");
+        String text = "{\"blob\":\"" + encoded + "\",\"next\":\"caf\u00e9\"}";
+        for (String charset : new String[]{"UTF-8", "ISO-8859-1"}) {
+            JsonInput in = JsonInput.open(new ByteArrayInputStream(text.getBytes(charset)), charset);
+            in.beginObject();
+            assertEquals("blob", in.nextName());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(data.length, in.nextBinary(out));
+            assertTrue(Arrays.equals(data, out.toByteArray()));
+            assertEquals("next", in.nextName());
+            assertEquals("caf\u00e9", in.nextString());
+            in.endObject();
+            in.close();
+        }
+    }
+
     public void testIntentParcelability(){
         JsonObject o =new JsonObject().put("k", new JsonArray());
         Bundle b =new Bundle();
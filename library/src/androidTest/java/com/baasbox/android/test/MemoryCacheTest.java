@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import com.baasbox.android.impl.MemoryLruCache;
+import com.baasbox.android.test.common.TestBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the size bound, the eviction order and the demotion of dirty entries
+ * of the memory tier of the cache.
+ */
+public class MemoryCacheTest extends TestBase {
+
+    public void testEvictsLeastRecentlyUsedAndDemotesDirtyEntries() {
+        final List<String> demoted = new ArrayList<String>();
+        MemoryLruCache cache = new MemoryLruCache(100, 40) {
+            @Override
+            protected void entryEvicted(String key, byte[] data, boolean dirty) {
+                if (dirty) demoted.add(key);
+            }
+        };
+        assertTrue(cache.put("a", new byte[30], true));
+        assertTrue(cache.put("b", new byte[30], false));
+        assertTrue(cache.put("c", new byte[30], false));
+        assertNotNull(cache.get("a"));
+
+        cache.put("d", new byte[30], false);
+        assertNull(cache.get("b"));
+        cache.put("e", new byte[30], false);
+        cache.put("f", new byte[30], false);
+        assertNull(cache.get("a"));
+
+        assertEquals(1, demoted.size());
+        assertEquals("a", demoted.get(0));
+        assertEquals(90, cache.size());
+        assertEquals(3, cache.evictionCount());
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    public void testRejectsEntriesLargerThanTheirShare() {
+        MemoryLruCache cache = new MemoryLruCache(100, 40);
+        cache.put("a", new byte[10], false);
+        assertFalse(cache.put("a", new byte[41], false));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+
+        MemoryLruCache disabled = new MemoryLruCache(0, 0);
+        assertFalse(disabled.put("a", new byte[0], false));
+    }
+}
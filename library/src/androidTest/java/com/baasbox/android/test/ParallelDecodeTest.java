@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import com.baasbox.android.BaasDocument;
+import com.baasbox.android.impl.ParallelExecutor;
+import com.baasbox.android.json.ArraySlices;
+import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonInput;
+import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.test.common.JsonFixtures;
+import com.baasbox.android.test.common.TestBase;
+
+import java.io.IOException;
+
+/**
+ * Checks that list responses split in slices and decoded on more than one core
+ * give the documents of a sequential decode, in order.
+ */
+public class ParallelDecodeTest extends TestBase {
+
+    static BaasDocument[] decode(final ArraySlices slices, int parallelism) throws IOException {
+        final BaasDocument[] docs = new BaasDocument[slices.size()];
+        ParallelExecutor.shared().forEach(docs.length, parallelism, new ParallelExecutor.Work() {
+            @Override
+            public void run(int from, int to) throws IOException {
+                for (int i = from; i < to; i++) {
+                    JsonInput in = slices.open(i);
+                    try {
+                        docs[i] = BaasDocument.from(JsonObject.decode(in));
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+        });
+        return docs;
+    }
+
+    public void testSlicesMatchSequentialDecode() throws Exception {
+        byte[] bytes = JsonFixtures.listResponse(200).getBytes("UTF-8");
+        JsonArray expected = JsonObject.decode(bytes).getArray("data");
+        ArraySlices slices = ArraySlices.of(bytes, "data");
+        assertNotNull(slices);
+        assertEquals(expected.size(), slices.size());
+        BaasDocument[] docs = decode(slices, ParallelExecutor.shared().maxParallelism());
+        for (int i = 0; i < docs.length; i++) {
+            assertEquals(BaasDocument.from(expected.getObject(i)).toJson(), docs[i].toJson());
+        }
+        assertNull(ArraySlices.of(bytes, "missing"));
+        assertNull(ArraySlices.of(bytes, "result"));
+    }
+}
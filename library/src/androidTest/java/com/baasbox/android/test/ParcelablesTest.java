@@ -22,8 +22,12 @@ import android.os.Parcel;
 import com.baasbox.android.BaasDocument;
 import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.test.common.JsonFixtures;
 import com.baasbox.android.test.common.TestBase;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by Andrea Tortorella on 25/07/14.
  */
@@ -45,6 +49,25 @@ public class ParcelablesTest extends TestBase {
         assertEquals(o.toString(),backObj.toString());
     }
 
+    public void testParcelKeepsValueTypes(){
+        JsonObject o = new JsonObject()
+                .put("l", 42)
+                .put("d", 4.5)
+                .put("b", true)
+                .putNull("n")
+                .put("nested", new JsonArray().add(new JsonObject().put("l", 1)).add(new JsonObject().put("l", 2)));
+        Parcel p = Parcel.obtain();
+        o.writeToParcel(p, 0);
+        p.setDataPosition(0);
+        JsonObject back = JsonObject.CREATOR.createFromParcel(p);
+        p.recycle();
+        assertEquals(Long.valueOf(42), back.getLong("l"));
+        assertEquals(Double.valueOf(4.5), back.getDouble("d"));
+        assertEquals(Boolean.TRUE, back.getBoolean("b"));
+        assertTrue(back.isNull("n"));
+        assertEquals(o.toString(), back.toString());
+    }
+
     public void testCanParcelDocuments(){
         BaasDocument doc = new BaasDocument("fake");
         doc.put("Key", "Val1");
@@ -66,4 +89,22 @@ public class ParcelablesTest extends TestBase {
         assertEquals(newDoc.getArray("Key3").getString(0),doc.getArray("Key3").getString(0));
     }
 
+    public void testCanParcelDocumentLists(){
+        List<BaasDocument> docs = JsonFixtures.documents(20);
+        Parcel p = Parcel.obtain();
+        p.writeTypedList(docs);
+        p.setDataPosition(0);
+        ArrayList<BaasDocument> back = p.createTypedArrayList(BaasDocument.CREATOR);
+        p.recycle();
+
+        assertEquals(docs.size(), back.size());
+        for (int i = 0; i < docs.size(); i++) {
+            BaasDocument expected = docs.get(i);
+            BaasDocument actual = back.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getVersion(), actual.getVersion());
+            assertEquals(expected.getAuthor(), actual.getAuthor());
+            assertEquals(expected.toJson().toString(), actual.toJson().toString());
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import android.content.Context;
+
+import com.baasbox.android.BaasBox;
+import com.baasbox.android.BaasException;
+import com.baasbox.android.net.HttpRequest;
+import com.baasbox.android.net.RecordingClient;
+import com.baasbox.android.net.ReplayClient;
+import com.baasbox.android.net.RestClient;
+import com.baasbox.android.test.common.TestBase;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashMap;
+
+public class ReplayClientTest extends TestBase {
+
+    private static final String URL = "http://10.0.2.2:9000/document/test";
+
+    private File archive;
+
+    @Override
+    protected void beforeTest() throws Exception {
+        super.beforeTest();
+        archive = new File(getContext().getCacheDir(), "replay-test.bbar");
+        archive.delete();
+    }
+
+    @Override
+    protected void afterTest() throws Exception {
+        super.afterTest();
+        archive.delete();
+    }
+
+    public void testRecordedResponsesAreReplayedInOrder() throws Exception {
+        RecordingClient recorder = new RecordingClient(new CannedClient(), archive);
+        recorder.init(getContext(), null);
+        recorder.execute(get());
+        recorder.execute(get());
+        recorder.close();
+
+        ReplayClient replay = new ReplayClient(archive);
+        replay.init(getContext(), null);
+        assertEquals("{\"n\":0}", EntityUtils.toString(replay.execute(get()).getEntity()));
+        assertEquals("{\"n\":1}", EntityUtils.toString(replay.execute(get()).getEntity()));
+        assertEquals("{\"n\":1}", EntityUtils.toString(replay.execute(get()).getEntity()));
+    }
+
+    public void testBandwidthIsShaped() throws Exception {
+        RecordingClient recorder = new RecordingClient(new CannedClient(4096), archive);
+        recorder.init(getContext(), null);
+        recorder.execute(get());
+        recorder.close();
+
+        ReplayClient replay = new ReplayClient(archive).setBandwidth(16 * 1024);
+        replay.init(getContext(), null);
+        long start = System.currentTimeMillis();
+        HttpResponse response = replay.execute(get());
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals(4096 + 7, EntityUtils.toByteArray(response.getEntity()).length);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    public void testUnknownRequestFails() throws Exception {
+        RecordingClient recorder = new RecordingClient(new CannedClient(), archive);
+        recorder.init(getContext(), null);
+        recorder.close();
+
+        ReplayClient replay = new ReplayClient(archive);
+        replay.init(getContext(), null);
+        try {
+            replay.execute(get());
+            fail();
+        } catch (BaasException e) {
+            // expected
+        }
+    }
+
+    private static HttpRequest get() {
+        return new HttpRequest(HttpRequest.GET, URL, new HashMap<String, String>(), null);
+    }
+
+    private static class CannedClient implements RestClient {
+        private final int padding;
+        private int count;
+
+        CannedClient() {
+            this(0);
+        }
+
+        CannedClient(int padding) {
+            this.padding = padding;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws BaasException {
+            StringBuilder body = new StringBuilder("{\"n\":").append(count++).append('}');
+            for (int i = 0; i < padding; i++) body.append(' ');
+            BasicHttpResponse response = new BasicHttpResponse(
+                    new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+            BasicHttpEntity entity = new BasicHttpEntity();
+            byte[] bytes = body.toString().getBytes();
+            entity.setContent(new ByteArrayInputStream(bytes));
+            entity.setContentLength(bytes.length);
+            entity.setContentType("application/json");
+            response.setEntity(entity);
+            response.addHeader("Content-Type", "application/json");
+            return response;
+        }
+
+        @Override
+        public void init(Context context, BaasBox.Config config) {
+        }
+    }
+}
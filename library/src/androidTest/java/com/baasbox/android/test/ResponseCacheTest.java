@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import android.content.Context;
+
+import com.baasbox.android.BaasBox;
+import com.baasbox.android.BaasDocument;
+import com.baasbox.android.BaasException;
+import com.baasbox.android.BaasHandler;
+import com.baasbox.android.BaasResult;
+import com.baasbox.android.BaasUser;
+import com.baasbox.android.RequestOptions;
+import com.baasbox.android.net.HttpRequest;
+import com.baasbox.android.net.RecordingClient;
+import com.baasbox.android.net.ReplayClient;
+import com.baasbox.android.net.RestClient;
+import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.test.common.TestBase;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks the cache policies of {@link com.baasbox.android.RequestOptions} against
+ * responses replayed by a {@link com.baasbox.android.net.ReplayClient}, counting the
+ * requests that reach it.
+ */
+public class ResponseCacheTest extends TestBase {
+
+    private static final String ROOT = "http://10.0.2.2:9000/";
+    private static final int FRESH = RequestOptions.maxAge(60);
+
+    private File archive;
+    private String collection;
+    private RecordingClient recorder;
+    private CannedClient canned;
+    private CountingClient client;
+
+    @Override
+    protected void beforeTest() throws Exception {
+        super.beforeTest();
+        BaasBox.quitClient();
+        archive = new File(getContext().getCacheDir(), "response-cache-test.bbar");
+        archive.delete();
+        // a fresh collection per test, cached responses survive the client
+        collection = "cached" + System.nanoTime();
+        canned = new CannedClient();
+        recorder = new RecordingClient(canned, archive);
+        recorder.init(getContext(), null);
+    }
+
+    @Override
+    protected void afterTest() throws Exception {
+        super.afterTest();
+        BaasBox.quitClient();
+        archive.delete();
+    }
+
+    public void testCacheFirstHitSkipsNetwork() throws Exception {
+        record(HttpRequest.GET, "document/" + collection, list(1));
+        replay();
+
+        assertEquals(1, fetch(RequestOptions.CACHE_FIRST | FRESH).size());
+        assertEquals(1, client.calls.get());
+        assertEquals(1, fetch(RequestOptions.CACHE_FIRST | FRESH).size());
+        assertEquals(1, client.calls.get());
+    }
+
+    public void testSaveInvalidatesCollection() throws Exception {
+        record(HttpRequest.GET, "document/" + collection, list(1));
+        record(HttpRequest.GET, "document/" + collection, list(2));
+        record(HttpRequest.POST, "document/" + collection, ok(document(0)));
+        replay();
+
+        assertEquals(1, fetch(RequestOptions.CACHE_FIRST | FRESH).size());
+        BaasResult<BaasDocument> saved = new BaasDocument(collection).save(BaasHandler.NOOP).await();
+        assertTrue(saved.isSuccess());
+        assertEquals(2, client.calls.get());
+        assertEquals(2, fetch(RequestOptions.CACHE_FIRST | FRESH).size());
+        assertEquals(3, client.calls.get());
+    }
+
+    public void testOtherUserMissesCache() throws Exception {
+        record(HttpRequest.POST, "login", ok(login("alice")));
+        record(HttpRequest.POST, "login", ok(login("bob")));
+        record(HttpRequest.GET, "document/" + collection, list(1));
+        record(HttpRequest.GET, "document/" + collection, list(2));
+        record(HttpRequest.POST, "logout", ok(new JsonObject()));
+        replay();
+
+        assertTrue(BaasUser.withUserName("alice").setPassword("alice").loginSync().isSuccess());
+        assertEquals(1, fetch(RequestOptions.CACHE_FIRST | FRESH).size());
+        BaasResult<BaasUser> bob = BaasUser.withUserName("bob").setPassword("bob").loginSync();
+        assertTrue(bob.isSuccess());
+        assertEquals(2, fetch(RequestOptions.CACHE_FIRST | FRESH).size());
+        assertEquals(4, client.calls.get());
+        assertTrue(bob.value().logoutSync().isSuccess());
+    }
+
+    public void testCacheThenNetworkDeliversTwice() throws Exception {
+        record(HttpRequest.GET, "document/" + collection, list(1));
+        record(HttpRequest.GET, "document/" + collection, list(2));
+        replay();
+
+        assertEquals(1, fetch(RequestOptions.CACHE_THEN_NETWORK).size());
+
+        final List<Integer> sizes = new ArrayList<Integer>();
+        final CountDownLatch delivered = new CountDownLatch(2);
+        BaasDocument.fetchAll(collection, null, RequestOptions.CACHE_THEN_NETWORK,
+                new BaasHandler<List<BaasDocument>>() {
+                    @Override
+                    public void handle(BaasResult<List<BaasDocument>> result) {
+                        synchronized (sizes) {
+                            sizes.add(result.isSuccess() ? result.value().size() : -1);
+                        }
+                        delivered.countDown();
+                    }
+                });
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        synchronized (sizes) {
+            assertEquals(2, sizes.size());
+            assertEquals(1, sizes.get(0).intValue());
+            assertEquals(2, sizes.get(1).intValue());
+        }
+        assertEquals(2, client.calls.get());
+    }
+
+    public void testStaleWhileRevalidateRefreshesEntry() throws Exception {
+        record(HttpRequest.GET, "document/" + collection, list(1));
+        record(HttpRequest.GET, "document/" + collection, list(2));
+        replay();
+
+        assertEquals(1, fetch(RequestOptions.STALE_WHILE_REVALIDATE).size());
+        // the client max age is zero: the entry is stale right away
+        Thread.sleep(10);
+        assertEquals(1, fetch(RequestOptions.STALE_WHILE_REVALIDATE).size());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        int size = 1;
+        while (size == 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            size = fetch(RequestOptions.CACHE_FIRST | FRESH).size();
+        }
+        assertEquals(2, size);
+        assertEquals(2, client.calls.get());
+    }
+
+    private List<BaasDocument> fetch(int flags) {
+        BaasResult<List<BaasDocument>> result = BaasDocument.fetchAll(collection, null, flags, BaasHandler.NOOP).await();
+        assertTrue(result.isSuccess());
+        return result.value();
+    }
+
+    private void record(int method, String path, JsonObject response) throws BaasException {
+        canned.next = response;
+        recorder.execute(new HttpRequest(method, ROOT + path, new HashMap<String, String>(), null));
+    }
+
+    private void replay() {
+        recorder.close();
+        client = new CountingClient(archive);
+        BaasBox.builder(getContext())
+               .setRestClient(client)
+               .setResponseCacheMaxAge(0)
+               .init();
+    }
+
+    private JsonObject document(int i) {
+        return new JsonObject()
+                .put("@rid", "#24:" + i)
+                .put("@version", 1)
+                .put("@class", collection)
+                .put("id", "doc-" + i)
+                .put("_author", "alice")
+                .put("_creation_date", "2014-05-19T12:48:12.123+0200");
+    }
+
+    private JsonObject list(int size) {
+        JsonArray data = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            data.add(document(i));
+        }
+        return new JsonObject().put("result", "ok").put("data", data).put("http_code", 200);
+    }
+
+    private static JsonObject ok(JsonObject data) {
+        return new JsonObject().put("result", "ok").put("data", data).put("http_code", 200);
+    }
+
+    private static JsonObject login(String name) {
+        return new JsonObject()
+                .put("user", new JsonObject()
+                        .put("name", name)
+                        .put("status", "ACTIVE")
+                        .put("roles", new JsonArray().add(new JsonObject().put("name", "registered"))))
+                .put("signUpDate", "2014-05-19T12:48:12.123+0200")
+                .put("X-BB-SESSION", "session-" + name);
+    }
+
+    private static class CountingClient extends ReplayClient {
+        final AtomicInteger calls = new AtomicInteger();
+
+        CountingClient(File archive) {
+            super(archive);
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws BaasException {
+            calls.incrementAndGet();
+            return super.execute(request);
+        }
+    }
+
+    private static class CannedClient implements RestClient {
+        volatile JsonObject next;
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws BaasException {
+            BasicHttpResponse response = new BasicHttpResponse(
+                    new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+            BasicHttpEntity entity = new BasicHttpEntity();
+            byte[] bytes = next.toString().getBytes();
+            entity.setContent(new ByteArrayInputStream(bytes));
+            entity.setContentLength(bytes.length);
+            entity.setContentType("application/json");
+            response.setEntity(entity);
+            response.addHeader("Content-Type", "application/json");
+            return response;
+        }
+
+        @Override
+        public void init(Context context, BaasBox.Config config) {
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import android.content.Context;
+
+import com.baasbox.android.BaasBox;
+import com.baasbox.android.BaasDocument;
+import com.baasbox.android.BaasException;
+import com.baasbox.android.BaasHandler;
+import com.baasbox.android.BaasResult;
+import com.baasbox.android.ItemStreamHandler;
+import com.baasbox.android.RequestOptions;
+import com.baasbox.android.RequestToken;
+import com.baasbox.android.net.HttpRequest;
+import com.baasbox.android.net.RestClient;
+import com.baasbox.android.test.common.JsonFixtures;
+import com.baasbox.android.test.common.TestBase;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams canned list responses through {@link com.baasbox.android.BaasDocument#streamAll}.
+ */
+public class StreamListTest extends TestBase {
+
+    private CannedClient client;
+
+    @Override
+    protected void beforeTest() throws Exception {
+        super.beforeTest();
+        BaasBox.quitClient();
+        client = new CannedClient();
+        BaasBox.builder(getContext())
+               .setRestClient(client)
+               .init();
+    }
+
+    @Override
+    protected void afterTest() throws Exception {
+        super.afterTest();
+        BaasBox.quitClient();
+    }
+
+    public void testItemsKeepTheirOrderAcrossBatches() throws Exception {
+        client.respond(JsonFixtures.listResponse(10));
+        final List<Integer> sizes = new ArrayList<Integer>();
+        final List<String> ids = new ArrayList<String>();
+        BaasResult<Long> result = BaasDocument.streamAllSync("posts", null, 3, new ItemStreamHandler<BaasDocument>() {
+            @Override
+            public boolean onItems(List<BaasDocument> items) {
+                sizes.add(items.size());
+                for (BaasDocument d : items) {
+                    ids.add(d.getId());
+                }
+                return true;
+            }
+        });
+
+        assertTrue(result.isSuccess());
+        assertEquals(10L, result.value().longValue());
+        assertEquals(4, sizes.size());
+        assertEquals(3, sizes.get(0).intValue());
+        assertEquals(3, sizes.get(1).intValue());
+        assertEquals(3, sizes.get(2).intValue());
+        assertEquals(1, sizes.get(3).intValue());
+        List<BaasDocument> expected = JsonFixtures.documents(10);
+        assertEquals(10, ids.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), ids.get(i));
+        }
+    }
+
+    public void testConsumerStopsTheStream() throws Exception {
+        client.respond(JsonFixtures.listResponse(10));
+        final int[] calls = new int[1];
+        BaasResult<Long> result = BaasDocument.streamAllSync("posts", null, 4, new ItemStreamHandler<BaasDocument>() {
+            @Override
+            public boolean onItems(List<BaasDocument> items) {
+                calls[0]++;
+                return false;
+            }
+        });
+
+        assertTrue(result.isSuccess());
+        assertEquals(4L, result.value().longValue());
+        assertEquals(1, calls[0]);
+        // the rest of the response was read
+        assertEquals(0, client.content.available());
+    }
+
+    public void testCancelStopsARunningStream() throws Exception {
+        client.respond(JsonFixtures.listResponse(10));
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch canceled = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final int[] calls = new int[1];
+        final List<BaasResult<Long>> results = new ArrayList<BaasResult<Long>>();
+        RequestToken token = BaasDocument.streamAll("posts", null, 2, new ItemStreamHandler<BaasDocument>() {
+            @Override
+            public boolean onItems(List<BaasDocument> items) throws Exception {
+                calls[0]++;
+                started.countDown();
+                canceled.await(5, TimeUnit.SECONDS);
+                return true;
+            }
+        }, RequestOptions.DEFAULT, new BaasHandler<Long>() {
+            @Override
+            public void handle(BaasResult<Long> result) {
+                synchronized (results) {
+                    results.add(result);
+                }
+                delivered.countDown();
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(token.cancel());
+        canceled.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        synchronized (results) {
+            assertTrue(results.get(0).isCanceled());
+        }
+        assertEquals(1, calls[0]);
+    }
+
+    public void testConsumerErrorsAreDelivered() throws Exception {
+        client.respond(JsonFixtures.listResponse(10));
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final List<BaasResult<Long>> results = new ArrayList<BaasResult<Long>>();
+        BaasDocument.streamAll("posts", null, 5, new ItemStreamHandler<BaasDocument>() {
+            @Override
+            public boolean onItems(List<BaasDocument> items) {
+                throw new RuntimeException("consumer failed");
+            }
+        }, RequestOptions.DEFAULT, new BaasHandler<Long>() {
+            @Override
+            public void handle(BaasResult<Long> result) {
+                synchronized (results) {
+                    results.add(result);
+                }
+                delivered.countDown();
+            }
+        });
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        synchronized (results) {
+            BaasResult<Long> result = results.get(0);
+            assertTrue(result.isFailed());
+            assertEquals("consumer failed", result.error().getCause().getMessage());
+        }
+    }
+
+    public void testMalformedResponsesFail() throws Exception {
+        String body = JsonFixtures.listResponse(10);
+        client.respond(body.substring(0, body.length() / 2));
+        final int[] items = new int[1];
+        BaasResult<Long> result = BaasDocument.streamAllSync("posts", null, 3, new ItemStreamHandler<BaasDocument>() {
+            @Override
+            public boolean onItems(List<BaasDocument> batch) {
+                items[0] += batch.size();
+                return true;
+            }
+        });
+
+        assertTrue(result.isFailed());
+        assertTrue(items[0] < 10);
+    }
+
+    private static class CannedClient implements RestClient {
+        private volatile byte[] body;
+        volatile ByteArrayInputStream content;
+
+        void respond(String json) throws UnsupportedEncodingException {
+            body = json.getBytes("UTF-8");
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws BaasException {
+            BasicHttpResponse response = new BasicHttpResponse(
+                    new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+            BasicHttpEntity entity = new BasicHttpEntity();
+            content = new ByteArrayInputStream(body);
+            entity.setContent(content);
+            entity.setContentLength(body.length);
+            entity.setContentType("application/json; charset=UTF-8");
+            response.setEntity(entity);
+            response.addHeader("Content-Type", "application/json; charset=UTF-8");
+            return response;
+        }
+
+        @Override
+        public void init(Context context, BaasBox.Config config) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test;
+
+import com.baasbox.android.json.JsonException;
+import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.test.common.JsonFixtures;
+import com.baasbox.android.test.common.TestBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Checks the utf-8 byte reader against the character reader
+ * on a typical list response.
+ */
+public class Utf8JsonReaderTest extends TestBase {
+
+    public void testUtf8ReaderMatchesCharacterReader() throws Exception {
+        String json = JsonFixtures.listResponse(50);
+        byte[] bytes = json.getBytes("UTF-8");
+        JsonObject expected = JsonObject.decode(json);
+        assertEquals(expected, JsonObject.decode(bytes));
+        assertEquals(expected, JsonObject.decode(new ByteArrayInputStream(bytes)));
+        // a one byte stream forces every refill path, including split multi-byte sequences
+        assertEquals(expected, JsonObject.decode(new SlowStream(bytes)));
+    }
+
+    public void testEscapedNonAsciiCharacters() throws Exception {
+        // a backslash before a character that needs no escape yields the character itself
+        String json = "{\"a\":\"x\\\u00e9\\\u20ac\\\ud83d\ude00\\\"\",\"b\":1}";
+        byte[] bytes = json.getBytes("UTF-8");
+        JsonObject expected = JsonObject.decode(json);
+        assertEquals("x\u00e9\u20ac\ud83d\ude00\"", expected.getString("a"));
+        assertEquals(expected, JsonObject.decode(bytes));
+        assertEquals(expected, JsonObject.decode(new SlowStream(bytes)));
+    }
+
+    public void testUtf8ReaderReportsErrors() throws Exception {
+        try {
+            JsonObject.decode("{\"a\": \"unterminated".getBytes("UTF-8"));
+            fail();
+        } catch (JsonException e) {
+            // expected
+        }
+    }
+
+    private static class SlowStream extends InputStream {
+        private final byte[] data;
+        private int pos;
+
+        SlowStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (count == 0) return 0;
+            if (pos == data.length) return -1;
+            buffer[offset] = data[pos++];
+            return 1;
+        }
+    }
+}
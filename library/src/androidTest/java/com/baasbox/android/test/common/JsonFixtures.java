@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.test.common;
+
+import com.baasbox.android.BaasDocument;
+import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonObject;
+
+import java.util.ArrayList;
+
+/**
+ * Json content shaped like BaasBox responses, shared by the json tests and benchmarks.
+ */
+public final class JsonFixtures {
+
+    private JsonFixtures() {
+    }
+
+    /**
+     * Returns the text of a document list response with <code>size</code> documents,
+     * with system fields, escapes, non ascii text and nested arrays.
+     */
+    public static String listResponse(int size) {
+        JsonArray data = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            JsonObject doc = new JsonObject()
+                    .put("@rid", "#24:" + i)
+                    .put("@version", i % 7 + 1)
+                    .put("@class", "posts")
+                    .put("id", "5c5e7b9e-0e2b-4a55-9b8e-" + (100000000000L + i))
+                    .put("_author", "user" + (i % 13))
+                    .put("_creation_date", "2014-05-19T12:48:12.123+0200")
+                    .put("title", "Post number " + i)
+                    .put("body", "Caff\u00E8, na\u00EFve fa\u00E7ade \u2014 emoji \uD83D\uDE00 \"quoted\"\n" + i)
+                    .put("score", i * 1.5)
+                    .put("published", i % 2 == 0)
+                    .put("tags", new JsonArray().add("news").add("\u00FCn\u00EFcode").add(i));
+            data.add(doc);
+        }
+        return new JsonObject()
+                .put("result", "ok")
+                .put("data", data)
+                .put("http_code", 200).toString();
+    }
+
+    /**
+     * Returns the documents of {@link #listResponse(int)}.
+     */
+    public static ArrayList<BaasDocument> documents(int size) {
+        JsonArray data = JsonObject.decode(listResponse(size)).getArray("data");
+        ArrayList<BaasDocument> docs = new ArrayList<BaasDocument>(size);
+        for (int i = 0; i < data.size(); i++) {
+            docs.add(BaasDocument.from(data.getObject(i)));
+        }
+        return docs;
+    }
+}
@@ -15,13 +15,14 @@
 
 package com.baasbox.android;
 
+import com.baasbox.android.impl.BufferPool;
 import com.baasbox.android.impl.Logger;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Created by Andrea Tortorella on 23/01/14.
@@ -29,6 +30,7 @@ import java.io.IOException;
 abstract class AsyncStream<R> extends NetworkTask<R> {
 // ------------------------------ FIELDS ------------------------------
 
+    private static final int READ_BUFFER_SIZE = 4096;
     private final DataStreamHandler<R> dataStream;
 
 // --------------------------- CONSTRUCTORS ---------------------------
@@ -44,25 +46,45 @@ abstract class AsyncStream<R> extends NetworkTask<R> {
 
 // -------------------------- OTHER METHODS --------------------------
 
+    @Override
+    protected boolean cachesResponse() {
+        // streams are kept in the cache by id
+        return false;
+    }
+
     @Override
     protected R getFromCache(BaasBox box) throws BaasException {
         boolean handle = false;
+        BaasStream in = null;
+        byte[] data = null;
         try {
-            byte[] bytes = box.mCache.get(streamId());
-            if (bytes == null) {
+            in = box.mCache.getStream(streamId());
+            if (in == null) {
                 Logger.info("GOT FROM CACHE MISS");
                 return null;
             } else {
                 Logger.info("GOT FROM CACHE HIT");
                 handle = true;
-                dataStream.startData(streamId(), bytes.length, null);
-                dataStream.onData(bytes,bytes.length);
-                return dataStream.endData(streamId(),bytes.length,null);
+                data = BufferPool.shared().acquire(readBufferSize(in.contentLength));
+                dataStream.startData(streamId(), in.contentLength, null);
+                int read;
+                while ((read = in.read(data, 0, data.length)) > 0) {
+                    dataStream.onData(data, read);
+                }
+                return dataStream.endData(streamId(), in.contentLength, null);
             }
         } catch (Exception e) {
             throw new BaasIOException("error while parsing content from cache", e);
         }finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+            }
             if(handle) dataStream.finishStream(streamId());
+            BufferPool.shared().release(data);
         }
     }
 
@@ -71,7 +93,8 @@ abstract class AsyncStream<R> extends NetworkTask<R> {
     @Override
     protected R onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
         HttpEntity entity = null;
-        BufferedInputStream in = null;
+        InputStream in = null;
+        byte[] data = null;
         Cache.CacheStream cacheStream = null;
         R result = null;
         try {
@@ -83,13 +106,11 @@ abstract class AsyncStream<R> extends NetworkTask<R> {
             }
             
             long contentLength = entity.getContentLength();
-            boolean unknownLength = contentLength == -1;
-            
-            int readBufferSize = unknownLength?4096:Math.min((int)contentLength,4096);
-            
-            byte[] data = new byte[readBufferSize];
-            
-            in = BaasStream.getInput(entity);
+
+            data = BufferPool.shared().acquire(readBufferSize(contentLength));
+
+            // reads are already chunked, no need for another buffer in between
+            in = entity.getContent();
             int read = 0;
             
             cacheStream = box.mCache.beginStream(streamId());
@@ -122,7 +143,12 @@ abstract class AsyncStream<R> extends NetworkTask<R> {
                 Logger.error(e,"Error while parsing stream");
             }
             dataStream.finishStream(streamId());
+            BufferPool.shared().release(data);
         }
         return result;
     }
+
+    private static int readBufferSize(long contentLength) {
+        return contentLength == -1 ? READ_BUFFER_SIZE : (int) Math.min(contentLength, READ_BUFFER_SIZE);
+    }
 }
@@ -24,6 +24,7 @@ import com.baasbox.android.impl.ImmediateDispatcher;
 import com.baasbox.android.impl.Task;
 import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.KeyTable;
 import com.baasbox.android.net.HttpRequest;
 import com.baasbox.android.net.RestClient;
 
@@ -115,7 +116,7 @@ public class BaasBox {
         this.restClient = client==null?new HttpUrlConnectionClient():client;
         this.restClient.init(context,config);
         this.requestFactory = new RequestFactory(this.config, store);
-        this.mCache = new Cache(context);
+        this.mCache = new Cache(context, config.memoryCacheSize);
         this.syncDispatcher = new ImmediateDispatcher();
         this.asyncDispatcher = new Dispatcher(this);
         this.messagingService=new BaasCloudMessagingService(this);
@@ -349,6 +350,10 @@ public class BaasBox {
         private RestClient mRestClient = null;
         private boolean mTokenExpires = false;
         private String[] mSenderIds;
+        private boolean mSeedSystemKeys = true;
+        private long mMemoryCacheSize = -1;
+        private long mResponseCacheMaxAge = 5 * 60 * 1000;
+        private long mResponseCacheMaxStale = 24 * 60 * 60 * 1000;
 
         private Set<Pair<Plugin<?>,Plugin.Options>> plugins = new HashSet<Pair<Plugin<?>, Plugin.Options>>();
 
@@ -490,6 +495,60 @@ public class BaasBox {
             return this;
         }
 
+        /**
+         * Sets if the names of the fields BaasBox adds to its objects, such as
+         * <code>@rid</code>, <code>@version</code> and <code>_author</code>, are preloaded
+         * in the shared {@link com.baasbox.android.json.KeyTable}, defaults to true.
+         *
+         * @param seed true to preload the names
+         * @return this builder
+         */
+        public Builder setSeedSystemKeys(boolean seed){
+            mSeedSystemKeys = seed;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes of the memory cache kept in front of the disk cache
+         * of files and streams, 0 disables it.
+         * Defaults to a sixteenth of the heap available to the application, at most 4MB.
+         *
+         * @param bytes the memory budget of the cache
+         * @return this builder
+         */
+        public Builder setMemoryCacheSize(long bytes){
+            mMemoryCacheSize = bytes<0?-1:bytes;
+            return this;
+        }
+
+        /**
+         * Sets how long a cached json response is fresh, in milliseconds, for requests
+         * that use a cache policy of {@link com.baasbox.android.RequestOptions}, defaults to 5 minutes.
+         *
+         * @param millis the max age of cached responses
+         * @return this builder
+         */
+        public Builder setResponseCacheMaxAge(long millis){
+            mResponseCacheMaxAge = Math.max(0,millis);
+            return this;
+        }
+
+        /**
+         * Sets how long, past its max age, a cached json response can still be delivered
+         * by {@link com.baasbox.android.RequestOptions#STALE_WHILE_REVALIDATE}, in milliseconds, defaults to a day.
+         *
+         * @param millis the time a stale response is still usable
+         * @return this builder
+         */
+        public Builder setResponseCacheMaxStale(long millis){
+            mResponseCacheMaxStale = Math.max(0,millis);
+            return this;
+        }
+
+        private static long defaultMemoryCacheSize(){
+            return Math.min(Runtime.getRuntime().maxMemory()/16,4*1024*1024);
+        }
+
         private Config buildConfig(){
             return new Config(mExceptionHandler,mUseHttps,
                               mHttpCharset,mPort,mHttpConnectionTimeout,
@@ -497,7 +556,9 @@ public class BaasBox {
                               mApiBasepath,mAppCode,mAuthType,mTokenExpires,mWorkerThreads,
                               mKeyStoreRes,
                               mKeyStorePass,
-                              mSenderIds);
+                              mSenderIds,
+                              mMemoryCacheSize<0?defaultMemoryCacheSize():mMemoryCacheSize,
+                              mResponseCacheMaxAge,mResponseCacheMaxStale);
         }
 
         /**
@@ -508,6 +569,9 @@ public class BaasBox {
             if (sDefaultClient==null){
                 synchronized (LOCK){
                     if (sDefaultClient==null){
+                        if (mSeedSystemKeys) {
+                            KeyTable.shared().seedSystemFields();
+                        }
                         BaasBox box = new BaasBox(mContext, buildConfig(),plugins, mRestClient);
                         box.asyncDispatcher.start();
                         sDefaultClient = box;
@@ -612,7 +676,23 @@ public class BaasBox {
          */
         public final String[] senderIds;
 
-        Config(ExceptionHandler exceptionHandler, boolean useHttps, String httpCharset, int httpPort, int httpConnectionTimeout, int httpSocketTimeout, String apiDomain, String apiBasepath, String appCode, AuthType authenticationType,boolean sessionTokenExpires, int workerThreads,int keystoreRes,String keystorepass,String[] senderIds) {
+        /**
+         * Size in bytes of the memory cache in front of the disk cache, <code>0</code> if disabled.
+         */
+        public final long memoryCacheSize;
+
+        /**
+         * Milliseconds a cached json response is fresh, default is 5 minutes.
+         */
+        public final long responseCacheMaxAge;
+
+        /**
+         * Milliseconds a cached json response can be delivered past its max age
+         * while it is refreshed, default is a day.
+         */
+        public final long responseCacheMaxStale;
+
+        Config(ExceptionHandler exceptionHandler, boolean useHttps, String httpCharset, int httpPort, int httpConnectionTimeout, int httpSocketTimeout, String apiDomain, String apiBasepath, String appCode, AuthType authenticationType,boolean sessionTokenExpires, int workerThreads,int keystoreRes,String keystorepass,String[] senderIds,long memoryCacheSize,long responseCacheMaxAge,long responseCacheMaxStale) {
             this.exceptionHandler = exceptionHandler;
             this.useHttps = useHttps;
             this.httpCharset = httpCharset;
@@ -628,6 +708,9 @@ public class BaasBox {
             this.password=keystorepass;
             this.sessionTokenExpires=sessionTokenExpires;
             this.senderIds = senderIds;
+            this.memoryCacheSize = memoryCacheSize;
+            this.responseCacheMaxAge = responseCacheMaxAge;
+            this.responseCacheMaxStale = responseCacheMaxStale;
         }
     }
 
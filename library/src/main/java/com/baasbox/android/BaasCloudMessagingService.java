@@ -332,6 +332,7 @@ public final class BaasCloudMessagingService {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             return null;
         }
 
@@ -394,6 +395,7 @@ public final class BaasCloudMessagingService {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             return null;
         }
 
@@ -17,9 +17,11 @@ package com.baasbox.android;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import com.baasbox.android.impl.Base64;
 import com.baasbox.android.impl.Logger;
 import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonPath;
 import com.baasbox.android.net.HttpRequest;
 import org.apache.http.HttpResponse;
 
@@ -42,12 +44,14 @@ class BaasCredentialManager {
     private static final String STATUS_KEY = "STATUS_KEY";
     private static final String DATE_KEY = "SIGNUP_KEY";
     private static final String SOCIAL_NETWORK_KEY = "SOCIAL_KEY";
+    private static final JsonPath SESSION_TOKEN = JsonPath.compile("$.data['X-BB-SESSION']");
 
     private final SharedPreferences diskCache;
     private final BaasBox box;
     private final Object lock = new Object();
     private volatile boolean loaded = false;
     private BaasUser current;
+    private volatile AuthHeader authHeader;
 
 // --------------------------- CONSTRUCTORS ---------------------------
     public BaasCredentialManager(BaasBox box, Context context) {
@@ -83,6 +87,7 @@ class BaasCredentialManager {
     public void clear() {
         synchronized (lock) {
             current = null;
+            authHeader = null;
             loaded = false;
             erase();
         }
@@ -106,9 +111,8 @@ class BaasCredentialManager {
             HttpRequest req = loginRequest(user, pass, null);
             HttpResponse resp = box.restClient.execute(req);
             if (resp.getStatusLine().getStatusCode() / 100 == 2) {
-                JsonObject sessionObject = NetworkTask.parseJson(resp, box);
-                Logger.debug("!!!! %s !!!!!", sessionObject.toString());
-                String session = sessionObject.getObject("data").getString("X-BB-SESSION");
+                String session = NetworkTask.parseValue(resp, box, SESSION_TOKEN);
+                Logger.debug("!!!! %s !!!!!", session);
                 if (session != null) {
                     c.setToken(session);
                     storeUser(c);
@@ -132,6 +136,23 @@ class BaasCredentialManager {
         return current;
     }
 
+    /**
+     * Returns the authentication header for the current user,
+     * it is computed once and reused until the user or its credentials change.
+     *
+     * @return the header or null if there is no authenticated user
+     */
+    final AuthHeader authHeader(BaasBox.Config.AuthType type) {
+        BaasUser user = currentUser();
+        if (user == null) return null;
+        AuthHeader header = authHeader;
+        if (header == null || !header.isFor(user, type)) {
+            header = new AuthHeader(user, type);
+            authHeader = header;
+        }
+        return header.name == null ? null : header;
+    }
+
     final HttpRequest loginRequest(String username, String password, String regId) {
         String endpoint = box.requestFactory.getEndpoint("login");
         Map<String, String> formBody = new LinkedHashMap<String, String>();
@@ -149,6 +170,7 @@ class BaasCredentialManager {
     void unbindUser() {
         synchronized (lock){
             current =null;
+            authHeader = null;
             loaded=false;
         }
     }
@@ -156,6 +178,7 @@ class BaasCredentialManager {
     public void storeUser(BaasUser user) {
         synchronized (lock) {
             current = user;
+            authHeader = null;
             if (user == null) {
                 erase();
             } else {
@@ -191,4 +214,41 @@ class BaasCredentialManager {
         while (!edit.commit()) ;
     }
 
+// -------------------------- INNER CLASSES --------------------------
+
+    static final class AuthHeader {
+        final String name;
+        final String value;
+        private final BaasUser user;
+        private final BaasBox.Config.AuthType type;
+        private final String username;
+        private final String secret;
+
+        AuthHeader(BaasUser user, BaasBox.Config.AuthType type) {
+            this.user = user;
+            this.type = type;
+            this.username = user.getName();
+            if (BaasBox.Config.AuthType.BASIC_AUTHENTICATION == type) {
+                secret = user.getPassword();
+                if (username != null && secret != null) {
+                    String plain = username + ':' + secret;
+                    name = RequestFactory.BASIC_AUTH_HEADER_NAME;
+                    value = "Basic " + Base64.encodeToString(plain.getBytes(), Base64.NO_WRAP).trim();
+                } else {
+                    name = null;
+                    value = null;
+                }
+            } else {
+                secret = user.getToken();
+                name = secret == null ? null : RequestFactory.BB_SESSION_HEADER_NAME;
+                value = secret;
+            }
+        }
+
+        boolean isFor(BaasUser user, BaasBox.Config.AuthType type) {
+            // credentials are compared by reference, a change always replaces the string
+            if (this.user != user || this.type != type || username != user.getName()) return false;
+            return secret == (BaasBox.Config.AuthType.BASIC_AUTHENTICATION == type ? user.getPassword() : user.getToken());
+        }
+    }
 }
@@ -20,14 +20,16 @@ import android.content.ContentValues;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import com.baasbox.android.impl.Logger;
 import com.baasbox.android.impl.Util;
 import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonPath;
 import com.baasbox.android.json.JsonStructure;
 import com.baasbox.android.net.HttpRequest;
 import org.apache.http.HttpResponse;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -84,7 +86,7 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
      * @return a new BaasDocument
      */
     public static BaasDocument from(JsonObject data){
-        return new BaasDocument(data);
+        return new BaasDocument(data == null ? new JsonObject() : data.copy());
     }
 
     public static BaasDocument create(String collection,String id){
@@ -102,21 +104,30 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
     }
 
 
-    BaasDocument(JsonObject o) {
+    /**
+     * Creates a document from an object just decoded from a response,
+     * which is taken over without copies and must not be used afterwards:
+     * the system fields are moved out of it and the rest becomes the content.
+     */
+    BaasDocument(JsonObject parsed) {
         super();
-        JsonWrapper data = new JsonWrapper(o);
-        this.collection = data.getString("@class");
-        data.remove("@class");
-        this.id = data.getString("id");
-        data.remove("id");
-        this.author = data.getString("_author");
-        data.remove("_author");
-        this.creation_date = data.getString("_creation_date");
-        data.remove("_creation_date");
-        this.version = data.getLong("@version");
-        data.remove("@version");
-        this.rid=data.getString("@rid");
-        data.remove("@rid");
+        this.collection = parsed.getString("@class");
+        parsed.remove("@class");
+        this.id = parsed.getString("id");
+        parsed.remove("id");
+        this.author = parsed.getString("_author");
+        parsed.remove("_author");
+        this.creation_date = parsed.getString("_creation_date");
+        parsed.remove("_creation_date");
+        this.version = parsed.getLong("@version");
+        parsed.remove("@version");
+        this.rid=parsed.getString("@rid");
+        parsed.remove("@rid");
+        JsonWrapper data = JsonWrapper.adopting(parsed);
+        if (this.id != null) {
+            // the content mirrors the one on the server
+            data.clearChanges();
+        }
         this.data = data;
     }
 
@@ -160,7 +171,7 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
         this.author = Util.readOptString(source);
         this.creation_date = Util.readOptString(source);
         this.rid= Util.readOptString(source);
-        this.data = source.readParcelable(JsonWrapper.class.getClassLoader());
+        this.data = new JsonWrapper(source);
     }
 
     /**
@@ -279,6 +290,147 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
         return box.submitSync(f);
     }
 
+    /**
+     * Asynchronously retrieves the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>, reading each one directly into a model object through <code>reader</code>.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param reader     the binding from documents to model objects not <code>null</code>
+     * @param filter     a filter to apply to the request
+     * @param handler    a callback to be invoked with the result of the request
+     * @param <T>        the type of the model objects
+     * @return a {@link com.baasbox.android.RequestToken} to handle the asynchronous request
+     */
+    public static <T> RequestToken fetchAll(String collection, DocumentReader<T> reader, BaasQuery.Criteria filter, BaasHandler<List<T>> handler) {
+        return fetchAll(collection, reader, filter, RequestOptions.DEFAULT, handler);
+    }
+
+    /**
+     * Asynchronously retrieves the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>, reading each one directly into a model object through <code>reader</code>.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param reader     the binding from documents to model objects not <code>null</code>
+     * @param filter     a filter to apply to the request
+     * @param flags      {@link RequestOptions}
+     * @param handler    a callback to be invoked with the result of the request
+     * @param <T>        the type of the model objects
+     * @return a {@link com.baasbox.android.RequestToken} to handle the asynchronous request
+     */
+    public static <T> RequestToken fetchAll(String collection, DocumentReader<T> reader, BaasQuery.Criteria filter, int flags, BaasHandler<List<T>> handler) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        if (collection == null) throw new IllegalArgumentException("collection cannot be null");
+        if (reader == null) throw new IllegalArgumentException("reader cannot be null");
+        FetchAs<T> f = new FetchAs<T>(box, collection, reader, filter, flags, handler);
+        return box.submitAsync(f);
+    }
+
+    /**
+     * Synchronously retrieves the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>, reading each one directly into a model object through <code>reader</code>.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param reader     the binding from documents to model objects not <code>null</code>
+     * @param filter     a filter to apply to the request
+     * @param <T>        the type of the model objects
+     * @return the result of the request
+     */
+    public static <T> BaasResult<List<T>> fetchAllSync(String collection, DocumentReader<T> reader, BaasQuery.Criteria filter) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        if (collection == null) throw new IllegalArgumentException("collection cannot be null");
+        if (reader == null) throw new IllegalArgumentException("reader cannot be null");
+        FetchAs<T> f = new FetchAs<T>(box, collection, reader, filter, RequestOptions.DEFAULT, null);
+        return box.submitSync(f);
+    }
+
+    /**
+     * Asynchronously retrieves the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>, reading each one into an object of <code>type</code>
+     * through the reader registered in {@link com.baasbox.android.DocumentBindings}.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param type       the model class, whose reader is registered
+     * @param filter     a filter to apply to the request
+     * @param handler    a callback to be invoked with the result of the request
+     * @param <T>        the type of the model objects
+     * @return a {@link com.baasbox.android.RequestToken} to handle the asynchronous request
+     */
+    public static <T> RequestToken fetchAll(String collection, Class<T> type, BaasQuery.Criteria filter, BaasHandler<List<T>> handler) {
+        return fetchAll(collection, DocumentBindings.reader(type), filter, RequestOptions.DEFAULT, handler);
+    }
+
+    /**
+     * Asynchronously retrieves the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>, reading each one into an object of <code>type</code>
+     * through the reader registered in {@link com.baasbox.android.DocumentBindings}.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param type       the model class, whose reader is registered
+     * @param filter     a filter to apply to the request
+     * @param flags      {@link RequestOptions}
+     * @param handler    a callback to be invoked with the result of the request
+     * @param <T>        the type of the model objects
+     * @return a {@link com.baasbox.android.RequestToken} to handle the asynchronous request
+     */
+    public static <T> RequestToken fetchAll(String collection, Class<T> type, BaasQuery.Criteria filter, int flags, BaasHandler<List<T>> handler) {
+        return fetchAll(collection, DocumentBindings.reader(type), filter, flags, handler);
+    }
+
+    /**
+     * Synchronously retrieves the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>, reading each one into an object of <code>type</code>
+     * through the reader registered in {@link com.baasbox.android.DocumentBindings}.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param type       the model class, whose reader is registered
+     * @param filter     a filter to apply to the request
+     * @param <T>        the type of the model objects
+     * @return the result of the request
+     */
+    public static <T> BaasResult<List<T>> fetchAllSync(String collection, Class<T> type, BaasQuery.Criteria filter) {
+        return fetchAllSync(collection, DocumentBindings.reader(type), filter);
+    }
+
+    /**
+     * Asynchronously streams the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code>: they are delivered to <code>consumer</code> in batches
+     * while the response is received, without building the whole list.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param filter     a filter to apply to the request
+     * @param batchSize  the maximum number of documents delivered at a time
+     * @param consumer   the consumer of the documents, invoked on a background thread
+     * @param flags      {@link RequestOptions}
+     * @param handler    a callback to be invoked with the number of delivered documents
+     * @return a {@link com.baasbox.android.RequestToken} to handle the asynchronous request
+     */
+    public static RequestToken streamAll(String collection, BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasDocument> consumer, int flags, BaasHandler<Long> handler) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitAsync(streamTask(box, collection, filter, batchSize, consumer, flags, handler));
+    }
+
+    /**
+     * Synchronously streams the documents readable to the user that match <code>filter</code>
+     * in <code>collection</code> to <code>consumer</code>.
+     *
+     * @param collection the collection to retrieve not <code>null</code>
+     * @param filter     a filter to apply to the request
+     * @param batchSize  the maximum number of documents delivered at a time
+     * @param consumer   the consumer of the documents
+     * @return the result of the request, with the number of delivered documents
+     */
+    public static BaasResult<Long> streamAllSync(String collection, BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasDocument> consumer) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitSync(streamTask(box, collection, filter, batchSize, consumer, RequestOptions.DEFAULT, null));
+    }
+
+    private static StreamList<BaasDocument> streamTask(BaasBox box, String collection, BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasDocument> consumer, int flags, BaasHandler<Long> handler) {
+        if (collection == null) throw new IllegalArgumentException("collection cannot be null");
+        String endpoint = box.requestFactory.getEndpoint("document/{}", collection);
+        return new StreamList<BaasDocument>(box, endpoint, filter == null ? null : filter.toQuery(),
+                READER, batchSize, consumer, flags, handler);
+    }
+
     /**
      * Asynchronously retrieves the number of documents readable to the user in <code>collection</code>.
      *
@@ -722,8 +874,8 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
         Util.writeOptString(dest, author);
         Util.writeOptString(dest, creation_date);
         Util.writeOptString(dest, rid);
-        dest.writeParcelable(data, 0);
-
+        // written inline: the type is known, no class name lookup on the way back
+        data.writeToParcel(dest, flags);
     }
 
 // -------------------------- OTHER METHODS --------------------------
@@ -1249,7 +1401,7 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
             //
             this.acl = acl;
         }
-        this.data.merge(data);
+        this.data.mergeParsed(data);
         this.data.setDirty(false);
     }
 
@@ -1292,6 +1444,7 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             if (document != null) document.id = null;
             return null;
         }
@@ -1317,18 +1470,28 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
         private final SaveMode mode;
         private JsonObject data;
         private BaasACL acl;
-        
+        // true when nothing changed since the last sync and the request is skipped
+        private final boolean unchanged;
+
         protected Save(BaasBox box, SaveMode mode,BaasACL acl, BaasDocument document, int flags, BaasHandler<BaasDocument> handler) {
             super(box, flags, handler);
             this.document = document;
             this.data = document.data.copy();
             this.acl = acl;
             this.mode = mode;
+            this.unchanged = mode == SaveMode.CHANGED_FIELDS && unchanged(document, acl);
+        }
+
+        private static boolean unchanged(BaasDocument document, BaasACL acl) {
+            if (document.id == null || acl != null) return false;
+            // field updates do not carry the version, so changed documents are saved whole with it
+            String[] fields = document.data.changedFields();
+            return fields != null && fields.length == 0;
         }
 
         @Override
         protected BaasDocument onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject jsonData = parseJson(response, box).getObject("data");
+            JsonObject jsonData = parseData(response, box);
             document.update(jsonData);
             if (acl!=null){
                 document.acl = acl;
@@ -1336,10 +1499,17 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
             return document;
         }
 
+        @Override
+        protected BaasDocument onSkipRequest() throws BaasException {
+            // nothing changed since the last sync
+            return document;
+        }
+
         @Override
         protected HttpRequest request(BaasBox box) {
             String coll = document.collection;
             String docId = document.id;
+            if (unchanged) return null;
             if (acl != null){
                 JsonArray readGrants =acl.arrayForGrant(Grant.READ);
                 JsonArray updateGrants = acl.arrayForGrant(Grant.UPDATE);
@@ -1360,7 +1530,7 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
                 return box.requestFactory.post(endpoint, data);
             } else {
                 String endpoint = box.requestFactory.getEndpoint("document/{}/{}", coll, docId);
-                if (mode == SaveMode.CHECK_VERSION) {
+                if (mode != SaveMode.IGNORE_VERSION) {
                     data.put("@version", document.version);
                 }
                 return box.requestFactory.put(endpoint, data);
@@ -1395,9 +1565,15 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
             aclParam = withAcl? new RequestFactory.Param("withAcl","true"):null;
         }
 
+        @Override
+        protected boolean buildsNewResult() {
+            // updates the document in place
+            return false;
+        }
+
         @Override
         protected BaasDocument onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject object = parseJson(response, box).getObject("data");
+            JsonObject object = parseData(response, box);
             document.update(object);
             return document;
         }
@@ -1413,24 +1589,68 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
         }
     }
 
+    private static final DocumentReader<BaasDocument> READER = new DocumentReader<BaasDocument>() {
+        @Override
+        public BaasDocument read(JsonInput in) throws IOException {
+            return new BaasDocument(JsonObject.decode(in));
+        }
+    };
+
+    private static final class FetchAs<T> extends NetworkTask<List<T>> {
+        private final String collection;
+        private final DocumentReader<T> reader;
+        private final RequestFactory.Query filter;
+        private final boolean parallel;
+
+        protected FetchAs(BaasBox box, String collection, DocumentReader<T> reader, BaasQuery.Criteria filter, int flags, BaasHandler<List<T>> handler) {
+            super(box, flags, handler);
+            this.collection = collection;
+            this.reader = reader;
+            this.filter = filter == null ? null : filter.toQuery();
+            this.parallel = (flags & RequestOptions.PARALLEL_DECODE) != 0;
+        }
+
+        @Override
+        protected List<T> onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            if (parallel) {
+                return readListInParallel(response, box, reader);
+            }
+            return readList(response, box, reader);
+        }
+
+        @Override
+        protected HttpRequest request(BaasBox box) {
+            String ep = box.requestFactory.getEndpoint("document/{}", collection);
+            if (filter == null) {
+                return box.requestFactory.get(ep);
+            } else {
+                return box.requestFactory.get(ep, filter);
+            }
+        }
+    }
+
     private static final class Fetch extends NetworkTask<List<BaasDocument>> {
         private final String collection;
-        private final RequestFactory.Param[] filter;
+        private final RequestFactory.Query filter;
+        private final boolean parallel;
 
         protected Fetch(BaasBox box, String collection, BaasQuery.Criteria filter, int flags, BaasHandler<List<BaasDocument>> handler) {
             super(box, flags, handler);
             this.collection = collection;
-            this.filter = filter == null ? null : filter.toParams();
+            this.filter = filter == null ? null : filter.toQuery();
+            this.parallel = (flags & RequestOptions.PARALLEL_DECODE) != 0;
         }
 
         @Override
         protected List<BaasDocument> onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonArray jsonData = parseJson(response, box).getArray("data");
-            Logger.debug("received: " + jsonData);
+            if (parallel) {
+                return readListInParallel(response, box, READER);
+            }
+            JsonArray jsonData = parseJsonLazily(response, box).getArray("data");
             if (jsonData == null) {
                 return Collections.emptyList();
             } else {
-                List<BaasDocument> res = new ArrayList<BaasDocument>();
+                List<BaasDocument> res = new ArrayList<BaasDocument>(jsonData.size());
                 for (Object obj : jsonData) {
                     res.add(new BaasDocument((JsonObject) obj));
                 }
@@ -1450,20 +1670,24 @@ public final class BaasDocument extends BaasObject implements Iterable<Map.Entry
     }
 
     private static final class Count extends NetworkTask<Long> {
+        private static final JsonPath COUNT = JsonPath.compile("$.data[0].count");
+
         private final String collection;
-        private final RequestFactory.Param[] params;
+        private final RequestFactory.Query params;
 
         protected Count(BaasBox box, String collection, BaasQuery.Criteria filter, int flags, BaasHandler<Long> handler) {
             super(box, flags, handler);
             this.collection = collection;
-            this.params = filter == null ? null : filter.toParams();
+            this.params = filter == null ? null : filter.toQuery();
         }
 
         @Override
         protected Long onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject entries = parseJson(response, box);
-            
-            return entries.getArray("data").getObject(0).getLong("count");
+            Number count = parseValue(response, box, COUNT);
+            if (count == null) {
+                throw new BaasIOException("Unexpected server response: " + response);
+            }
+            return count.longValue();
         }
 
         @Override
@@ -24,6 +24,7 @@ import android.webkit.MimeTypeMap;
 import com.baasbox.android.impl.Util;
 import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonException;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
 import com.baasbox.android.net.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -89,7 +90,8 @@ public class BaasFile extends BaasObject implements Parcelable{
         if (!file.contains("@version") || !file.contains("_creationDate")||!file.contains("id")){
             throw new IllegalArgumentException("This seems not to be a valid file representation");
         }
-        return new BaasFile(file,true);
+        // the server constructor takes over the json it is given
+        return new BaasFile(file.copy(),true);
     }
 
     public BaasFile() {
@@ -100,11 +102,14 @@ public class BaasFile extends BaasObject implements Parcelable{
         this(attachedData, false);
     }
 
+    /**
+     * Creates a file; server data must be an object just decoded internally,
+     * its attached data and metadata are taken over, see {@link #update(JsonObject)}.
+     */
     BaasFile(JsonObject data, boolean fromServer) {
         super();
         if (fromServer) {
-            this.attachedData = new JsonWrapper(data);
-            this.metaData = new JsonObject();
+            this.attachedData = new JsonWrapper();
             update(data);
         } else {
             this.attachedData = new JsonWrapper(data);
@@ -112,11 +117,19 @@ public class BaasFile extends BaasObject implements Parcelable{
     }
 
 
+    /**
+     * Updates this file from an object just decoded from a response,
+     * whose attached data and metadata are taken over without copies.
+     */
     void update(JsonObject fromServer) {
         isBound.set(true);
-        this.attachedData.merge(fromServer.getObject("attachedData"));
-        if (this.metaData == null) this.metaData = new JsonObject();
-        this.metaData.merge(fromServer.getObject("metadata"));
+        this.attachedData.mergeParsed(fromServer.getObject("attachedData"));
+        JsonObject metadata = fromServer.getObject("metadata");
+        if (this.metaData == null) {
+            this.metaData = metadata == null ? new JsonObject() : metadata;
+        } else {
+            this.metaData.merge(metadata);
+        }
         this.id = fromServer.getString("id");
         this.creationDate = fromServer.getString("_creation_date");
         this.author = fromServer.getString("_author");
@@ -218,6 +231,33 @@ public class BaasFile extends BaasObject implements Parcelable{
         return box.submitSync(files);
     }
 
+    /**
+     * Asynchronously streams the details of the files that match <code>filter</code>:
+     * they are delivered to <code>consumer</code> in batches while the response is received.
+     *
+     * @param filter    an optional filter to apply to the request
+     * @param batchSize the maximum number of files delivered at a time
+     * @param consumer  the consumer of the files, invoked on a background thread
+     * @param flags     {@link RequestOptions}
+     * @param handler   a callback to be invoked with the number of delivered files
+     * @return a {@link com.baasbox.android.RequestToken} to manage the request
+     */
+    public static RequestToken streamAll(BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasFile> consumer, int flags, BaasHandler<Long> handler) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitAsync(streamTask(box, filter, batchSize, consumer, flags, handler));
+    }
+
+    public static BaasResult<Long> streamAllSync(BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasFile> consumer) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitSync(streamTask(box, filter, batchSize, consumer, RequestOptions.DEFAULT, null));
+    }
+
+    private static StreamList<BaasFile> streamTask(BaasBox box, BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasFile> consumer, int flags, BaasHandler<Long> handler) {
+        String endpoint = box.requestFactory.getEndpoint("file/details");
+        return new StreamList<BaasFile>(box, endpoint, filter == null ? null : filter.toQuery(),
+                READER, batchSize, consumer, flags, handler);
+    }
+
     public static RequestToken fetch(String id, BaasHandler<BaasFile> handler) {
         return fetch(id, RequestOptions.DEFAULT, handler);
     }
@@ -818,9 +858,15 @@ public class BaasFile extends BaasObject implements Parcelable{
             this.file = file;
         }
 
+        @Override
+        protected boolean buildsNewResult() {
+            // updates the file in place
+            return false;
+        }
+
         @Override
         protected BaasFile onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject jsonData = parseJson(response, box).getObject("data");
+            JsonObject jsonData = parseData(response, box);
             file.update(jsonData);
             return file;
         }
@@ -849,6 +895,7 @@ public class BaasFile extends BaasObject implements Parcelable{
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             if (file != null) file.id = null;
             return null;
         }
@@ -869,22 +916,29 @@ public class BaasFile extends BaasObject implements Parcelable{
         }
     }
 
+    private static final DocumentReader<BaasFile> READER = new DocumentReader<BaasFile>() {
+        @Override
+        public BaasFile read(JsonInput in) throws IOException {
+            return new BaasFile(JsonObject.decode(in), true);
+        }
+    };
+
     private static final class Files extends NetworkTask<List<BaasFile>> {
-        private RequestFactory.Param[] params;
+        private RequestFactory.Query params;
 
         protected Files(BaasBox box, BaasQuery.Criteria filter, int flags, BaasHandler<List<BaasFile>> handler) {
             super(box, flags, handler);
             if (filter == null) {
                 params = null;
             } else {
-                params = filter.toParams();
+                params = filter.toQuery();
             }
         }
 
         @Override
         protected List<BaasFile> onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
             try {
-                JsonArray details = parseJson(response, box).getArray("data");
+                JsonArray details = parseDataArray(response, box);
 
                 List<BaasFile> files = new ArrayList<BaasFile>();
                 for (Object o : details) {
@@ -921,7 +975,7 @@ public class BaasFile extends BaasObject implements Parcelable{
 
         @Override
         protected BaasFile onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject o = parseJson(response, box).getObject("data");
+            JsonObject o = parseData(response, box);
             file.update(o);
             return file;
         }
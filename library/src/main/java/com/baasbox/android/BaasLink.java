@@ -22,11 +22,13 @@ import android.os.Parcelable;
 
 import com.baasbox.android.impl.Util;
 import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
 import com.baasbox.android.net.HttpRequest;
 
 import org.apache.http.HttpResponse;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -257,11 +259,49 @@ public final class BaasLink implements Parcelable{
         return cli.submitSync(all);
     }
 
+    /**
+     * Asynchronously streams the links that match <code>criteria</code>:
+     * they are delivered to <code>consumer</code> in batches while the response is received.
+     *
+     * @param criteria  an optional filter to apply to the request
+     * @param batchSize the maximum number of links delivered at a time
+     * @param consumer  the consumer of the links, invoked on a background thread
+     * @param flags     {@link RequestOptions}
+     * @param handler   a callback to be invoked with the number of delivered links
+     * @return a {@link com.baasbox.android.RequestToken} to manage the request
+     */
+    public static RequestToken streamAll(BaasQuery.Criteria criteria, int batchSize, ItemStreamHandler<BaasLink> consumer, int flags, BaasHandler<Long> handler){
+        BaasBox cli = BaasBox.getDefaultChecked();
+        return cli.submitAsync(streamTask(cli, criteria, batchSize, consumer, flags, handler));
+    }
+
+    public static BaasResult<Long> streamAllSync(BaasQuery.Criteria criteria, int batchSize, ItemStreamHandler<BaasLink> consumer){
+        BaasBox cli = BaasBox.getDefaultChecked();
+        return cli.submitSync(streamTask(cli, criteria, batchSize, consumer, RequestOptions.DEFAULT, null));
+    }
+
+    private static StreamList<BaasLink> streamTask(BaasBox box, BaasQuery.Criteria criteria, int batchSize, ItemStreamHandler<BaasLink> consumer, int flags, BaasHandler<Long> handler){
+        if (criteria == null){
+            criteria = BaasQuery.Criteria.ANY;
+        }
+        String endpoint = box.requestFactory.getEndpoint("link");
+        return new StreamList<BaasLink>(box, endpoint, criteria.toQuery(), READER, batchSize, consumer, flags, handler);
+    }
+
     public static BaasLink withId(String id) {
         return new BaasLink(id,null);
     }
 
 
+    private static final DocumentReader<BaasLink> READER = new DocumentReader<BaasLink>() {
+        @Override
+        public BaasLink read(JsonInput in) throws IOException {
+            BaasLink link = new BaasLink(null,null);
+            link.update(JsonObject.decode(in));
+            return link;
+        }
+    };
+
     private static class FetchAll extends NetworkTask<List<BaasLink>>{
         BaasQuery.Criteria criteria;
         protected FetchAll(BaasBox box,BaasQuery.Criteria criteria, int flags, BaasHandler<List<BaasLink>> handler) {
@@ -271,7 +311,7 @@ public final class BaasLink implements Parcelable{
 
         @Override
         protected List<BaasLink> onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonArray data = parseJson(response,box).getArray("data");
+            JsonArray data = parseDataArray(response, box);
             ArrayList<BaasLink> ret = new ArrayList<BaasLink>();
             for (Object o:data){
                 JsonObject object =(JsonObject)o;
@@ -285,7 +325,7 @@ public final class BaasLink implements Parcelable{
         @Override
         protected HttpRequest request(BaasBox box) {
             String endpoint = box.requestFactory.getEndpoint("link");
-            return box.requestFactory.get(endpoint,criteria.toParams());
+            return box.requestFactory.get(endpoint,criteria.toQuery());
         }
     }
 
@@ -300,6 +340,7 @@ public final class BaasLink implements Parcelable{
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             link.id =null;
             link.label=null;
             link.version=0;
@@ -331,7 +372,7 @@ public final class BaasLink implements Parcelable{
 
         @Override
         protected BaasLink onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject data = parseJson(response,box).getObject("data");
+            JsonObject data = parseData(response, box);
             BaasLink l = new BaasLink(null,null);
             l.update(data);
             return l;
@@ -352,9 +393,15 @@ public final class BaasLink implements Parcelable{
             this.link = link;
         }
 
+        @Override
+        protected boolean buildsNewResult() {
+            // updates the link in place
+            return false;
+        }
+
         @Override
         protected BaasLink onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject data = parseJson(response, box).getObject("data");
+            JsonObject data = parseData(response, box);
             link.update(data);
             return link;
         }
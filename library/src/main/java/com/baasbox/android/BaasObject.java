@@ -256,6 +256,7 @@ public abstract class BaasObject implements Parcelable {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             return null;
         }
 
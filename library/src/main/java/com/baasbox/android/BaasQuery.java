@@ -19,10 +19,12 @@ package com.baasbox.android;
 import android.text.TextUtils;
 import com.baasbox.android.impl.Logger;
 import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
 import com.baasbox.android.net.HttpRequest;
 import org.apache.http.HttpResponse;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -37,20 +39,21 @@ public class BaasQuery {
 
         public static final Criteria ANY = new Criteria(new Builder());
 
-        private RequestFactory.Param[] params;
+        private final RequestFactory.Query query;
         private Builder originalBuilder;
 
         private Criteria(Builder builder){
             this.originalBuilder=builder;
-            this.params = builder.toFilterParams();
+            RequestFactory.Param[] params = builder.toFilterParams();
+            this.query = params == null ? null : new RequestFactory.Query(params);
         }
 
         public final Builder buildUpon(){
             return new Builder(originalBuilder);
         }
 
-        final RequestFactory.Param[] toParams(){
-            return this.params;
+        final RequestFactory.Query toQuery(){
+            return this.query;
         }
     }
 
@@ -63,7 +66,7 @@ public class BaasQuery {
         int records;
     }
 
-    private final RequestFactory.Param[] params;
+    private final RequestFactory.Query query;
     private final String collOrUsr;
     private final int mode;
     private final Builder originalBuilder;
@@ -80,7 +83,8 @@ public class BaasQuery {
         this.mode =mode;
         this.collOrUsr=collectionOrUser;
         this.originalBuilder = builder;
-        this.params=originalBuilder.toParams();
+        RequestFactory.Param[] params = originalBuilder.toParams();
+        this.query = params == null ? null : new RequestFactory.Query(params);
     }
 
     @Override
@@ -89,8 +93,8 @@ public class BaasQuery {
         sb.append("BaasQuery<");
         sb.append("mode: ").append(modeString(mode)).append(",");
         sb.append("on: ").append(String.valueOf(collOrUsr)).append(",");
-        if (params != null){
-            for (RequestFactory.Param p: params){
+        if (query != null){
+            for (RequestFactory.Param p: query.params){
                 sb.append(p.paramName).append(": ").append(p.paramValue).append(",");
             }
 
@@ -119,7 +123,7 @@ public class BaasQuery {
     public RequestToken query(String what,int flags,BaasHandler<List<JsonObject>> handler){
         if (mode == COLLECTIONS && what==null) throw new IllegalArgumentException("collection cannot be null");
         BaasBox box = BaasBox.getDefaultChecked();
-        QueryRequest request = new QueryRequest(box,mode,collOrUsr,params, flags,handler);
+        QueryRequest request = new QueryRequest(box,mode,collOrUsr,query, flags,handler);
         return box.submitAsync(request);
     }
 
@@ -130,52 +134,90 @@ public class BaasQuery {
     public BaasResult<List<JsonObject>> querySync(String what){
         if (mode == COLLECTIONS && what==null)throw new IllegalArgumentException("collection cannot be null");
         BaasBox box = BaasBox.getDefaultChecked();
-        QueryRequest req = new QueryRequest(box,mode,what,params, RequestOptions.DEFAULT,null);
+        QueryRequest req = new QueryRequest(box,mode,what,query, RequestOptions.DEFAULT,null);
         return box.submitSync(req);
     }
 
 
+    /**
+     * Streams the results of this query: they are delivered to <code>consumer</code>
+     * in batches while the response is received, without building the whole list.
+     *
+     * @param batchSize the maximum number of results delivered at a time
+     * @param consumer  the consumer of the results, invoked on a background thread
+     * @param flags     {@link RequestOptions}
+     * @param handler   a callback to be invoked with the number of delivered results
+     * @return a {@link com.baasbox.android.RequestToken} to manage the request
+     */
+    public RequestToken stream(int batchSize, ItemStreamHandler<JsonObject> consumer, int flags, BaasHandler<Long> handler){
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitAsync(streamTask(box, batchSize, consumer, flags, handler));
+    }
+
+    public BaasResult<Long> streamSync(int batchSize, ItemStreamHandler<JsonObject> consumer){
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitSync(streamTask(box, batchSize, consumer, RequestOptions.DEFAULT, null));
+    }
+
+    private StreamList<JsonObject> streamTask(BaasBox box, int batchSize, ItemStreamHandler<JsonObject> consumer, int flags, BaasHandler<Long> handler){
+        if (mode == COLLECTIONS && collOrUsr==null) throw new IllegalArgumentException("collection cannot be null");
+        return new StreamList<JsonObject>(box, endpoint(box, mode, collOrUsr), query, READER, batchSize, consumer, flags, handler);
+    }
+
+    private static final DocumentReader<JsonObject> READER = new DocumentReader<JsonObject>() {
+        @Override
+        public JsonObject read(JsonInput in) throws IOException {
+            JsonObject jo = JsonObject.decode(in);
+            jo.remove("@rid");
+            return jo;
+        }
+    };
+
+    private static String endpoint(BaasBox box, int mode, String what){
+        String endpoint;
+        switch (mode){
+            case COLLECTIONS:
+                endpoint =box.requestFactory.getEndpoint("document/{}",what);
+                break;
+            case USERS:
+                endpoint =box.requestFactory.getEndpoint("users");
+                break;
+            case FOLLOWERS:
+                if(what == null){
+                    endpoint=box.requestFactory.getEndpoint("followers");
+                } else {
+                    endpoint=box.requestFactory.getEndpoint("followers/{}",what);
+                }
+                break;
+            case FILES:
+                endpoint = box.requestFactory.getEndpoint("file/details");
+                break;
+            case FOLLOWING:
+                if(what == null){
+                    endpoint=box.requestFactory.getEndpoint("following");
+                } else {
+                    endpoint=box.requestFactory.getEndpoint("following/{}",what);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported mode");
+        }
+        return endpoint;
+    }
+
     private static class QueryRequest extends NetworkTask<List<JsonObject>>{
-        private RequestFactory.Param[] params;
+        private RequestFactory.Query query;
         private String endpoint;
-        protected QueryRequest(BaasBox box,int mode,String what,RequestFactory.Param[] params, int flags, BaasHandler<List<JsonObject>> handler) {
+        protected QueryRequest(BaasBox box,int mode,String what,RequestFactory.Query query, int flags, BaasHandler<List<JsonObject>> handler) {
             super(box, flags, handler);
-            this.params=params;
-            String endpoint;
-            switch (mode){
-                case COLLECTIONS:
-                    endpoint =box.requestFactory.getEndpoint("document/{}",what);
-                    break;
-                case USERS:
-                    endpoint =box.requestFactory.getEndpoint("users");
-                    break;
-                case FOLLOWERS:
-                    if(what == null){
-                        endpoint=box.requestFactory.getEndpoint("followers");
-                    } else {
-                        endpoint=box.requestFactory.getEndpoint("followers/{}");
-                    }
-                    break;
-                case FILES:
-                    endpoint = box.requestFactory.getEndpoint("file/details");
-                    break;
-                case FOLLOWING:
-                    if(what == null){
-                        endpoint=box.requestFactory.getEndpoint("following");
-                    } else {
-                        endpoint=box.requestFactory.getEndpoint("following/{}");
-                    }
-                    break;
-                default:
-                    throw new IllegalArgumentException("unsupported mode");
-            }
-            this.endpoint=endpoint;
+            this.query=query;
+            this.endpoint=endpoint(box, mode, what);
         }
 
         @Override
         protected List<JsonObject> onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonArray a=parseJson(response,box).getArray("data");
-            List<JsonObject> r = new ArrayList<JsonObject>();
+            JsonArray a=parseJsonLazily(response,box).getArray("data");
+            List<JsonObject> r = new ArrayList<JsonObject>(a.size());
             for(Object o:a){
                 if(o instanceof JsonObject){
                     JsonObject jo = (JsonObject)o;
@@ -191,7 +233,7 @@ public class BaasQuery {
 
         @Override
         protected HttpRequest request(BaasBox box) {
-            return box.requestFactory.get(endpoint,params);
+            return box.requestFactory.get(endpoint,query);
         }
     }
 
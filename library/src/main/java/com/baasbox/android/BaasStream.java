@@ -16,10 +16,12 @@
 package com.baasbox.android;
 
 import com.baasbox.android.impl.DiskLruCache;
+import com.baasbox.android.impl.PooledBufferedInputStream;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -54,11 +56,20 @@ public final class BaasStream extends FilterInputStream {
 
 // --------------------------- CONSTRUCTORS ---------------------------
     BaasStream(String id, DiskLruCache.Snapshot s) {
-        super(s.getInputStream(0));
+        super(new PooledBufferedInputStream(s.getInputStream(0)));
         this.id = id;
         this.contentLength = s.getLength(0);
         this.contentType = null;
         this.entity = null;
+        this.snapshot = s;
+    }
+
+    BaasStream(String id, byte[] data) {
+        super(new ByteArrayInputStream(data));
+        this.id = id;
+        this.contentLength = data.length;
+        this.contentType = null;
+        this.entity = null;
         this.snapshot = null;
     }
 
@@ -76,12 +87,12 @@ public final class BaasStream extends FilterInputStream {
         contentLength = entity.getContentLength();
     }
 
-    static BufferedInputStream getInput(HttpEntity entity) throws IOException {
+    static InputStream getInput(HttpEntity entity) throws IOException {
         InputStream in = entity.getContent();
-        if (in instanceof BufferedInputStream) {
-            return (BufferedInputStream) in;
+        if (in instanceof BufferedInputStream || in instanceof PooledBufferedInputStream) {
+            return in;
         }
-        return new BufferedInputStream(in);
+        return new PooledBufferedInputStream(in);
     }
 
 // ------------------------ INTERFACE METHODS ------------------------
@@ -20,10 +20,12 @@ import android.os.Parcelable;
 import android.text.TextUtils;
 import com.baasbox.android.impl.Logger;
 import com.baasbox.android.json.JsonArray;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
 import com.baasbox.android.net.HttpRequest;
 import org.apache.http.HttpResponse;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -266,6 +268,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             return null;
         }
 
@@ -337,9 +340,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected JsonArray onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject resp = parseJson(response, box);
-            JsonArray data = resp.getArray("data");
-            return data;
+            return parseDataArray(response, box);
         }
 
         @Override
@@ -475,6 +476,42 @@ public class BaasUser implements Parcelable {
         return box.submitAsync(users);
     }
 
+    /**
+     * Asynchronously streams the users that match <code>filter</code>:
+     * they are delivered to <code>consumer</code> in batches while the response is received,
+     * without building the whole list.
+     *
+     * @param filter    an optional filter to apply to the request
+     * @param batchSize the maximum number of users delivered at a time
+     * @param consumer  the consumer of the users, invoked on a background thread
+     * @param flags     {@link RequestOptions}
+     * @param handler   an handler to be invoked with the number of delivered users
+     * @return a {@link com.baasbox.android.RequestToken} to manage the request
+     */
+    public static RequestToken streamAll(BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasUser> consumer, int flags, BaasHandler<Long> handler) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitAsync(streamTask(box, filter, batchSize, consumer, flags, handler));
+    }
+
+    /**
+     * Synchronously streams the users that match <code>filter</code> to <code>consumer</code>.
+     *
+     * @param filter    an optional filter to apply to the request
+     * @param batchSize the maximum number of users delivered at a time
+     * @param consumer  the consumer of the users
+     * @return the result of the request, with the number of delivered users
+     */
+    public static BaasResult<Long> streamAllSync(BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasUser> consumer) {
+        BaasBox box = BaasBox.getDefaultChecked();
+        return box.submitSync(streamTask(box, filter, batchSize, consumer, RequestOptions.DEFAULT, null));
+    }
+
+    private static StreamList<BaasUser> streamTask(BaasBox box, BaasQuery.Criteria filter, int batchSize, ItemStreamHandler<BaasUser> consumer, int flags, BaasHandler<Long> handler) {
+        String endpoint = box.requestFactory.getEndpoint("users");
+        return new StreamList<BaasUser>(box, endpoint, filter == null ? null : filter.toQuery(),
+                new UserReader(box), batchSize, consumer, flags, handler);
+    }
+
     private static void writeStringSet(Parcel p, Set<String> s) {
         p.writeInt(s.size());
         p.writeStringArray(s.toArray(new String[s.size()]));
@@ -1094,7 +1131,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected BaasUser onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject data = parseJson(response, box).getObject("data");
+            JsonObject data = parseData(response, box);
             Logger.debug("RECEIVED " + data.toString());
             String tok = data.getString("X-BB-SESSION");
             if (tok == null) throw new BaasException("Could not parse server response, missing token");
@@ -1125,6 +1162,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             //todo password reset
             return null;
         }
@@ -1145,7 +1183,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected BaasUser onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            final JsonObject content = parseJson(response, box).getObject("data");
+            final JsonObject content = parseData(response, box);
             String token = content.getString("X-BB-SESSION");
             if (token == null) throw new BaasException("Could not parse server response, missing token");
             userSignUp.update(content);
@@ -1172,7 +1210,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected BaasUser onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject data = parseJson(response, box).getObject("data");
+            JsonObject data = parseData(response, box);
             String token = data.getString("X-BB-SESSION");
             if (token == null) throw new BaasException("Could not parse server response, missing token");
             user.update(data);
@@ -1202,6 +1240,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             user.setPassword(password);
             box.store.storeUser(user);
             return null;
@@ -1229,7 +1268,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected BaasUser onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject data = parseJson(response, box).getObject("data");
+            JsonObject data = parseData(response, box);
             user.update(data);
             box.store.storeUser(user);
             return user;
@@ -1266,6 +1305,7 @@ public class BaasUser implements Parcelable {
 
         @Override
         protected Void onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+            discardBody(response);
             box.store.clear();
 
             return null;
@@ -1301,9 +1341,15 @@ public class BaasUser implements Parcelable {
             this.user = user;
         }
 
+        @Override
+        protected boolean buildsNewResult() {
+            // updates the user in place
+            return false;
+        }
+
         @Override
         protected BaasUser onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonObject data = parseJson(response, box).getObject("data");
+            JsonObject data = parseData(response, box);
             user.update(data);
             if (user.isCurrent()) {
                 box.store.storeUser(user);
@@ -1323,8 +1369,39 @@ public class BaasUser implements Parcelable {
         }
     }
 
+    /**
+     * Reads users from a list response, the entry of the current user
+     * updates it instead of creating a new instance.
+     */
+    private static final class UserReader implements DocumentReader<BaasUser> {
+        private final BaasBox box;
+        private BaasUser current;
+
+        UserReader(BaasBox box) {
+            this.box = box;
+            this.current = BaasUser.current();
+        }
+
+        @Override
+        public BaasUser read(JsonInput in) throws IOException {
+            return user(JsonObject.decode(in));
+        }
+
+        BaasUser user(JsonObject userJson) {
+            String userName = userJson.getObject("user").getString("name");
+            if (current != null && current.username.equals(userName)) {
+                BaasUser user = current;
+                user.update(userJson);
+                box.store.storeUser(user);
+                current = null;
+                return user;
+            }
+            return new BaasUser(userJson);
+        }
+    }
+
     private static class FetchUsers extends NetworkTask<List<BaasUser>> {
-        protected final RequestFactory.Param[] params;
+        protected final RequestFactory.Query params;
         protected final String endpoint;
 
         protected FetchUsers(BaasBox box, String endpoint, String user, BaasQuery.Criteria filter,int flags, BaasHandler<List<BaasUser>> handler) {
@@ -1332,7 +1409,7 @@ public class BaasUser implements Parcelable {
             if (filter == null) {
                 params = null;
             } else {
-                params = filter.toParams();
+                params = filter.toQuery();
             }
             if (user != null) {
                 this.endpoint = box.requestFactory.getEndpoint(endpoint, user);
@@ -1341,24 +1418,19 @@ public class BaasUser implements Parcelable {
             }
         }
 
+        @Override
+        protected boolean buildsNewResult() {
+            // the current user is updated in place
+            return false;
+        }
+
         @Override
         protected final List<BaasUser> onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
-            JsonArray array = parseJson(response, box).getArray("data");
+            JsonArray array = parseDataArray(response, box);
             List<BaasUser> users = new ArrayList<BaasUser>(array.size());
-            BaasUser current = BaasUser.current();
+            UserReader reader = new UserReader(box);
             for (Object o : array) {
-                JsonObject userJson = (JsonObject) o;
-                String userName = userJson.getObject("user").getString("name");
-                BaasUser user;
-                if (current != null && current.username.equals(userName)) {
-                    current.update(userJson);
-                    box.store.storeUser(current);
-                    user = current;
-                    current = null;
-                } else {
-                    user = new BaasUser(userJson);
-                }
-                users.add(user);
+                users.add(reader.user((JsonObject) o));
             }
             return users;
         }
@@ -1382,7 +1454,7 @@ public class BaasUser implements Parcelable {
         @Override
         protected BaasUser onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
             if (follow) {
-                JsonObject data = parseJson(response, box).getObject("data");
+                JsonObject data = parseData(response, box);
 
                 user.update(data);
             } else {
@@ -5,8 +5,10 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import com.baasbox.android.impl.DiskLruCache;
 import com.baasbox.android.impl.Logger;
+import com.baasbox.android.impl.MemoryLruCache;
 
 import java.io.*;
+import java.util.HashMap;
 
 /**
  * Created by Andrea Tortorella on 05/02/14.
@@ -16,11 +18,38 @@ final class Cache {
 
     private static final String BAASBOX_CACHE_DIR = "baasbox-cache-dir";
     private static final long MAX_CACHE_SIZE = 10 * 1024 * 1024;
+    // entries larger than this share of the memory budget stay on disk
+    private static final int MAX_ENTRY_SHARE = 8;
 
     private final DiskLruCache mLruCache;
+    private final MemoryLruCache mMemory;
+    // dirty entries of the memory tier, by key, guards every write to the disk tier
+    private final HashMap<String, byte[]> mUnwritten = new HashMap<String, byte[]>();
+    // generation of the last write or removal of each key, kept while disk reads are pending
+    private final HashMap<String, Long> mWrites = new HashMap<String, Long>();
+    private long mGeneration;
+    private int mPendingReads;
 
 // --------------------------- CONSTRUCTORS ---------------------------
-    Cache(Context context) {
+
+    /**
+     * Creates the cache, with a memory tier of <code>memorySize</code> bytes
+     * in front of the disk one.
+     * Entries are read into memory when they are read from disk, or written to it, and fit the memory tier;
+     * entries evicted from memory that could not be written to disk are written when evicted,
+     * unless their key has been written or removed since.
+     * Entries read from disk, or streamed to it, are not read into memory if their key
+     * has been written or removed in the meantime.
+     */
+    Cache(Context context, long memorySize) {
+        mMemory = new MemoryLruCache(memorySize, memorySize / MAX_ENTRY_SHARE) {
+            @Override
+            protected void entryEvicted(String key, byte[] data, boolean dirty) {
+                if (dirty) {
+                    writeBack(key, data);
+                }
+            }
+        };
         try {
             mLruCache = DiskLruCache.open(getCacheDir(context),
                     appVersion(context),
@@ -45,60 +74,186 @@ final class Cache {
 
 // -------------------------- OTHER METHODS --------------------------
 
+    /**
+     * Returns the memory tier, which keeps the hit, miss and eviction counts.
+     */
+    MemoryLruCache memory() {
+        return mMemory;
+    }
+
     public CacheStream beginStream(String id) throws BaasException {
         DiskLruCache.Editor editor = null;
         OutputStream out = null;
+        long generation;
+        synchronized (mUnwritten) {
+            mUnwritten.remove(id);
+            mMemory.remove(id);
+            written(id);
+            generation = beginRead(id);
+        }
         try {
             editor = mLruCache.edit(id);
+            if (editor == null) {
+                throw new IOException("cache entry " + id + " is already being written");
+            }
             out = editor.newOutputStream(0);
-            return new CacheStream(out, editor);
+            return new CacheStream(out, editor, id, generation);
         } catch (IOException e) {
+            endRead(id, generation, null);
             throw new BaasIOException(e);
         }
     }
 
-    public byte[] get(String id) {
+    /**
+     * Returns the whole content of an entry, from memory or read from disk, or null if it is not cached.
+     */
+    byte[] get(String id) throws BaasIOException {
+        byte[] data;
+        long generation;
+        synchronized (mUnwritten) {
+            data = mMemory.get(id);
+            if (data != null) {
+                return data;
+            }
+            generation = beginRead(id);
+        }
         DiskLruCache.Snapshot s = null;
-        DataInputStream din = null;
-
         try {
             s = mLruCache.get(id);
             if (s == null) return null;
-            int len = (int) s.getLength(0);
-            byte[] bytes = new byte[len];
-            din = new DataInputStream(s.getInputStream(0));
-            din.readFully(bytes);
-            return bytes;
+            data = readFully(s.getInputStream(0), (int) s.getLength(0));
+            return data;
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new BaasIOException("Error while reading from cache", e);
         } finally {
-            if (din != null) {
-                try {
-                    din.close();
-                } catch (IOException e) {
-                    // ignored
-                }
-            }
-
+            if (s != null) s.close();
+            endRead(id, generation, data);
+        }
+    }
 
-            if (s != null) {
-                s.close();
+    void remove(String id) {
+        synchronized (mUnwritten) {
+            mUnwritten.remove(id);
+            mMemory.remove(id);
+            written(id);
+            try {
+                mLruCache.remove(id);
+            } catch (IOException e) {
+                Logger.error(e, "Error using cache");
             }
         }
     }
 
     public BaasStream getStream(String id) throws BaasIOException {
+        byte[] data;
+        long generation;
+        synchronized (mUnwritten) {
+            data = mMemory.get(id);
+            if (data != null) {
+                return new BaasStream(id, data);
+            }
+            generation = beginRead(id);
+        }
         DiskLruCache.Snapshot s = null;
         try {
             s = mLruCache.get(id);
             if (s == null) return null;
-            return new BaasStream(id, s);
+            long length = s.getLength(0);
+            if (!mMemory.accepts(length)) {
+                return new BaasStream(id, s);
+            }
+            try {
+                data = readFully(s.getInputStream(0), (int) length);
+            } finally {
+                s.close();
+            }
+            return new BaasStream(id, data);
         } catch (IOException e) {
             throw new BaasIOException("Error while reading from cache", e);
+        } finally {
+            endRead(id, generation, data);
         }
     }
 
+    /**
+     * Starts a disk read of <code>id</code>, to be ended by {@link #endRead(String, long, byte[])},
+     * and returns the generation of the key. Must hold <code>mUnwritten</code>.
+     */
+    private long beginRead(String id) {
+        mPendingReads++;
+        Long generation = mWrites.get(id);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * Ends a disk read of <code>id</code>, moving <code>data</code> into memory, if not null,
+     * unless the key has been written or removed since the read began.
+     */
+    private void endRead(String id, long generation, byte[] data) {
+        synchronized (mUnwritten) {
+            boolean current = isCurrent(id, generation);
+            if (--mPendingReads == 0) {
+                mWrites.clear();
+            }
+            if (current && data != null) {
+                mMemory.put(id, data, false);
+            }
+        }
+    }
+
+    private boolean isCurrent(String id, long generation) {
+        Long last = mWrites.get(id);
+        return (last == null ? 0 : last) == generation;
+    }
+
+    /**
+     * Records a write or removal of <code>id</code> for the pending reads.
+     * Must hold <code>mUnwritten</code>.
+     */
+    private void written(String id) {
+        if (mPendingReads > 0) {
+            mWrites.put(id, ++mGeneration);
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(data, offset, length - offset);
+            if (read < 0) throw new EOFException("cache entry shorter than its length");
+            offset += read;
+        }
+        return data;
+    }
+
     public void put(String id, byte[] data) {
+        synchronized (mUnwritten) {
+            written(id);
+            boolean written = writeToDisk(id, data);
+            if (mMemory.put(id, data, !written) && !written) {
+                mUnwritten.put(id, data);
+            } else {
+                mUnwritten.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Writes a dirty entry evicted from memory to disk, unless it is stale:
+     * its key was written again or removed after the entry was stored.
+     */
+    private void writeBack(String id, byte[] data) {
+        synchronized (mUnwritten) {
+            if (mUnwritten.get(id) != data) {
+                return;
+            }
+            mUnwritten.remove(id);
+            writeToDisk(id, data);
+        }
+    }
+
+    private boolean writeToDisk(String id, byte[] data) {
         DiskLruCache.Editor edit = null;
         OutputStream out = null;
         try {
@@ -107,8 +262,10 @@ final class Cache {
             out.write(data);
             out.flush();
             edit.commit();
+            return true;
         } catch (IOException e) {
             Logger.error(e, "Error using cache");
+            return false;
         } finally {
             if (out != null) {
                 try {
@@ -125,19 +282,63 @@ final class Cache {
 
 // -------------------------- INNER CLASSES --------------------------
 
-    static class CacheStream extends FilterOutputStream {
+    /**
+     * The stream of a new disk entry, that also keeps its content
+     * for the memory tier while it fits.
+     */
+    class CacheStream extends FilterOutputStream {
         private final DiskLruCache.Editor editor;
+        private final String id;
+        private final long generation;
+        private ByteArrayOutputStream copy;
+        private boolean ended;
 
-        CacheStream(OutputStream out, DiskLruCache.Editor editor) {
+        CacheStream(OutputStream out, DiskLruCache.Editor editor, String id, long generation) {
             super(out);
             this.editor = editor;
+            this.id = id;
+            this.generation = generation;
+            this.copy = mMemory.maxEntrySize() > 0 ? new ByteArrayOutputStream() : null;
         }
 
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            keep(1);
+            if (copy != null) copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            keep(len);
+            if (copy != null) copy.write(b, off, len);
+        }
+
+        private void keep(int len) {
+            if (copy != null && !mMemory.accepts(copy.size() + len)) {
+                copy = null;
+            }
+        }
+
+        /**
+         * Commits the entry, unless its key has been written or removed
+         * since the stream began: the newer content is kept then.
+         */
         public void commit() throws BaasException {
-            try {
-                editor.commit();
-            } catch (IOException e) {
-                throw new BaasException(e);
+            byte[] data = copy == null ? null : copy.toByteArray();
+            copy = null;
+            synchronized (mUnwritten) {
+                if (!isCurrent(id, generation)) {
+                    return;
+                }
+                try {
+                    editor.commit();
+                } catch (IOException e) {
+                    throw new BaasException(e);
+                }
+                ended = true;
+                endRead(id, generation, data);
             }
         }
 
@@ -147,6 +348,10 @@ final class Cache {
             if (editor != null) {
                 editor.abortUnlessCommitted();
             }
+            if (!ended) {
+                ended = true;
+                endRead(id, generation, null);
+            }
         }
     }
 }
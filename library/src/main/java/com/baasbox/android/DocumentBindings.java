@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link com.baasbox.android.DocumentReader}s of model classes, used by the typed
+ * entry points that take a class, such as {@link com.baasbox.android.BaasDocument#fetchAll(String, Class, BaasQuery.Criteria, BaasHandler)}.
+ * <p>
+ * Readers are registered once, usually when the application starts,
+ * and looked up by class without reflection.
+ * </p>
+ *
+ * @since 0.9.3
+ */
+public final class DocumentBindings {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final ConcurrentHashMap<Class<?>, DocumentReader<?>> READERS =
+            new ConcurrentHashMap<Class<?>, DocumentReader<?>>();
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Registers the reader of the model objects of <code>type</code>,
+     * replacing the previous one.
+     *
+     * @param type   the model class not <code>null</code>
+     * @param reader the reader of its objects not <code>null</code>
+     * @param <T>    the type of the model objects
+     */
+    public static <T> void register(Class<T> type, DocumentReader<? extends T> reader) {
+        if (type == null) throw new IllegalArgumentException("type cannot be null");
+        if (reader == null) throw new IllegalArgumentException("reader cannot be null");
+        READERS.put(type, reader);
+    }
+
+    /**
+     * Returns the reader registered for <code>type</code>.
+     *
+     * @param type the model class
+     * @param <T>  the type of the model objects
+     * @return the reader
+     * @throws java.lang.IllegalArgumentException if no reader is registered for <code>type</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DocumentReader<T> reader(Class<T> type) {
+        if (type == null) throw new IllegalArgumentException("type cannot be null");
+        DocumentReader<T> reader = (DocumentReader<T>) READERS.get(type);
+        if (reader == null) {
+            throw new IllegalArgumentException("no DocumentReader registered for " + type.getName());
+        }
+        return reader;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private DocumentBindings() {
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import com.baasbox.android.json.JsonInput;
+
+import java.io.IOException;
+
+/**
+ * Interface definition for a binding that reads documents received from BaasBox
+ * directly into model objects, without building a {@link com.baasbox.android.BaasDocument} first.
+ * <p>
+ * Implementations consume the tokens of a single document,
+ * system fields such as <code>id</code>, <code>@version</code> and <code>_author</code>
+ * are read like any other field, and unknown fields should be skipped
+ * through {@link com.baasbox.android.json.JsonInput#skipValue()}.
+ * </p>
+ *
+ * @param <T> the type of the model objects
+ */
+public interface DocumentReader<T> {
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Reads a document.
+     *
+     * @param in the input, positioned at the beginning of the document object.
+     *           The whole object, up to its end, must be consumed.
+     * @return the model object
+     * @throws IOException if the content cannot be read
+     */
+    T read(JsonInput in) throws IOException;
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A precompiled endpoint pattern such as <code>document/{}/{}</code>.
+ * Each <code>{}</code> placeholder is replaced by a parameter
+ * encoded as a single path segment.
+ */
+final class EndpointTemplate {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final String PLACEHOLDER = "{}";
+    private static final int MAX_CACHED = 256;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final ConcurrentHashMap<String, EndpointTemplate> TEMPLATES =
+            new ConcurrentHashMap<String, EndpointTemplate>();
+
+    private final String[] literals;
+    private final int literalsLength;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Returns the compiled template for <code>pattern</code>,
+     * compiled templates are cached since patterns are usually constants.
+     */
+    static EndpointTemplate compile(String pattern) {
+        EndpointTemplate template = TEMPLATES.get(pattern);
+        if (template == null) {
+            template = new EndpointTemplate(pattern);
+            if (TEMPLATES.size() < MAX_CACHED) {
+                EndpointTemplate prev = TEMPLATES.putIfAbsent(pattern, template);
+                if (prev != null) template = prev;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Appends <code>segment</code> to <code>out</code> percent-encoding every
+     * character that is not allowed in a path segment.
+     */
+    static void encodeSegment(StringBuilder out, String segment) {
+        int len = segment.length();
+        for (int i = 0; i < len; i++) {
+            char c = segment.charAt(i);
+            if (isSegmentChar(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(out, c);
+            } else {
+                int end = i + 1;
+                if (Character.isHighSurrogate(c) && end < len && Character.isLowSurrogate(segment.charAt(end))) {
+                    end++;
+                }
+                byte[] bytes;
+                try {
+                    bytes = segment.substring(i, end).getBytes("UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new AssertionError(e);
+                }
+                for (byte b : bytes) {
+                    appendEscaped(out, b & 0xff);
+                }
+                i = end - 1;
+            }
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+    }
+
+    private static boolean isSegmentChar(char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+            return true;
+        }
+        switch (c) {
+            // unreserved
+            case '-': case '.': case '_': case '~':
+            // sub-delims
+            case '!': case '$': case '&': case '\'': case '(': case ')':
+            case '*': case '+': case ',': case ';': case '=':
+            // allowed in segments
+            case ':': case '@':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private EndpointTemplate(String pattern) {
+        List<String> parts = new ArrayList<String>();
+        int start = 0;
+        int idx;
+        while ((idx = pattern.indexOf(PLACEHOLDER, start)) != -1) {
+            parts.add(pattern.substring(start, idx));
+            start = idx + PLACEHOLDER.length();
+        }
+        parts.add(pattern.substring(start));
+        literals = parts.toArray(new String[parts.size()]);
+        int length = 0;
+        for (String l : literals) {
+            length += l.length();
+        }
+        literalsLength = length;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    int placeholders() {
+        return literals.length - 1;
+    }
+
+    /**
+     * Expands this template after <code>prefix</code>.
+     *
+     * @throws java.lang.IllegalArgumentException if the number of params
+     *                                            does not match the placeholders
+     */
+    String expand(String prefix, Object... params) {
+        int count = params == null ? 0 : params.length;
+        if (count != placeholders()) {
+            throw new IllegalArgumentException("Endpoint expects " + placeholders() +
+                    " parameters, got " + count);
+        }
+        StringBuilder sb = new StringBuilder(prefix.length() + literalsLength + 16 * count);
+        sb.append(prefix).append(literals[0]);
+        for (int i = 0; i < count; i++) {
+            Object param = params[i];
+            if (param == null) throw new IllegalArgumentException("Endpoint parameters cannot be null");
+            encodeSegment(sb, param.toString());
+            sb.append(literals[i + 1]);
+        }
+        return sb.toString();
+    }
+}
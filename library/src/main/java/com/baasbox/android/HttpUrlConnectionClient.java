@@ -18,9 +18,11 @@ package com.baasbox.android;
 import android.content.Context;
 import android.os.Build;
 
+import com.baasbox.android.impl.BufferPool;
 import com.baasbox.android.impl.Logger;
 import com.baasbox.android.net.HttpRequest;
 import com.baasbox.android.net.RestClient;
+import com.baasbox.android.net.StreamingBody;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -61,6 +63,7 @@ class HttpUrlConnectionClient implements RestClient {
 // ------------------------------ FIELDS ------------------------------
 
     private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 4 * 1024;
     private static final HostnameVerifier ACCEPT_ALL =
             new HostnameVerifier() {
                 @Override
@@ -255,14 +258,31 @@ class HttpUrlConnectionClient implements RestClient {
 
     private static void addBody(HttpRequest request, HttpURLConnection connection) throws IOException {
         InputStream in = request.body;
-        if (in != null) {
+        if (in instanceof StreamingBody) {
+            StreamingBody body = (StreamingBody) in;
+            long length = body.contentLength();
+            connection.setDoOutput(true);
+            // without a streaming mode the connection buffers the whole body
+            if (length >= 0 && length <= Integer.MAX_VALUE) {
+                connection.setFixedLengthStreamingMode((int) length);
+            } else {
+                connection.setChunkedStreamingMode(0);
+            }
+            OutputStream out = connection.getOutputStream();
+            try {
+                body.writeTo(out);
+            } finally {
+                body.close();
+                out.close();
+            }
+        } else if (in != null) {
             connection.setDoOutput(true);
             copyStream(in, connection.getOutputStream());
         }
     }
 
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1024];
+        byte[] buffer = BufferPool.shared().acquire(COPY_BUFFER_SIZE);
         int reads;
         try {
             while ((reads = in.read(buffer)) != -1) {
@@ -270,6 +290,7 @@ class HttpUrlConnectionClient implements RestClient {
             }
             out.flush();
         } finally {
+            BufferPool.shared().release(buffer);
             in.close();
             out.close();
         }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import java.util.List;
+
+/**
+ * Interface definition for a callback to be invoked with the items of a list request,
+ * as soon as they are decoded from the response.
+ * <p>
+ * The callback is invoked on a background thread, one batch at a time, while the response
+ * is still being received. The response is not read further until the callback returns,
+ * so a slow consumer slows down the download rather than accumulating items in memory.
+ * </p>
+ * <p>
+ * The handler of the request receives the number of items that were delivered.
+ * Canceling the request through its {@link com.baasbox.android.RequestToken} stops the delivery
+ * before the next batch, and the handler receives a canceled result.
+ * </p>
+ *
+ * @param <T> the type of the items
+ */
+public interface ItemStreamHandler<T> {
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Method invoked with the next batch of items.
+     *
+     * @param items the items decoded since the previous invocation, never empty
+     * @return true to continue receiving items, false to stop the request: the rest of the response
+     * is read without being decoded
+     * @throws Exception any exception thrown will be wrapped in a {@link com.baasbox.android.BaasException}
+     */
+    boolean onItems(List<T> items) throws Exception;
+}
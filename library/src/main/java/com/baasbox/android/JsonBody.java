@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import com.baasbox.android.json.JsonStructure;
+import com.baasbox.android.net.StreamingBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+/**
+ * A json request body that is serialized straight to the transport.
+ * The length is computed up front with a sizing pass that does not retain the content,
+ * the structure must not be modified until the request is sent.
+ * Utf-8 bodies are encoded by hand, other charsets go through a charset encoder.
+ */
+final class JsonBody extends StreamingBody {
+// ------------------------------ FIELDS ------------------------------
+
+    private final JsonStructure json;
+    private final String charset;
+    private final long length;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    JsonBody(JsonStructure json, String charset) {
+        this.json = json;
+        this.charset = charset;
+        try {
+            CountingOutputStream counter = new CountingOutputStream(null);
+            write(counter);
+            this.length = counter.count;
+        } catch (UnsupportedEncodingException e) {
+            throw new BaasRuntimeException("Charset " + charset + " is not supported", e);
+        } catch (IOException e) {
+            throw new BaasRuntimeException(e);
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(out);
+        write(counter);
+        if (counter.count != length) {
+            throw new IOException("Json body changed while being sent");
+        }
+    }
+
+    private void write(OutputStream out) throws IOException {
+        if ("UTF-8".equalsIgnoreCase(charset)) {
+            json.encode(out);
+            return;
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+        json.encode(writer);
+        writer.flush();
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int oneByte) throws IOException {
+            count++;
+            if (out != null) out.write(oneByte);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            this.count += count;
+            if (out != null) out.write(buffer, offset, count);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) out.flush();
+        }
+    }
+}
@@ -2,7 +2,14 @@ package com.baasbox.android;
 
 import android.os.Parcel;
 
+import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonStructure;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by eto on 17/02/14.
@@ -10,39 +17,188 @@ import com.baasbox.android.json.JsonObject;
 final class JsonWrapper extends JsonObject{
     private volatile boolean mDirty;
 
+    /**
+     * Fields set or removed since the last sync with the server,
+     * including the ones whose nested object or array has been handed out.
+     */
+    private final Set<String> mChanged = new LinkedHashSet<String>();
+
+    /**
+     * True when the changes cannot be told field by field:
+     * the content was never synced, was cleared or was exposed through an iterator.
+     */
+    private boolean mUntracked;
+
     JsonWrapper(){
-        super(new JsonObject());
+        super();
         mDirty = true;
+        mUntracked = true;
     }
 
     JsonWrapper(JsonObject o){
         super(o == null ? new JsonObject():o);
         mDirty = true;
+        mUntracked = true;
+    }
+
+    /**
+     * Wraps a freshly decoded object without copying it,
+     * <code>parsed</code> is left empty.
+     */
+    static JsonWrapper adopting(JsonObject parsed){
+        JsonWrapper w = new JsonWrapper();
+        w.adopt(parsed);
+        return w;
     }
 
     JsonWrapper(Parcel p){
         super(p);
         mDirty = (p.readByte() == 1);
+        mUntracked = (p.readByte() == 1);
+        int changed = p.readInt();
+        for (int i = 0; i < changed; i++) {
+            mChanged.add(p.readString());
+        }
     }
 
     @Override
-    protected void onModify() {
-        super.onModify();
+    protected void onModify(String name) {
+        super.onModify(name);
+        synchronized (mChanged) {
+            if (name == null) {
+                mUntracked = true;
+            } else {
+                mChanged.add(name);
+            }
+        }
         mDirty =true;
     }
 
+    /**
+     * Merges a freshly decoded object without copying it,
+     * <code>parsed</code> is left empty.
+     */
+    void mergeParsed(JsonObject parsed){
+        adopt(parsed);
+    }
+
     boolean isDirty(){
         return mDirty;
     }
 
     void setDirty(boolean dirty){
+        if (dirty) {
+            untrack();
+        } else {
+            clearChanges();
+        }
         mDirty=dirty;
     }
 
+    /**
+     * Forgets the changed fields, once the content matches the one on the server.
+     */
+    void clearChanges(){
+        synchronized (mChanged) {
+            mChanged.clear();
+            mUntracked = false;
+        }
+    }
+
+    /**
+     * Returns the names of the fields changed since the last sync,
+     * or <code>null</code> if the changes cannot be sent field by field,
+     * because a field was removed or the content was changed as a whole.
+     */
+    String[] changedFields(){
+        synchronized (mChanged) {
+            if (mUntracked) return null;
+            for (String name : mChanged) {
+                if (!contains(name)) return null;
+            }
+            return mChanged.toArray(new String[mChanged.size()]);
+        }
+    }
+
+    /**
+     * Nested structures can be modified without notice once handed out,
+     * so their fields are considered changed.
+     */
+    private <T> T exposed(String name, T value) {
+        if (value instanceof JsonStructure && contains(name)) {
+            synchronized (mChanged) {
+                mChanged.add(name);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(String name) {
+        return exposed(name, super.<T>get(name));
+    }
+
+    @Override
+    public JsonArray getArray(String name, JsonArray otherwise) {
+        JsonArray value = super.getArray(name, null);
+        return value == null ? otherwise : exposed(name, value);
+    }
+
+    @Override
+    public JsonObject getObject(String name, JsonObject otherwise) {
+        JsonObject value = super.getObject(name, null);
+        return value == null ? otherwise : exposed(name, value);
+    }
+
+    @Override
+    public JsonStructure getStructure(String name, JsonStructure otherwise) {
+        JsonStructure value = super.getStructure(name, null);
+        return value == null ? otherwise : exposed(name, value);
+    }
+
+    private void untrack() {
+        synchronized (mChanged) {
+            mUntracked = true;
+        }
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+        // entries can be removed or replaced through the iterator
+        untrack();
+        return super.iterator();
+    }
+
+    @Override
+    public Set<String> fields() {
+        // the key set supports removal
+        untrack();
+        return super.fields();
+    }
+
+    @Override
+    public JsonArray values() {
+        synchronized (mChanged) {
+            for (Map.Entry<String, Object> e : map.entrySet()) {
+                if (e.getValue() instanceof JsonStructure) {
+                    mChanged.add(e.getKey());
+                }
+            }
+        }
+        return super.values();
+    }
+
     @Override
     public void writeToParcel(Parcel dest, int flags) {
         super.writeToParcel(dest, flags);
         dest.writeByte((byte)(mDirty?1:0));
+        synchronized (mChanged) {
+            dest.writeByte((byte)(mUntracked?1:0));
+            dest.writeInt(mChanged.size());
+            for (String name : mChanged) {
+                dest.writeString(name);
+            }
+        }
     }
 
     public static final Creator<JsonWrapper> CREATOR = new Creator<JsonWrapper>() {
@@ -15,16 +15,29 @@
 
 package com.baasbox.android;
 
+import com.baasbox.android.impl.BufferPool;
+import com.baasbox.android.impl.Constants;
 import com.baasbox.android.impl.Logger;
+import com.baasbox.android.impl.ParallelExecutor;
 import com.baasbox.android.impl.Task;
+import com.baasbox.android.json.ArraySlices;
+import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonException;
+import com.baasbox.android.json.JsonInput;
 import com.baasbox.android.json.JsonObject;
+import com.baasbox.android.json.JsonPath;
+import com.baasbox.android.json.JsonToken;
 import com.baasbox.android.net.HttpRequest;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by Andrea Tortorella on 20/01/14.
@@ -32,8 +45,20 @@ import java.io.IOException;
 abstract class NetworkTask<R> extends Task<R> {
 // ------------------------------ FIELDS ------------------------------
 
+    private static final JsonPath DATA = JsonPath.compile("$.data");
+
+    /**
+     * Bodies that are not read are drained up to this size, so that the connection
+     * can be reused, larger ones are just closed.
+     */
+    private static final int MAX_DISCARDED = 64 * 1024;
+    private static final int DISCARD_BUFFER_SIZE = 4 * 1024;
+
     private final BaasBox box;
     private boolean retryOnFailedLogin;
+    private final int cachePolicy;
+    private final long cacheMaxAge;
+    private boolean deliveredCached;
 
 // --------------------------- CONSTRUCTORS ---------------------------
     protected NetworkTask(BaasBox box, int flags, BaasHandler<R> handler) {
@@ -44,6 +69,9 @@ abstract class NetworkTask<R> extends Task<R> {
         super(flags, handler);
         this.box = box;
         retryOnFailedLogin = retryLogin && (!box.config.sessionTokenExpires);
+        cachePolicy = flags & Constants.CACHE_POLICY_MASK;
+        int minutes = flags >>> Constants.CACHE_MAX_AGE_SHIFT;
+        cacheMaxAge = minutes == 0 ? box.config.responseCacheMaxAge : minutes * 60 * 1000L;
     }
 
 // -------------------------- OTHER METHODS --------------------------
@@ -101,20 +129,24 @@ abstract class NetworkTask<R> extends Task<R> {
     protected static JsonObject parseJson(HttpResponse response, BaasBox box) throws BaasException {
         HttpEntity entity = response.getEntity();
         if (entity != null) {
-            String content = null;
             try {
-                JsonObject decoded;
-                content = EntityUtils.toString(entity, box.config.httpCharset);
-                if (content == null) {
-                    decoded = new JsonObject();
-                } else {
-                    decoded = JsonObject.decode(content);
+                InputStream in = entity.getContent();
+                if (in == null) {
+                    return new JsonObject();
                 }
-                return decoded;
+                String charset = EntityUtils.getContentCharSet(entity);
+                if (charset == null) {
+                    charset = box.config.httpCharset;
+                }
+                // decodes straight from the stream, the reader closes it
+                if ("UTF-8".equalsIgnoreCase(charset)) {
+                    return JsonObject.decode(in);
+                }
+                return JsonObject.decode(new InputStreamReader(in, charset));
             } catch (IOException e) {
                 throw new BaasIOException("Could not parse server response", e);
             } catch (JsonException e) {
-                Logger.error("Not a json content: %s", content);
+                Logger.error("Not a json content: %s", e.getMessage());
                 throw new BaasIOException("Could not parse server response: " + response, e);
             }
         } else {
@@ -122,6 +154,266 @@ abstract class NetworkTask<R> extends Task<R> {
         }
     }
 
+    /**
+     * Reads only the <code>data</code> object of the response envelope,
+     * its siblings are skipped without being decoded.
+     *
+     * @return the data object, or null if the response has no data
+     */
+    protected static JsonObject parseData(HttpResponse response, BaasBox box) throws BaasException {
+        Object data = parseValue(response, box, DATA);
+        if (data == null || data instanceof JsonObject) {
+            return (JsonObject) data;
+        }
+        throw new BaasIOException("Unexpected server response: " + response);
+    }
+
+    /**
+     * Reads only the <code>data</code> array of the response envelope,
+     * its siblings are skipped without being decoded.
+     *
+     * @return the data array, or null if the response has no data
+     */
+    protected static JsonArray parseDataArray(HttpResponse response, BaasBox box) throws BaasException {
+        Object data = parseValue(response, box, DATA);
+        if (data == null || data instanceof JsonArray) {
+            return (JsonArray) data;
+        }
+        throw new BaasIOException("Unexpected server response: " + response);
+    }
+
+    /**
+     * Reads the first value selected by <code>path</code> in the response,
+     * any other value is skipped without being decoded.
+     *
+     * @return the selected value, or null if nothing matched
+     */
+    protected static <T> T parseValue(HttpResponse response, BaasBox box, JsonPath path) throws BaasException {
+        JsonInput in = openContent(response, box);
+        try {
+            return in == null ? null : path.<T>selectFirst(in);
+        } catch (JsonException e) {
+            Logger.error("Not a json content: %s", e.getMessage());
+            throw new BaasIOException("Could not parse server response: " + response, e);
+        } catch (IllegalStateException e) {
+            throw new BaasIOException("Unexpected server response: " + response, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Consumes the body of a response that is not read, so that
+     * the connection can be reused.
+     */
+    protected static void discardBody(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return;
+        }
+        InputStream in = null;
+        byte[] buffer = BufferPool.shared().acquire(DISCARD_BUFFER_SIZE);
+        try {
+            in = entity.getContent();
+            if (in != null) {
+                int left = MAX_DISCARDED;
+                int read;
+                while (left > 0 && (read = in.read(buffer)) != -1) {
+                    left -= read;
+                }
+            }
+        } catch (IOException e) {
+            // ignored, the body is not needed
+        } finally {
+            BufferPool.shared().release(buffer);
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+            }
+        }
+    }
+
+    private static JsonInput openContent(HttpResponse response, BaasBox box) throws BaasException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new BaasIOException("Could not parse server response: " + response);
+        }
+        try {
+            InputStream content = entity.getContent();
+            if (content == null) {
+                return null;
+            }
+            String charset = EntityUtils.getContentCharSet(entity);
+            if (charset == null) {
+                charset = box.config.httpCharset;
+            }
+            return JsonInput.open(content, charset);
+        } catch (IOException e) {
+            throw new BaasIOException("Could not parse server response", e);
+        }
+    }
+
+    /**
+     * Reads the items of the <code>data</code> array of a list response
+     * through <code>reader</code>, without building the json tree.
+     */
+    protected static <T> List<T> readList(HttpResponse response, BaasBox box, DocumentReader<T> reader) throws BaasException {
+        JsonInput in = openData(response, box);
+        try {
+            List<T> res = new ArrayList<T>();
+            if (in != null) {
+                while (in.hasNext()) {
+                    res.add(reader.read(in));
+                }
+            }
+            return res;
+        } catch (IOException e) {
+            throw new BaasIOException("Could not parse server response", e);
+        } catch (JsonException e) {
+            Logger.error("Not a json content: %s", e.getMessage());
+            throw new BaasIOException("Could not parse server response: " + response, e);
+        } catch (IllegalStateException e) {
+            throw new BaasIOException("Unexpected server response: " + response, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Reads the items of the <code>data</code> array of a list response like
+     * {@link #readList(org.apache.http.HttpResponse, BaasBox, DocumentReader)},
+     * but the array is first split into the byte ranges of its items, which are then
+     * read in order on the threads of the shared {@link com.baasbox.android.impl.ParallelExecutor}.
+     * Content that is not utf-8 is read sequentially.
+     *
+     * @param reader a thread safe reader
+     */
+    @SuppressWarnings("unchecked")
+    protected static <T> List<T> readListInParallel(HttpResponse response, BaasBox box, final DocumentReader<T> reader) throws BaasException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new BaasIOException("Could not parse server response: " + response);
+        }
+        String charset = EntityUtils.getContentCharSet(entity);
+        if (charset == null) {
+            charset = box.config.httpCharset;
+        }
+        if (!"UTF-8".equalsIgnoreCase(charset)) {
+            return readList(response, box, reader);
+        }
+        try {
+            final ArraySlices slices = ArraySlices.of(EntityUtils.toByteArray(entity), "data");
+            if (slices == null) {
+                return new ArrayList<T>();
+            }
+            final Object[] items = new Object[slices.size()];
+            ParallelExecutor executor = ParallelExecutor.shared();
+            executor.forEach(items.length, executor.maxParallelism(), new ParallelExecutor.Work() {
+                @Override
+                public void run(int from, int to) throws IOException {
+                    for (int i = from; i < to; i++) {
+                        JsonInput in = slices.open(i);
+                        try {
+                            items[i] = reader.read(in);
+                        } finally {
+                            closeQuietly(in);
+                        }
+                    }
+                }
+            });
+            return new ArrayList<T>((List<T>) Arrays.asList(items));
+        } catch (IOException e) {
+            throw new BaasIOException("Could not parse server response", e);
+        } catch (JsonException e) {
+            Logger.error("Not a json content: %s", e.getMessage());
+            throw new BaasIOException("Could not parse server response: " + response, e);
+        } catch (IllegalStateException e) {
+            throw new BaasIOException("Unexpected server response: " + response, e);
+        }
+    }
+
+    /**
+     * Opens the content of a list response and moves to the first item
+     * of its <code>data</code> array.
+     *
+     * @return the input positioned inside the array, or null if the response has no data
+     */
+    protected static JsonInput openData(HttpResponse response, BaasBox box) throws BaasException {
+        HttpEntity entity = response.getEntity();
+        JsonInput in = null;
+        try {
+            InputStream content = entity == null ? null : entity.getContent();
+            if (content == null) {
+                throw new BaasIOException("Could not parse server response: " + response);
+            }
+            String charset = EntityUtils.getContentCharSet(entity);
+            if (charset == null) {
+                charset = box.config.httpCharset;
+            }
+            in = JsonInput.open(content, charset);
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("data".equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                    in.beginArray();
+                    JsonInput data = in;
+                    in = null;
+                    return data;
+                }
+                in.skipValue();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new BaasIOException("Could not parse server response", e);
+        } catch (JsonException e) {
+            Logger.error("Not a json content: %s", e.getMessage());
+            throw new BaasIOException("Could not parse server response: " + response, e);
+        } catch (IllegalStateException e) {
+            throw new BaasIOException("Unexpected server response: " + response, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    static void closeQuietly(JsonInput in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+    /**
+     * Parses the response like {@link #parseJson(org.apache.http.HttpResponse, BaasBox)},
+     * but utf-8 content is decoded lazily, nested values are decoded on first access.
+     * Meant for list responses of which only part is usually read.
+     */
+    protected static JsonObject parseJsonLazily(HttpResponse response, BaasBox box) throws BaasException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new BaasIOException("Could not parse server response: " + response);
+        }
+        String charset = EntityUtils.getContentCharSet(entity);
+        if (charset == null) {
+            charset = box.config.httpCharset;
+        }
+        if (!"UTF-8".equalsIgnoreCase(charset)) {
+            return parseJson(response, box);
+        }
+        try {
+            return JsonObject.decodeLazily(EntityUtils.toByteArray(entity));
+        } catch (IOException e) {
+            throw new BaasIOException("Could not parse server response", e);
+        } catch (JsonException e) {
+            Logger.error("Not a json content: %s", e.getMessage());
+            throw new BaasIOException("Could not parse server response: " + response, e);
+        }
+    }
+
     protected R onServerError(int status, HttpResponse response, BaasBox box) throws BaasException {
         JsonObject jsonResponse = parseJson(response, box);
         throw new BaasServerException(status, jsonResponse);
@@ -146,9 +438,91 @@ abstract class NetworkTask<R> extends Task<R> {
         if (val != null) {
             return val;
         }
+        if (cachePolicy != 0 && request.method == HttpRequest.GET && cachesResponse()) {
+            return callThroughCache(request);
+        }
         Logger.info("requested %s", request);
         HttpResponse response = box.restClient.execute(request);
-        return parseResponse(response, box);
+        if (request.method == HttpRequest.GET) {
+            return parseResponse(response, box);
+        }
+        boolean written = response.getStatusLine().getStatusCode() / 100 == 2;
+        R result = parseResponse(response, box);
+        if (written) {
+            ResponseCache.invalidate(box, request);
+        }
+        return result;
+    }
+
+    /**
+     * Executes a read request following the cache policy of the task.
+     */
+    private R callThroughCache(HttpRequest request) throws BaasException {
+        String key = ResponseCache.key(box, request);
+        ResponseCache.Entry cached = ResponseCache.get(box, key, request);
+        if (cached != null) {
+            long age = cached.age();
+            R val;
+            switch (cachePolicy) {
+                case Constants.CACHE_FIRST:
+                    if (age <= cacheMaxAge && (val = replay(cached, key)) != null) {
+                        return val;
+                    }
+                    break;
+                case Constants.STALE_WHILE_REVALIDATE:
+                    if (age <= cacheMaxAge + box.config.responseCacheMaxStale && (val = replay(cached, key)) != null) {
+                        if (age > cacheMaxAge) {
+                            ResponseCache.revalidate(box, request, key);
+                        }
+                        return val;
+                    }
+                    break;
+                case Constants.CACHE_THEN_NETWORK:
+                    // a retry after a token refresh does not deliver it again
+                    if (!deliveredCached && buildsNewResult() && (val = replay(cached, key)) != null) {
+                        deliveredCached = true;
+                        deliverEarly(val);
+                    }
+                    break;
+            }
+        }
+        Logger.info("requested %s", request);
+        long requestedAt = System.currentTimeMillis();
+        HttpResponse response = box.restClient.execute(request);
+        return parseResponse(ResponseCache.store(box, key, response, requestedAt), box);
+    }
+
+    /**
+     * Parses a cached response, dropping it from the cache if it cannot be parsed.
+     */
+    private R replay(ResponseCache.Entry cached, String key) {
+        try {
+            return onOk(200, cached.toResponse(), box);
+        } catch (BaasException e) {
+            Logger.info(e, "Dropping unreadable cached response");
+            box.mCache.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if every call of {@link #onOk(int, org.apache.http.HttpResponse, BaasBox)}
+     * returns new objects, so that a cached result can be handed to the handler
+     * while the response of the server is parsed.
+     * Tasks that update an existing object, or that deliver items while parsing,
+     * return false and {@link com.baasbox.android.RequestOptions#CACHE_THEN_NETWORK} only
+     * delivers their server response.
+     */
+    protected boolean buildsNewResult() {
+        return true;
+    }
+
+    /**
+     * Returns true if the json responses of this task can be cached
+     * by the cache policies of {@link com.baasbox.android.RequestOptions}.
+     */
+    protected boolean cachesResponse() {
+        return true;
     }
 
     protected abstract HttpRequest request(BaasBox box);
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import com.baasbox.android.impl.BufferPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link com.baasbox.android.ByteOutput} for content of unknown length:
+ * data is collected in chunks borrowed from the {@link com.baasbox.android.impl.BufferPool}
+ * and copied only once, into an array of the exact size, when {@link #data()} is called.
+ */
+final class PooledByteOutput implements ByteOutput {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final BufferPool pool;
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private byte[] current;
+    private int pos;
+    private int size;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    PooledByteOutput() {
+        this(BufferPool.shared());
+    }
+
+    PooledByteOutput(BufferPool pool) {
+        this.pool = pool;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface ByteOutput ---------------------
+
+    @Override
+    public byte[] data() {
+        byte[] out = new byte[size];
+        int off = 0;
+        for (byte[] chunk : chunks) {
+            int n = chunk == current ? pos : chunk.length;
+            System.arraycopy(chunk, 0, out, off, n);
+            off += n;
+        }
+        return out;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void write(byte[] what, int offset, int count) throws IOException {
+        if ((offset | count) < 0 || offset + count > what.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (count > 0) {
+            if (current == null || pos == current.length) {
+                current = pool.acquire(CHUNK_SIZE);
+                chunks.add(current);
+                pos = 0;
+            }
+            int n = Math.min(count, current.length - pos);
+            System.arraycopy(what, offset, current, pos, n);
+            pos += n;
+            offset += n;
+            count -= n;
+            size += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (byte[] chunk : chunks) {
+            pool.release(chunk);
+        }
+        chunks.clear();
+        current = null;
+        pos = 0;
+        size = 0;
+    }
+}
@@ -17,8 +17,6 @@ package com.baasbox.android;
 
 import android.net.Uri;
 
-import com.baasbox.android.impl.Base64;
-import com.baasbox.android.impl.Logger;
 import com.baasbox.android.json.JsonArray;
 import com.baasbox.android.json.JsonObject;
 import com.baasbox.android.net.HttpRequest;
@@ -122,14 +120,9 @@ class RequestFactory {
         InputStream body = null;
         Map<String, String> headers = null;
         if (array != null) {
-            byte[] bytes = null;
-            try {
-                bytes = array.toString().getBytes(config.httpCharset);
-            } catch (UnsupportedEncodingException e) {
-                throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-            }
-            headers = setContentType(headers, config, JSON_CONTENT, bytes.length);
-            body = new ByteArrayInputStream(bytes);
+            JsonBody json = new JsonBody(array, config.httpCharset);
+            headers = setContentType(headers, config, JSON_CONTENT, json.contentLength());
+            body = json;
         }
         return post(uri, headers, body);
 
@@ -138,22 +131,17 @@ class RequestFactory {
         InputStream body = null;
         Map<String, String> headers = null;
         if (object != null) {
-            byte[] bytes = null;
-            try {
-                bytes = object.toString().getBytes(config.httpCharset);
-            } catch (UnsupportedEncodingException e) {
-                throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-            }
-            headers = setContentType(headers, config, JSON_CONTENT, bytes.length);
-            body = new ByteArrayInputStream(bytes);
+            JsonBody json = new JsonBody(object, config.httpCharset);
+            headers = setContentType(headers, config, JSON_CONTENT, json.contentLength());
+            body = json;
         }
         return post(uri, headers, body);
     }
 
-    private static Map<String, String> setContentType(Map<String, String> headers, BaasBox.Config config, String contentType, int length) {
+    private static Map<String, String> setContentType(Map<String, String> headers, BaasBox.Config config, String contentType, long length) {
         headers = headers == null ? new HashMap<String, String>() : headers;
         headers.put(CONTENT_HEADER, contentType + config.httpCharset);
-        headers.put(CONTENT_LENGTH, Integer.toString(length));
+        headers.put(CONTENT_LENGTH, Long.toString(length));
         return headers;
     }
 
@@ -161,14 +149,9 @@ class RequestFactory {
         InputStream body = null;
         Map<String, String> headers = null;
         if (object != null) {
-            byte[] bytes = null;
-            try {
-                bytes = object.toString().getBytes(config.httpCharset);
-            } catch (UnsupportedEncodingException e) {
-                throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-            }
-            headers = setContentType(headers, config, JSON_CONTENT, bytes.length);
-            body = new ByteArrayInputStream(bytes);
+            JsonBody json = new JsonBody(object, config.httpCharset);
+            headers = setContentType(headers, config, JSON_CONTENT, json.contentLength());
+            body = json;
         }
         return put(uri, headers, body);
     }
@@ -177,14 +160,9 @@ class RequestFactory {
         InputStream body = null;
         Map<String, String> headers = null;
         if (object != null) {
-            byte[] bytes = null;
-            try {
-                bytes = object.toString().getBytes(config.httpCharset);
-            } catch (UnsupportedEncodingException e) {
-                throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-            }
-            headers = setContentType(headers, config, JSON_CONTENT, bytes.length);
-            body = new ByteArrayInputStream(bytes);
+            JsonBody json = new JsonBody(object, config.httpCharset);
+            headers = setContentType(headers, config, JSON_CONTENT, json.contentLength());
+            body = json;
         }
         return put(uri, headers, body);
     }
@@ -197,14 +175,9 @@ class RequestFactory {
         InputStream body = null;
         Map<String, String> headers = null;
         if (array != null) {
-            byte[] bytes = null;
-            try {
-                bytes = array.toString().getBytes(config.httpCharset);
-            } catch (UnsupportedEncodingException e) {
-                throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-            }
-            headers = setContentType(headers, config, JSON_CONTENT, bytes.length);
-            body = new ByteArrayInputStream(bytes);
+            JsonBody json = new JsonBody(array, config.httpCharset);
+            headers = setContentType(headers, config, JSON_CONTENT, json.contentLength());
+            body = json;
         }
         return delete(uri, headers, body);
 
@@ -213,20 +186,15 @@ class RequestFactory {
         InputStream body = null;
         Map<String, String> headers = null;
         if (object != null) {
-            byte[] bytes = null;
-            try {
-                bytes = object.toString().getBytes(config.httpCharset);
-            } catch (UnsupportedEncodingException e) {
-                throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-            }
-            headers = setContentType(headers, config, JSON_CONTENT, bytes.length);
-            body = new ByteArrayInputStream(bytes);
+            JsonBody json = new JsonBody(object, config.httpCharset);
+            headers = setContentType(headers, config, JSON_CONTENT, json.contentLength());
+            body = json;
         }
         return delete(uri, headers, body);
     }
 
     public HttpRequest delete(String uri, Map<String, String> headers, InputStream body) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         return new HttpRequest(HttpRequest.DELETE, uri, headers, body);
     }
 
@@ -235,7 +203,7 @@ class RequestFactory {
     }
 
     public HttpRequest delete(String endpoint, Map<String, String> queryParams, Map<String, String> headers) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         if (queryParams != null) {
             String queryUrl = encodeParams(queryParams, config.httpCharset);
             endpoint = endpoint + "?" + queryUrl;
@@ -244,7 +212,7 @@ class RequestFactory {
     }
 
     public HttpRequest delete(String endpoint, Map<String, String> headers,Map<String,String>query, InputStream body) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         if (query != null) {
             String queryUrl = encodeParams(query, config.httpCharset);
             endpoint = endpoint + "?" + queryUrl;
@@ -253,25 +221,14 @@ class RequestFactory {
     }
 
 
-    private static Map<String, String> fillHeaders(Map<String, String> headers, BaasBox.Config config, BaasUser credentials) {
+    private Map<String, String> fillHeaders(Map<String, String> headers) {
         headers = headers == null ? new HashMap<String, String>() : headers;
         headers.put(APPCODE_HEADER_NAME, config.appCode);
         headers.put(USER_AGENT_HEADER_NAME, USER_AGENT_HEADER);
 
-        Logger.debug("Format %s", credentials);
-        if (credentials != null) {
-            Logger.debug("Format2 %s", credentials);
-            if(BaasBox.Config.AuthType.BASIC_AUTHENTICATION == config.authenticationType){
-                 if (credentials.getName() != null && credentials.getPassword() != null) {
-                        String plain = credentials.getName() + ':' + credentials.getPassword();
-                        String encoded = Base64.encodeToString(plain.getBytes(), Base64.NO_WRAP).trim();
-                        headers.put(BASIC_AUTH_HEADER_NAME, "Basic " + encoded);
-                    }
-            } else {
-                    if (credentials.getToken() != null) {
-                        headers.put(BB_SESSION_HEADER_NAME, credentials.getToken());
-                    }
-            }
+        BaasCredentialManager.AuthHeader auth = credentials.authHeader(config.authenticationType);
+        if (auth != null) {
+            headers.put(auth.name, auth.value);
         }
         return headers;
     }
@@ -302,7 +259,7 @@ class RequestFactory {
     }
 
     public HttpRequest get(String endpoint, Map<String, String> headers, Param... queryParams) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         if (queryParams != null) {
             String queryUrl = encodeQueryParams(queryParams, config.httpCharset);
             endpoint = endpoint + "?" + queryUrl;
@@ -310,6 +267,14 @@ class RequestFactory {
         return new HttpRequest(HttpRequest.GET, endpoint, headers, null);
     }
 
+    public HttpRequest get(String endpoint, Query query) {
+        Map<String, String> headers = fillHeaders(null);
+        if (query != null) {
+            endpoint = endpoint + "?" + query.encode(config.httpCharset);
+        }
+        return new HttpRequest(HttpRequest.GET, endpoint, headers, null);
+    }
+
     public static String encodeQueryParams(Param[] params, String charset) {
         try {
             StringBuilder sb = new StringBuilder();
@@ -336,12 +301,20 @@ class RequestFactory {
         return this.apiRoot+endpoint;
     }
 
-    public String getEndpoint(String endpointPattern, Object... params) {
-        if (params != null) {
-            for (Object param : params)
-                endpointPattern = endpointPattern.replaceFirst("\\{\\}", param.toString());
+    /**
+     * Returns the path of <code>url</code> relative to the api root, without the query,
+     * or null if it is not an url of the api.
+     */
+    String relativePath(String url) {
+        if (!url.startsWith(apiRoot)) {
+            return null;
         }
-        return this.apiRoot + endpointPattern;
+        int query = url.indexOf('?', apiRoot.length());
+        return query < 0 ? url.substring(apiRoot.length()) : url.substring(apiRoot.length(), query);
+    }
+
+    public String getEndpoint(String endpointPattern, Object... params) {
+        return EndpointTemplate.compile(endpointPattern).expand(apiRoot, params);
     }
 
     public HttpRequest post(String uri) {
@@ -370,7 +343,7 @@ class RequestFactory {
     }
 
     public HttpRequest post(String endpoint, Map<String, String> headers, Param... params) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         if (params != null) {
             String paramsUrl = encodeQueryParams(params, config.httpCharset);
             endpoint = endpoint + "?" + paramsUrl;
@@ -383,7 +356,7 @@ class RequestFactory {
     }
 
     public HttpRequest put(String uri, Map<String, String> headers, InputStream body) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         return new HttpRequest(HttpRequest.PUT, uri, headers, body);
     }
 
@@ -429,11 +402,7 @@ class RequestFactory {
     }
 
     private InputStream jsonInputStream(JsonObject object, String charset) {
-        try {
-            return new ByteArrayInputStream(object.toString().getBytes(charset));
-        } catch (UnsupportedEncodingException e) {
-            throw new BaasRuntimeException("Charset "+config.httpCharset+" is not supported",e);
-        }
+        return new JsonBody(object, charset);
     }
 
     private InputStream trail(String boundary, BaasBox.Config config) {
@@ -447,7 +416,7 @@ class RequestFactory {
     }
 
     public HttpRequest post(String uri, Map<String, String> headers, InputStream body) {
-        headers = fillHeaders(headers, config, credentials.currentUser());
+        headers = fillHeaders(headers);
         return new HttpRequest(HttpRequest.POST, uri, headers, body);
     }
 
@@ -478,4 +447,25 @@ class RequestFactory {
             this.paramValue = value;
         }
     }
+
+    /**
+     * An immutable list of query parameters that encodes itself only once
+     */
+    static final class Query {
+        final Param[] params;
+        private volatile String[] encoded;
+
+        Query(Param[] params) {
+            this.params = params;
+        }
+
+        String encode(String charset) {
+            String[] e = encoded;
+            if (e == null || !e[0].equals(charset)) {
+                e = new String[]{charset, encodeQueryParams(params, charset)};
+                encoded = e;
+            }
+            return e[1];
+        }
+    }
 }
@@ -41,9 +41,61 @@ public final class RequestOptions {
      */
     public static final int PRIORITY_HIGH=Constants.PRIORITY_HIGH;
 
+    /**
+     * Decodes the documents of large list responses on more than one thread,
+     * keeping their order.
+     * Worth it for responses of thousands of documents, a {@link com.baasbox.android.DocumentReader}
+     * used with this flag must be thread safe.
+     */
+    public static final int PARALLEL_DECODE = Constants.PARALLEL_DECODE;
+
+    /**
+     * Always gets json responses from the server, the default cache policy.
+     */
+    public static final int NETWORK_ONLY = 0;
+
+    /**
+     * Answers a read request from the response cache while the cached response is younger than
+     * its max age, see {@link #maxAge(int)} and {@link com.baasbox.android.BaasBox.Builder#setResponseCacheMaxAge(long)},
+     * and from the server otherwise.
+     * Responses of the server are cached for the current user; successful writes through the client,
+     * such as saving or deleting a document, drop the cached responses of the same collection.
+     */
+    public static final int CACHE_FIRST = Constants.CACHE_FIRST;
+
+    /**
+     * Delivers the cached response of a read request, if any, then the response of the server:
+     * the handler of an asynchronous request is invoked twice when the response was cached.
+     * Synchronous requests, requests that refresh an existing object, such as
+     * {@link com.baasbox.android.BaasDocument#refresh(BaasHandler)}, and streamed lists
+     * just get the response of the server, which is still cached.
+     */
+    public static final int CACHE_THEN_NETWORK = Constants.CACHE_THEN_NETWORK;
+
+    /**
+     * Like {@link #CACHE_FIRST}, but a cached response older than its max age, and still within
+     * {@link com.baasbox.android.BaasBox.Builder#setResponseCacheMaxStale(long)}, is delivered as well
+     * while the cache is refreshed from the server in background.
+     */
+    public static final int STALE_WHILE_REVALIDATE = Constants.STALE_WHILE_REVALIDATE;
+
     /**
      * The set of defaults flags for a request.
      */
     public static final int DEFAULT = PRIORITY_NORMAL;
 
+    /**
+     * Returns the flag that sets the max age of cached responses for a single request,
+     * to be combined with a cache policy, eg. <code>CACHE_FIRST|maxAge(60)</code>.
+     *
+     * @param minutes the max age in minutes, at most 65535; 0 uses the default of the client
+     * @return the flag
+     */
+    public static int maxAge(int minutes) {
+        if (minutes < 0 || minutes > 0xFFFF) {
+            throw new IllegalArgumentException("max age must be between 0 and 65535 minutes");
+        }
+        return minutes << Constants.CACHE_MAX_AGE_SHIFT;
+    }
+
 }
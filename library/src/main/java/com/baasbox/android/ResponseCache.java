@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import com.baasbox.android.impl.Logger;
+import com.baasbox.android.net.HttpRequest;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the bodies of successful json responses to read requests in the {@link com.baasbox.android.Cache}
+ * of the client, so that they can be replayed through the same parsing of the network ones.
+ * <p>
+ * Entries are keyed by the request, with its query parameters sorted, the app code and the name
+ * of the current user, so users never see each other's responses.
+ * An entry holds the time its request was sent, the content type and the body.
+ * </p>
+ * <p>
+ * Successful writes record their time for the resource they touch: a collection of documents,
+ * files, links or users, see {@link #scope(BaasBox, String)}. Entries of the same resource
+ * stored before the last write are not served anymore. The write times are kept in the cache too,
+ * so they survive restarts for as long as the entries they invalidate.
+ * </p>
+ */
+final class ResponseCache {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final String KEY_PREFIX = "json_";
+    private static final String WRITE_PREFIX = "jwrite_";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor REVALIDATION;
+    private static final Set<String> REVALIDATING = new HashSet<String>();
+
+    static {
+        REVALIDATION = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "baasbox-revalidation");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        REVALIDATION.allowCoreThreadTimeOut(true);
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Returns the cache key of <code>request</code> for the current user.
+     */
+    static String key(BaasBox box, HttpRequest request) {
+        BaasUser user = box.store.currentUser();
+        StringBuilder sb = new StringBuilder(request.url.length() + 32);
+        sb.append(request.method).append('\n')
+          .append(box.config.appCode).append('\n')
+          .append(user == null ? "" : user.getName()).append('\n');
+        int query = request.url.indexOf('?');
+        if (query < 0) {
+            sb.append(request.url);
+        } else {
+            sb.append(request.url, 0, query).append('?');
+            String[] params = request.url.substring(query + 1).split("&");
+            Arrays.sort(params);
+            for (int i = 0; i < params.length; i++) {
+                if (i > 0) sb.append('&');
+                sb.append(params[i]);
+            }
+        }
+        return KEY_PREFIX + sha1(sb.toString());
+    }
+
+    private static String sha1(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes("UTF-8"));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the resource touched by a request to <code>url</code>:
+     * <code>document/&lt;collection&gt;</code> for documents, <code>user</code> for users, their
+     * followers and social links, and the first segment of the path otherwise.
+     */
+    static String scope(BaasBox box, String url) {
+        String path = box.requestFactory.relativePath(url);
+        if (path == null) {
+            return url;
+        }
+        String[] segments = path.split("/", 3);
+        String first = segments[0];
+        if ("document".equals(first) && segments.length > 1) {
+            return first + '/' + segments[1];
+        }
+        if ("me".equals(first) || "users".equals(first) || "follow".equals(first) ||
+                "followers".equals(first) || "following".equals(first) || "social".equals(first)) {
+            return "user";
+        }
+        return first;
+    }
+
+    private static String writeKey(BaasBox box, String url) {
+        return WRITE_PREFIX + sha1(box.config.appCode + '\n' + scope(box, url));
+    }
+
+    /**
+     * Records a successful write to <code>request</code>, so that the cached responses
+     * of the resource it touched are not served anymore.
+     */
+    static void invalidate(BaasBox box, HttpRequest request) {
+        byte[] time = new byte[8];
+        writeTime(time, System.currentTimeMillis());
+        box.mCache.put(writeKey(box, request.url), time);
+    }
+
+    /**
+     * Returns the entry stored with <code>key</code> for <code>request</code>, or null
+     * if there is none or it was stored before the last write to the same resource.
+     */
+    static Entry get(BaasBox box, String key, HttpRequest request) {
+        try {
+            byte[] data = box.mCache.get(key);
+            if (data == null) {
+                return null;
+            }
+            Entry entry = decode(data);
+            byte[] written = box.mCache.get(writeKey(box, request.url));
+            if (written != null && written.length == 8 && readTime(written) >= entry.storedAt) {
+                box.mCache.remove(key);
+                return null;
+            }
+            return entry;
+        } catch (BaasIOException e) {
+            Logger.error(e, "Error using cache");
+            return null;
+        } catch (IOException e) {
+            box.mCache.remove(key);
+            return null;
+        }
+    }
+
+    private static Entry decode(byte[] data) throws IOException {
+        if (data.length < 10) throw new IOException("truncated cache entry");
+        long storedAt = readTime(data);
+        int typeLength = ((data[8] & 0xFF) << 8) | (data[9] & 0xFF);
+        if (10 + typeLength > data.length) throw new IOException("truncated cache entry");
+        String contentType = typeLength == 0 ? null : new String(data, 10, typeLength, "UTF-8");
+        return new Entry(storedAt, contentType, data, 10 + typeLength);
+    }
+
+    /**
+     * Stores the body of a successful response with <code>key</code>.
+     * The body is read in memory: the returned response, to be parsed in place of the given one,
+     * replays it.
+     * The entry is dated when its request was sent, <code>requestedAt</code>, so that a write to the
+     * same resource while the request was in flight still invalidates it.
+     */
+    static HttpResponse store(BaasBox box, String key, HttpResponse response, long requestedAt) throws BaasException {
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (status / 100 != 2 || entity == null) {
+            return response;
+        }
+        try {
+            Header type = entity.getContentType();
+            byte[] contentType = type == null ? new byte[0] : type.getValue().getBytes("UTF-8");
+            byte[] body = EntityUtils.toByteArray(entity);
+            byte[] data = new byte[10 + contentType.length + (body == null ? 0 : body.length)];
+            writeTime(data, requestedAt);
+            data[8] = (byte) (contentType.length >> 8);
+            data[9] = (byte) contentType.length;
+            System.arraycopy(contentType, 0, data, 10, contentType.length);
+            if (body != null) {
+                System.arraycopy(body, 0, data, 10 + contentType.length, body.length);
+            }
+            box.mCache.put(key, data);
+            response.setEntity(entity(data, 10 + contentType.length, type == null ? null : type.getValue()));
+            return response;
+        } catch (IOException e) {
+            throw new BaasIOException("Could not read server response", e);
+        }
+    }
+
+    /**
+     * Refreshes the entry of <code>request</code> from the server in background,
+     * unless a refresh of the same entry is already pending.
+     */
+    static void revalidate(final BaasBox box, final HttpRequest request, final String key) {
+        synchronized (REVALIDATING) {
+            if (!REVALIDATING.add(key)) return;
+        }
+        REVALIDATION.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long requestedAt = System.currentTimeMillis();
+                    HttpResponse response = box.restClient.execute(request);
+                    HttpEntity entity = store(box, key, response, requestedAt).getEntity();
+                    if (entity != null) {
+                        entity.consumeContent();
+                    }
+                } catch (BaasException e) {
+                    Logger.info(e, "Unable to refresh cached response");
+                } catch (IOException e) {
+                    Logger.info(e, "Unable to refresh cached response");
+                } finally {
+                    synchronized (REVALIDATING) {
+                        REVALIDATING.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    private static long readTime(byte[] data) {
+        long time = 0;
+        for (int i = 0; i < 8; i++) {
+            time = (time << 8) | (data[i] & 0xFF);
+        }
+        return time;
+    }
+
+    private static void writeTime(byte[] data, long time) {
+        for (int i = 7; i >= 0; i--) {
+            data[i] = (byte) time;
+            time >>>= 8;
+        }
+    }
+
+    private static HttpEntity entity(byte[] data, int offset, String contentType) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(data, offset, data.length - offset));
+        entity.setContentLength(data.length - offset);
+        entity.setContentType(contentType);
+        return entity;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private ResponseCache() {
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    static final class Entry {
+        private final long storedAt;
+        private final String contentType;
+        private final byte[] data;
+        private final int offset;
+
+        Entry(long storedAt, String contentType, byte[] data, int offset) {
+            this.storedAt = storedAt;
+            this.contentType = contentType;
+            this.data = data;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the milliseconds since the entry was stored.
+         */
+        long age() {
+            return System.currentTimeMillis() - storedAt;
+        }
+
+        /**
+         * Returns a successful response that replays the cached body.
+         */
+        HttpResponse toResponse() {
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.setEntity(entity(data, offset, contentType));
+            return response;
+        }
+    }
+}
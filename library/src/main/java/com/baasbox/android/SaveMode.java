@@ -34,4 +34,13 @@ public enum SaveMode {
      * and an error is returned instead
      */
     CHECK_VERSION,
+
+    /**
+     * Skip the update if no field changed since the document
+     * was last fetched or saved.
+     * Changed documents are saved whole as with {@link #CHECK_VERSION}:
+     * field updates do not carry the version, so they are never used
+     * and the version is always checked.
+     */
+    CHANGED_FIELDS,
 }
@@ -19,8 +19,9 @@ abstract class StreamBody<R> implements DataStreamHandler<R> {
     @Override
     public final void startData(String id, long contentLength, String contentType) throws Exception {
         if (contentLength==-1){
-            bos = new DyanmicByteArrayOutputStream();
+            bos = new PooledByteOutput();
         } else {
+            // the array is handed to convert(), so it cannot come from the pool
             bos = new FixedByteArrayOutputStream(contentLength);
         }
     }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android;
+
+import com.baasbox.android.json.JsonException;
+import com.baasbox.android.json.JsonInput;
+import com.baasbox.android.net.HttpRequest;
+import org.apache.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list request whose items are delivered to an {@link com.baasbox.android.ItemStreamHandler}
+ * in batches while the response is parsed.
+ */
+final class StreamList<T> extends NetworkTask<Long> {
+// ------------------------------ FIELDS ------------------------------
+
+    private final String endpoint;
+    private final RequestFactory.Query query;
+    private final DocumentReader<T> reader;
+    private final int batchSize;
+    private final ItemStreamHandler<T> consumer;
+    private volatile boolean canceled;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    StreamList(BaasBox box, String endpoint, RequestFactory.Query query, DocumentReader<T> reader,
+               int batchSize, ItemStreamHandler<T> consumer, int flags, BaasHandler<Long> handler) {
+        super(box, flags, handler);
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if (consumer == null) throw new IllegalArgumentException("consumer cannot be null");
+        this.endpoint = endpoint;
+        this.query = query;
+        this.reader = reader;
+        this.batchSize = batchSize;
+        this.consumer = consumer;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Override
+    protected boolean buildsNewResult() {
+        // items are delivered to the consumer while parsing
+        return false;
+    }
+
+    @Override
+    protected boolean cancelRunning() {
+        canceled = true;
+        return true;
+    }
+
+    @Override
+    protected Long onOk(int status, HttpResponse response, BaasBox box) throws BaasException {
+        JsonInput in = openData(response, box);
+        long count = 0;
+        try {
+            if (in == null) {
+                return count;
+            }
+            List<T> batch = new ArrayList<T>(batchSize);
+            while (in.hasNext()) {
+                if (canceled) throw new BaasCancellationException();
+                batch.add(reader.read(in));
+                if (batch.size() == batchSize) {
+                    count += batch.size();
+                    if (!deliver(batch)) {
+                        skipRest(in);
+                        return count;
+                    }
+                    batch = new ArrayList<T>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                count += batch.size();
+                deliver(batch);
+            }
+            return count;
+        } catch (IOException e) {
+            throw new BaasIOException("Could not parse server response", e);
+        } catch (JsonException e) {
+            throw new BaasIOException("Could not parse server response: " + response, e);
+        } catch (IllegalStateException e) {
+            throw new BaasIOException("Unexpected server response: " + response, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Reads the rest of the response without decoding it, so that the connection can be reused.
+     */
+    private static void skipRest(JsonInput in) throws IOException {
+        while (in.hasNext()) {
+            in.skipValue();
+        }
+        in.endArray();
+        while (in.hasNext()) {
+            in.nextName();
+            in.skipValue();
+        }
+        in.endObject();
+    }
+
+    private boolean deliver(List<T> batch) throws BaasException {
+        if (canceled) throw new BaasCancellationException();
+        try {
+            return consumer.onItems(batch);
+        } catch (BaasException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BaasException(e);
+        }
+    }
+
+    @Override
+    protected HttpRequest request(BaasBox box) {
+        return box.requestFactory.get(endpoint, query);
+    }
+}
@@ -50,6 +50,12 @@ class StreamRequest extends NetworkTask<BaasStream> {
 
 // -------------------------- OTHER METHODS --------------------------
 
+    @Override
+    protected boolean cachesResponse() {
+        // streams are kept in the cache by id
+        return false;
+    }
+
     @Override
     protected BaasStream getFromCache(BaasBox box) throws BaasException {
         return box.mCache.getStream(id);
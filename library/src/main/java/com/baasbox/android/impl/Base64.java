@@ -16,7 +16,11 @@ package com.baasbox.android.impl;
  * limitations under the License.
  */
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 
 /**
  * Utilities for encoding and decoding the Base64 representation of binary data.
@@ -63,6 +67,11 @@ public class Base64 {
      */
     public static final int NO_CLOSE = 16;
 
+    /**
+     * The number of input bytes coded at a time when streaming, a multiple of 3 and 4.
+     */
+    private static final int STREAM_CHUNK = 3 * 1024;
+
 // --------------------------- CONSTRUCTORS ---------------------------
     private Base64() {
     } // don't instantiate
@@ -244,11 +253,257 @@ public class Base64 {
         return encoder.output;
     }
 
+    // --------------------------------------------------------
+    // streaming
+    // --------------------------------------------------------
+
+    /**
+     * Base64-encode the bytes read from <code>in</code>, until its end, to <code>out</code>.
+     * The data is encoded in chunks, without holding either the data or its encoding in memory.
+     * Neither stream is closed.
+     *
+     * @param in    the data to encode
+     * @param out   the destination of the encoded data
+     * @param flags controls certain features of the encoded output. Passing
+     *              {@code DEFAULT} results in output that adheres to RFC 2045.
+     * @return the number of bytes encoded
+     */
+    public static long encode(InputStream in, OutputStream out, int flags) throws IOException {
+        return encode(in, new Sink(out), flags);
+    }
+
+    /**
+     * Base64-encode the bytes read from <code>in</code>, until its end, to the characters
+     * written to <code>out</code>.
+     * Neither <code>in</code> nor <code>out</code> is closed.
+     *
+     * @param in    the data to encode
+     * @param out   the destination of the encoded characters
+     * @param flags controls certain features of the encoded output. Passing
+     *              {@code DEFAULT} results in output that adheres to RFC 2045.
+     * @return the number of bytes encoded
+     */
+    public static long encode(InputStream in, Writer out, int flags) throws IOException {
+        return encode(in, new Sink(out), flags);
+    }
+
+    /**
+     * Base64-encode <code>len</code> bytes of <code>input</code> to the characters written to <code>out</code>,
+     * without building the encoded string.
+     *
+     * @param input  the data to encode
+     * @param offset the position within the input array at which to start
+     * @param len    the number of bytes of input to encode
+     * @param out    the destination of the encoded characters
+     * @param flags  controls certain features of the encoded output. Passing
+     *               {@code DEFAULT} results in output that adheres to RFC 2045.
+     */
+    public static void encode(byte[] input, int offset, int len, Writer out, int flags) throws IOException {
+        Sink sink = new Sink(out);
+        Encoder encoder = new Encoder(flags, null);
+        try {
+            int end = offset + len;
+            do {
+                int n = Math.min(STREAM_CHUNK, end - offset);
+                sink.prepare(encoder, n);
+                encoder.process(input, offset, n, offset + n == end);
+                sink.drain(encoder);
+                offset += n;
+            } while (offset < end);
+        } finally {
+            sink.release();
+        }
+    }
+
+    /**
+     * Decode the Base64-encoded data read from <code>in</code>, until its end, to <code>out</code>.
+     * Neither stream is closed.
+     *
+     * @param in    the data to decode
+     * @param out   the destination of the decoded data
+     * @param flags controls certain features of the decoded output. Pass
+     *              {@code DEFAULT} to decode standard Base64.
+     * @return the number of decoded bytes
+     * @throws IllegalArgumentException if the input contains incorrect padding
+     */
+    public static long decode(InputStream in, OutputStream out, int flags) throws IOException {
+        Sink sink = new Sink(out);
+        Decoder decoder = new Decoder(flags, null);
+        byte[] input = BufferPool.shared().acquire(STREAM_CHUNK);
+        try {
+            int n;
+            do {
+                n = in.read(input, 0, STREAM_CHUNK);
+                sink.prepare(decoder, Math.max(n, 0));
+                if (!decoder.process(input, 0, Math.max(n, 0), n == -1)) {
+                    throw new IllegalArgumentException("bad base-64");
+                }
+                sink.drain(decoder);
+            } while (n != -1);
+            return sink.count;
+        } finally {
+            BufferPool.shared().release(input);
+            sink.release();
+        }
+    }
+
+    /**
+     * Decode <code>len</code> Base64-encoded bytes of <code>input</code> to <code>out</code>,
+     * without allocating the decoded array.
+     *
+     * @param input  the data to decode
+     * @param offset the position within the input array at which to start
+     * @param len    the number of bytes of input to decode
+     * @param out    the destination of the decoded data
+     * @param flags  controls certain features of the decoded output. Pass
+     *               {@code DEFAULT} to decode standard Base64.
+     * @return the number of decoded bytes
+     * @throws IllegalArgumentException if the input contains incorrect padding
+     */
+    public static long decode(byte[] input, int offset, int len, OutputStream out, int flags) throws IOException {
+        Sink sink = new Sink(out);
+        Decoder decoder = new Decoder(flags, null);
+        try {
+            int end = offset + len;
+            do {
+                int n = Math.min(STREAM_CHUNK, end - offset);
+                sink.prepare(decoder, n);
+                if (!decoder.process(input, offset, n, offset + n == end)) {
+                    throw new IllegalArgumentException("bad base-64");
+                }
+                sink.drain(decoder);
+                offset += n;
+            } while (offset < end);
+            return sink.count;
+        } finally {
+            sink.release();
+        }
+    }
+
+    /**
+     * Decode the Base64-encoded characters of <code>input</code> between <code>start</code>
+     * and <code>end</code> to <code>out</code>, without allocating the decoded array.
+     * Characters outside of the ascii range are skipped, like whitespace.
+     *
+     * @param input the characters to decode
+     * @param start the index of the first character to decode
+     * @param end   the index after the last character to decode
+     * @param out   the destination of the decoded data
+     * @param flags controls certain features of the decoded output. Pass
+     *              {@code DEFAULT} to decode standard Base64.
+     * @return the number of decoded bytes
+     * @throws IllegalArgumentException if the input contains incorrect padding
+     */
+    public static long decode(CharSequence input, int start, int end, OutputStream out, int flags) throws IOException {
+        Sink sink = new Sink(out);
+        Decoder decoder = new Decoder(flags, null);
+        byte[] ascii = BufferPool.shared().acquire(STREAM_CHUNK);
+        try {
+            do {
+                int n = Math.min(STREAM_CHUNK, end - start);
+                for (int i = 0; i < n; i++) {
+                    char c = input.charAt(start + i);
+                    // '*' is not in either alphabet
+                    ascii[i] = c < 0x80 ? (byte) c : (byte) '*';
+                }
+                sink.prepare(decoder, n);
+                if (!decoder.process(ascii, 0, n, start + n == end)) {
+                    throw new IllegalArgumentException("bad base-64");
+                }
+                sink.drain(decoder);
+                start += n;
+            } while (start < end);
+            return sink.count;
+        } finally {
+            BufferPool.shared().release(ascii);
+            sink.release();
+        }
+    }
+
+    private static long encode(InputStream in, Sink sink, int flags) throws IOException {
+        Encoder encoder = new Encoder(flags, null);
+        byte[] input = BufferPool.shared().acquire(STREAM_CHUNK);
+        long read = 0;
+        try {
+            int n;
+            do {
+                n = in.read(input, 0, STREAM_CHUNK);
+                sink.prepare(encoder, Math.max(n, 0));
+                encoder.process(input, 0, Math.max(n, 0), n == -1);
+                sink.drain(encoder);
+                if (n > 0) read += n;
+            } while (n != -1);
+            return read;
+        } finally {
+            BufferPool.shared().release(input);
+            sink.release();
+        }
+    }
+
 // -------------------------- INNER CLASSES --------------------------
 
     // --------------------------------------------------------
     // shared code
     // --------------------------------------------------------
+    /**
+     * The destination of a streaming coder: the coded bytes of each chunk are written
+     * to a stream, or widened to characters for a writer.
+     * The buffers are borrowed from the shared {@link com.baasbox.android.impl.BufferPool}.
+     */
+    private static final class Sink {
+        private final OutputStream out;
+        private final Writer writer;
+        private byte[] output;
+        private char[] chars;
+        long count;
+
+        Sink(OutputStream out) {
+            this.out = out;
+            this.writer = null;
+        }
+
+        Sink(Writer writer) {
+            this.out = null;
+            this.writer = writer;
+        }
+
+        /**
+         * Gives <code>coder</code> room for the output of <code>len</code> more input bytes.
+         */
+        void prepare(Coder coder, int len) {
+            int size = coder.maxOutputSize(len);
+            if (output == null || output.length < size) {
+                BufferPool.shared().release(output);
+                output = BufferPool.shared().acquire(size);
+            }
+            coder.output = output;
+        }
+
+        void drain(Coder coder) throws IOException {
+            int n = coder.op;
+            if (n == 0) return;
+            count += n;
+            if (out != null) {
+                out.write(output, 0, n);
+                return;
+            }
+            if (chars == null || chars.length < n) {
+                chars = new char[Math.max(n, STREAM_CHUNK * 4 / 3 + 4)];
+            }
+            char[] c = chars;
+            byte[] b = output;
+            for (int i = 0; i < n; i++) {
+                c[i] = (char) b[i];
+            }
+            writer.write(c, 0, n);
+        }
+
+        void release() {
+            BufferPool.shared().release(output);
+            output = null;
+        }
+    }
+
     /* package */static abstract class Coder {
         public byte[] output;
         public int op;
@@ -713,7 +968,8 @@ public class Base64 {
                             output[op++] = '\r';
                         output[op++] = '\n';
                     }
-                } else if (do_newline && op > 0 && count != LINE_GROUPS) {
+                } else if (do_newline && count != LINE_GROUPS) {
+                    // the last line may have been written by an earlier call
                     if (do_cr)
                         output[op++] = '\r';
                     output[op++] = '\n';
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of byte buffers shared by the stream copy paths.
+ * <p>
+ * Buffers are grouped in a few size classes, each holding at most a fixed
+ * number of idle buffers; requests larger than the biggest class are
+ * served by a plain allocation and are never retained.
+ * </p>
+ */
+public final class BufferPool {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int[] SIZES = {1024, 4 * 1024, 16 * 1024, 64 * 1024};
+    private static final int[] CAPACITY = {8, 8, 4, 2};
+
+    private static final BufferPool SHARED = new BufferPool();
+
+    private final byte[][][] idle;
+    private final int[] counts;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Returns the pool shared by the sdk.
+     *
+     * @return the shared pool
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    BufferPool() {
+        idle = new byte[SIZES.length][][];
+        counts = new int[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            idle[i] = new byte[CAPACITY[i]][];
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Returns a buffer of at least <code>minSize</code> bytes.
+     * The content of the buffer is undefined.
+     *
+     * @param minSize the minimum size of the buffer
+     * @return a buffer to be given back through {@link #release(byte[])}
+     */
+    public byte[] acquire(int minSize) {
+        if (minSize < 0) throw new IllegalArgumentException("size cannot be negative");
+        int c = classOf(minSize);
+        if (c == -1) {
+            misses.incrementAndGet();
+            return new byte[minSize];
+        }
+        synchronized (idle[c]) {
+            int n = counts[c];
+            if (n > 0) {
+                byte[] buffer = idle[c][--n];
+                idle[c][n] = null;
+                counts[c] = n;
+                hits.incrementAndGet();
+                return buffer;
+            }
+        }
+        misses.incrementAndGet();
+        return new byte[SIZES[c]];
+    }
+
+    /**
+     * Gives back a buffer obtained through {@link #acquire(int)}.
+     * The caller must not use the buffer after it has been released.
+     *
+     * @param buffer the buffer, null is ignored
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null) return;
+        int c = exactClassOf(buffer.length);
+        if (c != -1) {
+            synchronized (idle[c]) {
+                int n = counts[c];
+                if (n < idle[c].length) {
+                    idle[c][n] = buffer;
+                    counts[c] = n + 1;
+                    recycled.incrementAndGet();
+                    return;
+                }
+            }
+        }
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Returns a snapshot of the usage statistics of this pool
+     *
+     * @return the current stats
+     */
+    public Stats stats() {
+        long pooled = 0;
+        for (int i = 0; i < SIZES.length; i++) {
+            synchronized (idle[i]) {
+                pooled += (long) counts[i] * SIZES[i];
+            }
+        }
+        return new Stats(hits.get(), misses.get(), recycled.get(), dropped.get(), pooled);
+    }
+
+    /**
+     * Drops all the idle buffers.
+     */
+    public void clear() {
+        for (int i = 0; i < SIZES.length; i++) {
+            synchronized (idle[i]) {
+                for (int j = 0; j < counts[i]; j++) {
+                    idle[i][j] = null;
+                }
+                counts[i] = 0;
+            }
+        }
+    }
+
+    private static int classOf(int size) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (size <= SIZES[i]) return i;
+        }
+        return -1;
+    }
+
+    private static int exactClassOf(int length) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (length == SIZES[i]) return i;
+        }
+        return -1;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Usage statistics of a {@link com.baasbox.android.impl.BufferPool}
+     */
+    public static final class Stats {
+        /**
+         * Number of requests served by an idle buffer
+         */
+        public final long hits;
+        /**
+         * Number of requests that required a new allocation
+         */
+        public final long misses;
+        /**
+         * Number of released buffers kept for reuse
+         */
+        public final long recycled;
+        /**
+         * Number of released buffers discarded because the pool was full
+         * or they did not belong to any size class
+         */
+        public final long dropped;
+        /**
+         * Bytes currently retained by idle buffers
+         */
+        public final long pooledBytes;
+
+        Stats(long hits, long misses, long recycled, long dropped, long pooledBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.recycled = recycled;
+            this.dropped = dropped;
+            this.pooledBytes = pooledBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "BufferPool.Stats{hits=" + hits + ", misses=" + misses +
+                    ", recycled=" + recycled + ", dropped=" + dropped +
+                    ", pooledBytes=" + pooledBytes + '}';
+        }
+    }
+}
@@ -26,5 +26,11 @@ public final class Constants {
     public static final int PRIORITY_LOW = 1;
     public static final int PRIORITY_HIGH = 2;
     public static final int PRIORITY_MASK = PRIORITY_LOW|PRIORITY_HIGH;
+    public static final int PARALLEL_DECODE = 4;
+    public static final int CACHE_FIRST = 8;
+    public static final int CACHE_THEN_NETWORK = 16;
+    public static final int STALE_WHILE_REVALIDATE = CACHE_FIRST|CACHE_THEN_NETWORK;
+    public static final int CACHE_POLICY_MASK = CACHE_FIRST|CACHE_THEN_NETWORK;
+    public static final int CACHE_MAX_AGE_SHIFT = 16;
 
 }
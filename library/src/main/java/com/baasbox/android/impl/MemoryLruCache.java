@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory cache of byte arrays bounded by their total length,
+ * that evicts the least recently used entries first.
+ * <p>
+ * Entries are marked dirty when they are not stored anywhere else:
+ * {@link #entryEvicted(String, byte[], boolean)} is called for every evicted entry,
+ * outside of the cache lock, so that subclasses can move dirty entries to a slower tier.
+ * Entries longer than {@link #maxEntrySize()} are never stored.
+ * </p>
+ * <p>
+ * The cache counts hits, misses and evictions, see {@link #toString()}.
+ * </p>
+ */
+public class MemoryLruCache {
+// ------------------------------ FIELDS ------------------------------
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final long maxSize;
+    private final long maxEntrySize;
+    private long size;
+
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize      the maximum total length of the stored arrays, 0 disables the cache
+     * @param maxEntrySize the maximum length of a single array
+     */
+    public MemoryLruCache(long maxSize, long maxEntrySize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize cannot be negative");
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxSize, Math.max(0, maxEntrySize));
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Returns the array stored with <code>key</code>, making it the most recently used entry.
+     *
+     * @param key the key of the entry
+     * @return the stored array or null; it is shared and must not be modified
+     */
+    public synchronized byte[] get(String key) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.data;
+    }
+
+    /**
+     * Returns true if an array of <code>length</code> bytes can be stored.
+     */
+    public boolean accepts(long length) {
+        return maxSize > 0 && length >= 0 && length <= maxEntrySize;
+    }
+
+    /**
+     * Stores <code>data</code> with <code>key</code>, replacing the previous entry,
+     * then evicts the least recently used entries until the cache is within its size.
+     * Arrays that are too long are not stored and remove the previous entry instead.
+     *
+     * @param key   the key of the entry
+     * @param data  the array to store, it must not be modified afterwards
+     * @param dirty true if the array is not stored elsewhere
+     * @return true if the array was stored
+     */
+    public boolean put(String key, byte[] data, boolean dirty) {
+        List<Map.Entry<String, Entry>> evicted = null;
+        boolean stored = accepts(data.length);
+        synchronized (this) {
+            Entry previous = stored ? entries.put(key, new Entry(data, dirty)) : entries.remove(key);
+            if (previous != null) {
+                size -= previous.data.length;
+            }
+            if (stored) {
+                puts++;
+                size += data.length;
+                evicted = trim();
+            }
+        }
+        notifyEvicted(evicted);
+        return stored;
+    }
+
+    /**
+     * Removes the entry stored with <code>key</code>, without notifying it as evicted.
+     *
+     * @param key the key of the entry
+     */
+    public synchronized void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.data.length;
+        }
+    }
+
+    /**
+     * Evicts all the entries.
+     */
+    public void evictAll() {
+        List<Map.Entry<String, Entry>> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+            evictions += entries.size();
+            entries.clear();
+            size = 0;
+        }
+        notifyEvicted(evicted);
+    }
+
+    private List<Map.Entry<String, Entry>> trim() {
+        List<Map.Entry<String, Entry>> evicted = null;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue().data.length;
+            evictions++;
+            if (evicted == null) {
+                evicted = new ArrayList<Map.Entry<String, Entry>>(2);
+            }
+            evicted.add(eldest);
+        }
+        return evicted;
+    }
+
+    private void notifyEvicted(List<Map.Entry<String, Entry>> evicted) {
+        if (evicted == null) return;
+        for (Map.Entry<String, Entry> e : evicted) {
+            entryEvicted(e.getKey(), e.getValue().data, e.getValue().dirty);
+        }
+    }
+
+    /**
+     * Called, outside of the cache lock, for every entry evicted to make room.
+     *
+     * @param key   the key of the entry
+     * @param data  the evicted array
+     * @param dirty true if the array is not stored elsewhere
+     */
+    protected void entryEvicted(String key, byte[] data, boolean dirty) {
+    }
+
+    /**
+     * Returns the total length of the stored arrays.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    public long maxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long putCount() {
+        return puts;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long accesses = hits + misses;
+        int hitPercent = accesses == 0 ? 0 : (int) (100 * hits / accesses);
+        return String.format("MemoryLruCache[size=%d/%d, entries=%d, hits=%d, misses=%d, hitRate=%d%%, puts=%d, evictions=%d]",
+                size, maxSize, entries.size(), hits, misses, hitPercent, puts, evictions);
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static final class Entry {
+        final byte[] data;
+        final boolean dirty;
+
+        Entry(byte[] data, boolean dirty) {
+            this.data = data;
+            this.dirty = dirty;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A bounded pool of threads that splits work on ranges of items,
+ * used to decode large responses on more than one core.
+ * <p>
+ * The items are split in chunks that are claimed in order by the pool threads
+ * and by the calling thread, which works too instead of just waiting.
+ * Since the caller can claim every chunk by itself, a busy pool delays
+ * the work but never blocks it.
+ * Threads of the pool stop after some idle time.
+ * </p>
+ */
+public final class ParallelExecutor {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ParallelExecutor SHARED = new ParallelExecutor(Runtime.getRuntime().availableProcessors());
+
+    private final int maxParallelism;
+    private final ThreadPoolExecutor pool;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Returns the executor shared by the sdk, sized by the number of cores.
+     *
+     * @return the shared executor
+     */
+    public static ParallelExecutor shared() {
+        return SHARED;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    ParallelExecutor(int maxParallelism) {
+        this.maxParallelism = Math.max(1, maxParallelism);
+        // the calling thread is one of the workers
+        int threads = Math.max(1, this.maxParallelism - 1);
+        pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonFactory());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Returns the maximum number of threads, the caller included, that work at once.
+     */
+    public int maxParallelism() {
+        return maxParallelism;
+    }
+
+    /**
+     * Runs <code>work</code> on the items from <code>0</code> to <code>count</code> split in ranges,
+     * on up to <code>parallelism</code> threads, and returns when every range has been done.
+     * The first failure stops the ranges not yet started and is rethrown.
+     *
+     * @param count       the number of items
+     * @param parallelism the number of threads, the caller included, capped by {@link #maxParallelism()}
+     * @param work        the work to do on each range, must be thread safe
+     * @throws IOException the first exception thrown by <code>work</code>
+     */
+    public void forEach(int count, int parallelism, Work work) throws IOException {
+        int threads = Math.max(1, Math.min(parallelism, Math.min(maxParallelism, count)));
+        if (threads == 1) {
+            if (count > 0) {
+                work.run(0, count);
+            }
+            return;
+        }
+        Job job = new Job(count, threads * CHUNKS_PER_THREAD, work);
+        for (int i = 1; i < threads; i++) {
+            pool.execute(job);
+        }
+        job.run();
+        try {
+            job.done.await();
+        } catch (InterruptedException e) {
+            job.failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+        }
+        Throwable failure = job.failure.get();
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure instanceof Error) throw (Error) failure;
+        InterruptedIOException interrupted = new InterruptedIOException("interrupted while waiting for parallel work");
+        interrupted.initCause(failure);
+        throw interrupted;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Work done on a range of items.
+     */
+    public interface Work {
+        /**
+         * Works on the items from <code>from</code>, inclusive, to <code>to</code>, exclusive.
+         */
+        void run(int from, int to) throws IOException;
+    }
+
+    private static final class Job implements Runnable {
+        private final int count;
+        private final int chunks;
+        private final Work work;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private final CountDownLatch done;
+
+        Job(int count, int chunks, Work work) {
+            this.count = count;
+            this.chunks = Math.min(count, chunks);
+            this.work = work;
+            this.done = new CountDownLatch(this.chunks);
+        }
+
+        @Override
+        public void run() {
+            int chunk;
+            while ((chunk = next.getAndIncrement()) < chunks) {
+                try {
+                    if (failure.get() == null) {
+                        int from = (int) ((long) count * chunk / chunks);
+                        int to = (int) ((long) count * (chunk + 1) / chunks);
+                        work.run(from, to);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+    }
+
+    private static final class DaemonFactory implements ThreadFactory {
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BaasBox-parallel-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
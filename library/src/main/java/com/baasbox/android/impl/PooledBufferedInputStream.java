@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A buffered input stream whose buffer is borrowed from a {@link com.baasbox.android.impl.BufferPool}
+ * and given back when the stream is closed.
+ * Marks are not supported.
+ */
+public final class PooledBufferedInputStream extends FilterInputStream {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final BufferPool pool;
+    private byte[] buf;
+    private int pos;
+    private int count;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    public PooledBufferedInputStream(InputStream in) {
+        this(in, BufferPool.shared());
+    }
+
+    public PooledBufferedInputStream(InputStream in, BufferPool pool) {
+        super(in);
+        this.pool = pool;
+        this.buf = pool.acquire(BUFFER_SIZE);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private byte[] buffer() throws IOException {
+        byte[] b = buf;
+        if (b == null) throw new IOException("Stream closed");
+        return b;
+    }
+
+    private int fill() throws IOException {
+        byte[] b = buffer();
+        pos = 0;
+        count = 0;
+        int n = in.read(b, 0, b.length);
+        if (n > 0) count = n;
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = buffer();
+        if (pos >= count && fill() <= 0) {
+            return -1;
+        }
+        return b[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        byte[] b = buffer();
+        if ((offset | length) < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) return 0;
+        int available = count - pos;
+        if (available <= 0) {
+            if (length >= b.length) {
+                // large reads bypass the buffer
+                return in.read(buffer, offset, length);
+            }
+            if (fill() <= 0) return -1;
+            available = count;
+        }
+        int n = Math.min(available, length);
+        System.arraycopy(b, pos, buffer, offset, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        buffer();
+        if (n <= 0) return 0;
+        long available = count - pos;
+        if (available <= 0) return in.skip(n);
+        long skipped = Math.min(available, n);
+        pos += (int) skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        buffer();
+        return (count - pos) + in.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        // not supported
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        byte[] b = buf;
+        buf = null;
+        try {
+            in.close();
+        } finally {
+            if (b != null) pool.release(b);
+        }
+    }
+}
@@ -51,7 +51,7 @@ public abstract class Task<R> implements Runnable, Comparable<Task<R>> {
     }
 
     private static int parsePriority(int flags){
-        return flags;
+        return flags & Constants.PRIORITY_MASK;
     }
 // ------------------------ CANONICAL METHODS ------------------------
 
@@ -180,6 +180,17 @@ public abstract class Task<R> implements Runnable, Comparable<Task<R>> {
             result = BaasResult.cancel();
             return true;
         }
+        return cancelRunning();
+    }
+
+    /**
+     * Invoked when a cancellation is requested after the task started executing.
+     * Tasks that can stop midway should override it and make {@link #asyncCall()}
+     * throw a {@link com.baasbox.android.BaasCancellationException}.
+     *
+     * @return true if the task will stop
+     */
+    protected boolean cancelRunning() {
         return false;
     }
 
@@ -188,6 +199,8 @@ public abstract class Task<R> implements Runnable, Comparable<Task<R>> {
             try {
                 R value = asyncCall();
                 result = BaasResult.success(value);
+            } catch (BaasCancellationException e) {
+                result = BaasResult.cancel();
             } catch (BaasException e) {
                 result = BaasResult.failure(e);
             }
@@ -254,6 +267,30 @@ public abstract class Task<R> implements Runnable, Comparable<Task<R>> {
         postOn.post(this);
     }
 
+    /**
+     * Delivers a result to the handler ahead of the one returned by {@link #asyncCall()},
+     * which is still delivered afterwards.
+     * Nothing is delivered if the request is synchronous, suspended or already done.
+     *
+     * @param value the early result
+     */
+    protected final void deliverEarly(final R value) {
+        final BaasHandler<?> curr = suspendableHandler.get();
+        if (postOn == null || curr instanceof Signal) {
+            return;
+        }
+        postOn.post(new Runnable() {
+            // curr is not a Signal, so it is the BaasHandler<R> given to the task or to resume
+            @SuppressWarnings("unchecked")
+            @Override
+            public void run() {
+                if (suspendableHandler.get() == curr) {
+                    ((BaasHandler<R>) curr).handle(BaasResult.success(value));
+                }
+            }
+        });
+    }
+
     public int seq() {
         return seqNumber;
     }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The byte ranges of the elements of an array member of a utf-8 json object.
+ * <p>
+ * The ranges are found by a structural scan that skips over the elements
+ * without decoding them, each element can then be read on its own,
+ * for example on different threads.
+ * </p>
+ */
+public final class ArraySlices {
+// ------------------------------ FIELDS ------------------------------
+
+    private final byte[] data;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private ArraySlices(byte[] data) {
+        this.data = data;
+        this.offsets = new int[16];
+        this.lengths = new int[16];
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Scans the utf-8 json object in <code>data</code> for the elements
+     * of its <code>member</code> array.
+     *
+     * @param data   the utf-8 content of a json object
+     * @param member the name of the array member
+     * @return the slices of the elements, or <code>null</code> if the object
+     * has no such member or it is not an array
+     * @throws com.baasbox.android.json.JsonException if the content is not a valid json object
+     */
+    public static ArraySlices of(byte[] data, String member) {
+        if (data == null) throw new IllegalArgumentException("data cannot be null");
+        if (member == null) throw new IllegalArgumentException("member cannot be null");
+        Utf8JsonReader r = new Utf8JsonReader(data, 0, data.length);
+        r.setLenient(true);
+        try {
+            ArraySlices slices = null;
+            r.beginObject();
+            while (r.hasNext()) {
+                if (slices == null && member.equals(r.nextName()) && r.peek() == JsonToken.BEGIN_ARRAY) {
+                    slices = new ArraySlices(data);
+                    r.beginArray();
+                    while (r.hasNext()) {
+                        r.peek();
+                        int start = r.tokenStart();
+                        r.skipValue();
+                        slices.add(start, r.position() - start);
+                    }
+                    r.endArray();
+                } else {
+                    r.skipValue();
+                }
+            }
+            r.endObject();
+            return slices;
+        } catch (IOException e) {
+            throw new JsonException(e);
+        } catch (IllegalStateException e) {
+            throw new JsonException(e);
+        } finally {
+            try {
+                r.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private void add(int offset, int length) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * Returns the number of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Opens a lenient reader of the element at <code>index</code>,
+     * positioned before its first token.
+     * Readers of different elements are independent of each other.
+     *
+     * @param index the index of the element
+     * @return a new reader
+     */
+    public JsonInput open(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + " size " + size);
+        Utf8JsonReader r = new Utf8JsonReader(data, offsets[index], lengths[index]);
+        r.setLenient(true);
+        return r;
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import com.baasbox.android.impl.Base64;
+import com.baasbox.android.impl.BufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of {@link com.baasbox.android.json.JsonStructure}s.
+ * <p>
+ * The content starts with the magic bytes <code>'B' 'J'</code>, a version byte and a flags byte,
+ * followed by a single value. Every value starts with a tag byte:
+ * lengths and counts are unsigned varints, integers are zig-zag varints,
+ * doubles are eight big endian bytes, strings are utf-8 and binary values
+ * are stored raw instead of as base64 text.
+ * </p>
+ * <p>
+ * When the key dictionary flag is set, every name of a field is written in full only
+ * the first time, later occurrences refer to it by index.
+ * </p>
+ */
+final class BinaryJson {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int MAGIC_0 = 'B';
+    private static final int MAGIC_1 = 'J';
+    private static final int VERSION = 1;
+    private static final int FLAG_KEY_DICTIONARY = 1;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int BINARY = 6;
+    private static final int OBJECT = 7;
+    private static final int ARRAY = 8;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private BinaryJson() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    static void encode(JsonStructure json, OutputStream out, boolean keyDictionary) throws IOException {
+        Encoder e = new Encoder(out, keyDictionary);
+        try {
+            e.writeByte(MAGIC_0);
+            e.writeByte(MAGIC_1);
+            e.writeByte(VERSION);
+            e.writeByte(keyDictionary ? FLAG_KEY_DICTIONARY : 0);
+            e.value(json);
+            e.flush();
+        } finally {
+            e.release();
+        }
+    }
+
+    /**
+     * Decodes a structure from <code>in</code>, which holds <code>length</code> bytes,
+     * or an unknown number if <code>length</code> is -1.
+     */
+    static JsonStructure decode(InputStream in, long length) throws IOException {
+        Decoder d = new Decoder(in, length);
+        try {
+            if (d.readByte() != MAGIC_0 || d.readByte() != MAGIC_1) {
+                throw new JsonException("Not a binary json content");
+            }
+            int version = d.readByte();
+            if (version != VERSION) {
+                throw new JsonException("Unsupported binary json version " + version);
+            }
+            d.keyDictionary = (d.readByte() & FLAG_KEY_DICTIONARY) != 0;
+            Object value = d.value();
+            if (!(value instanceof JsonStructure)) {
+                throw new JsonException("Not a json object or array");
+            }
+            return (JsonStructure) value;
+        } finally {
+            d.release();
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static final class Encoder {
+        private final OutputStream out;
+        private final Map<String, Integer> keys;
+        private byte[] buffer = BufferPool.shared().acquire(BUFFER_SIZE);
+        private int count;
+
+        Encoder(OutputStream out, boolean keyDictionary) {
+            this.out = out;
+            this.keys = keyDictionary ? new HashMap<String, Integer>() : null;
+        }
+
+        void value(Object v) throws IOException {
+            if (v == null) {
+                writeByte(NULL);
+            } else if (v instanceof String) {
+                writeByte(STRING);
+                string((String) v);
+            } else if (v instanceof Boolean) {
+                writeByte((Boolean) v ? TRUE : FALSE);
+            } else if (v instanceof Long) {
+                writeByte(LONG);
+                long l = (Long) v;
+                varint((l << 1) ^ (l >> 63));
+            } else if (v instanceof Double) {
+                writeByte(DOUBLE);
+                long bits = Double.doubleToLongBits((Double) v);
+                room(8);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    buffer[count++] = (byte) (bits >>> shift);
+                }
+            } else if (v instanceof byte[]) {
+                // kept as base64 text in memory, stored raw
+                byte[] raw = Base64.decode((byte[]) v, Base64.NO_WRAP);
+                writeByte(BINARY);
+                varint(raw.length);
+                write(raw, 0, raw.length);
+            } else if (v instanceof JsonObject) {
+                Map<String, Object> map = ((JsonObject) v).map;
+                writeByte(OBJECT);
+                varint(map.size());
+                for (Map.Entry<String, Object> e : map.entrySet()) {
+                    key(e.getKey());
+                    value(e.getValue());
+                }
+            } else if (v instanceof JsonArray) {
+                List<Object> list = ((JsonArray) v).list;
+                writeByte(ARRAY);
+                varint(list.size());
+                for (Object o : list) {
+                    value(o);
+                }
+            } else {
+                throw new JsonException("Not a json value: " + v.getClass());
+            }
+        }
+
+        /**
+         * Without a dictionary a key is a string, with a dictionary the low bit
+         * of the leading varint tells a reference (1) from a new key (0).
+         */
+        private void key(String key) throws IOException {
+            if (keys == null) {
+                string(key);
+                return;
+            }
+            Integer idx = keys.get(key);
+            if (idx != null) {
+                varint(((long) idx << 1) | 1);
+            } else {
+                keys.put(key, keys.size());
+                byte[] bytes = utf8(key);
+                varint((long) bytes.length << 1);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        private void string(String s) throws IOException {
+            int length = s.length();
+            if (length < 128) {
+                // short ascii strings are the common case: encode in place
+                room(length + 1);
+                int start = count;
+                buffer[count++] = (byte) length;
+                int i = 0;
+                for (; i < length; i++) {
+                    char c = s.charAt(i);
+                    if (c >= 0x80) break;
+                    buffer[count++] = (byte) c;
+                }
+                if (i == length) return;
+                count = start;
+            }
+            byte[] bytes = utf8(s);
+            varint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private static byte[] utf8(String s) throws IOException {
+            Utf8Writer w = new Utf8Writer(s.length() + 16);
+            w.write(s, 0, s.length());
+            return w.toByteArray();
+        }
+
+        private void varint(long v) throws IOException {
+            room(10);
+            while ((v & ~0x7fL) != 0) {
+                buffer[count++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buffer[count++] = (byte) v;
+        }
+
+        void writeByte(int b) throws IOException {
+            room(1);
+            buffer[count++] = (byte) b;
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.length - count) {
+                flushBuffer();
+                if (length > buffer.length) {
+                    out.write(bytes, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        private void room(int needed) throws IOException {
+            if (count + needed > buffer.length) {
+                flushBuffer();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        void release() {
+            BufferPool.shared().release(buffer);
+            buffer = null;
+        }
+    }
+
+    private static final class Decoder {
+        private final InputStream in;
+        private final List<String> keys = new ArrayList<String>();
+        private boolean keyDictionary;
+        private byte[] buffer = BufferPool.shared().acquire(BUFFER_SIZE);
+        private int pos;
+        private int limit;
+        // the bytes of the input not read yet, -1 if unknown
+        private long unread;
+
+        Decoder(InputStream in, long length) {
+            this.in = in;
+            this.unread = length;
+        }
+
+        Object value() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case LONG:
+                    long l = varint();
+                    return Numbers.box((l >>> 1) ^ -(l & 1));
+                case DOUBLE:
+                    require(8);
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | (buffer[pos++] & 0xff);
+                    }
+                    return Double.longBitsToDouble(bits);
+                case STRING:
+                    return string(length());
+                case BINARY:
+                    byte[] raw = bytes(length());
+                    return Base64.encode(raw, Base64.NO_WRAP);
+                case OBJECT: {
+                    int size = length();
+                    JsonObject o = new JsonObject();
+                    for (int i = 0; i < size; i++) {
+                        String key = key();
+                        o.map.put(key, value());
+                    }
+                    return o;
+                }
+                case ARRAY: {
+                    int size = length();
+                    JsonArray a = new JsonArray();
+                    for (int i = 0; i < size; i++) {
+                        a.list.add(value());
+                    }
+                    return a;
+                }
+                default:
+                    throw new JsonException("Invalid binary json tag " + tag);
+            }
+        }
+
+        private String key() throws IOException {
+            if (!keyDictionary) {
+                return string(length());
+            }
+            long v = varint();
+            if ((v & 1) != 0) {
+                long idx = v >>> 1;
+                if (idx >= keys.size()) {
+                    throw new JsonException("Invalid key reference " + idx);
+                }
+                return keys.get((int) idx);
+            }
+            String key = string(checkLength(v >>> 1));
+            keys.add(key);
+            return key;
+        }
+
+        private String string(int length) throws IOException {
+            if (length <= buffer.length) {
+                require(length);
+                String s = Utf8JsonReader.decodeString(buffer, pos, length);
+                pos += length;
+                return s;
+            }
+            byte[] bytes = bytes(length);
+            return Utf8JsonReader.decodeString(bytes, 0, length);
+        }
+
+        /**
+         * Reads <code>length</code> bytes. The length is checked against the input left
+         * before allocating, when the input length is unknown the array grows as it is read.
+         */
+        private byte[] bytes(int length) throws IOException {
+            int buffered = limit - pos;
+            if (unread != -1 && length > buffered + unread) {
+                throw new EOFException("Truncated binary json");
+            }
+            byte[] bytes = new byte[unread != -1 ? length : Math.min(length, Math.max(buffered, BUFFER_SIZE))];
+            int n = Math.min(length, buffered);
+            System.arraycopy(buffer, pos, bytes, 0, n);
+            pos += n;
+            while (n < length) {
+                if (n == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+                }
+                int read = read(bytes, n, bytes.length - n);
+                if (read == -1) throw new EOFException("Truncated binary json");
+                n += read;
+            }
+            return bytes;
+        }
+
+        private int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0 && unread != -1) {
+                unread -= read;
+            }
+            return read;
+        }
+
+        private int length() throws IOException {
+            return checkLength(varint());
+        }
+
+        private static int checkLength(long length) {
+            if (length < 0 || length > Integer.MAX_VALUE) {
+                throw new JsonException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        private long varint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new JsonException("Malformed varint");
+        }
+
+        int readByte() throws IOException {
+            if (pos == limit) {
+                require(1);
+            }
+            return buffer[pos++] & 0xff;
+        }
+
+        /**
+         * Ensures that at least <code>n</code> bytes, no more than the buffer size, are buffered.
+         */
+        private void require(int n) throws IOException {
+            if (limit - pos >= n) {
+                return;
+            }
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+            while (limit < n) {
+                int read = read(buffer, limit, buffer.length - limit);
+                if (read == -1) throw new EOFException("Truncated binary json");
+                limit += read;
+            }
+        }
+
+        void release() {
+            BufferPool.shared().release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The backing map of {@link com.baasbox.android.json.JsonObject}s.
+ * <p>
+ * Most objects have a handful of fields: up to {@link #MAX_ARRAY_SIZE} mappings
+ * are kept in two parallel arrays of keys and values, in insertion order, and looked up
+ * by a linear scan that compares the keys by identity first, since names are usually
+ * shared through the {@link com.baasbox.android.json.KeyTable}.
+ * Larger objects move to a {@link java.util.LinkedHashMap}, which keeps the same order.
+ * </p>
+ * Like {@link java.util.LinkedHashMap} this map is not thread safe.
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+// ------------------------------ FIELDS ------------------------------
+
+    static final int MAX_ARRAY_SIZE = 16;
+    private static final int MIN_CAPACITY = 4;
+    private static final String[] NO_KEYS = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+    private int modCount;
+
+    /**
+     * The content once it grows past {@link #MAX_ARRAY_SIZE}, the arrays are unused then.
+     */
+    private LinkedHashMap<String, Object> hashed;
+    private Set<Map.Entry<String, Object>> entries;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    CompactMap() {
+        keys = NO_KEYS;
+        values = NO_VALUES;
+    }
+
+    CompactMap(int capacity) {
+        if (capacity > MAX_ARRAY_SIZE) {
+            hashed = new LinkedHashMap<String, Object>((int) (capacity / 0.75f) + 1);
+        } else if (capacity > 0) {
+            keys = new String[capacity];
+            values = new Object[capacity];
+        } else {
+            keys = NO_KEYS;
+            values = NO_VALUES;
+        }
+    }
+
+    CompactMap(Map<String, Object> source) {
+        this(source.size());
+        if (source instanceof CompactMap && ((CompactMap) source).hashed == null) {
+            CompactMap other = (CompactMap) source;
+            System.arraycopy(other.keys, 0, keys, 0, other.size);
+            System.arraycopy(other.values, 0, values, 0, other.size);
+            size = other.size;
+        } else {
+            putAll(source);
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private int indexOf(Object key) {
+        String[] k = keys;
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            if (k[i] == key) return i;
+        }
+        if (key != null) {
+            for (int i = 0; i < n; i++) {
+                if (key.equals(k[i])) return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (hashed != null) return hashed.get(key);
+        int i = indexOf(key);
+        return i == -1 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (hashed != null) return hashed.containsKey(key);
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (hashed != null) return hashed.put(key, value);
+        int i = indexOf(key);
+        if (i != -1) {
+            Object old = values[i];
+            values[i] = value;
+            return old;
+        }
+        if (size == MAX_ARRAY_SIZE) {
+            hashed = new LinkedHashMap<String, Object>(MAX_ARRAY_SIZE * 4);
+            for (int j = 0; j < size; j++) {
+                hashed.put(keys[j], values[j]);
+            }
+            keys = NO_KEYS;
+            values = NO_VALUES;
+            size = 0;
+            modCount++;
+            return hashed.put(key, value);
+        }
+        if (size == keys.length) {
+            int capacity = Math.min(MAX_ARRAY_SIZE, Math.max(MIN_CAPACITY, size * 2));
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (hashed != null) return hashed.remove(key);
+        int i = indexOf(key);
+        if (i == -1) return null;
+        Object old = values[i];
+        removeAt(i);
+        return old;
+    }
+
+    private void removeAt(int i) {
+        int moved = size - i - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, i + 1, keys, i, moved);
+            System.arraycopy(values, i + 1, values, i, moved);
+        }
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return hashed != null ? hashed.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        if (hashed != null) {
+            hashed = null;
+            keys = NO_KEYS;
+            values = NO_VALUES;
+        } else {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+        }
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    if (hashed != null) {
+                        return hashed.entrySet().iterator();
+                    }
+                    return new ArrayIterator();
+                }
+
+                @Override
+                public int size() {
+                    return CompactMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    CompactMap.this.clear();
+                }
+            };
+        }
+        return entries;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private final class ArrayIterator implements Iterator<Map.Entry<String, Object>> {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (next >= size) throw new NoSuchElementException();
+            last = next++;
+            return new ArrayEntry(last, modCount);
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * An entry that reads and writes through the arrays, valid until
+     * the map is structurally modified.
+     */
+    private final class ArrayEntry implements Map.Entry<String, Object> {
+        private final int index;
+        private final int expectedModCount;
+
+        ArrayEntry(int index, int expectedModCount) {
+            this.index = index;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private void check() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public String getKey() {
+            check();
+            return keys[index];
+        }
+
+        @Override
+        public Object getValue() {
+            check();
+            return values[index];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            check();
+            Object old = values[index];
+            values[index] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object k = getKey();
+            Object v = getValue();
+            return k.equals(e.getKey()) && (v == null ? e.getValue() == null : v.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object v = getValue();
+            return getKey().hashCode() ^ (v == null ? 0 : v.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -21,12 +21,14 @@ import com.baasbox.android.BaasRuntimeException;
 import com.baasbox.android.impl.Base64;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 /**
  * Represents a JSON array
@@ -46,11 +48,16 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
             return new JsonArray[size];
         }
     };
-    //todo lazy copying
     //todo choose when to convert binary data to base64
 
     protected List<Object> list;
 
+    /**
+     * True when {@link #list} may be shared with copies of this array: it must be replaced
+     * by a private copy before it is modified.
+     */
+    private volatile boolean shared;
+
 // --------------------------- CONSTRUCTORS ---------------------------
     /**
      * Creates a new empty JsonArray
@@ -84,29 +91,30 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
         return new JsonArray(this);
     }
 
+    /**
+     * Creates a copy of <code>other</code>.
+     * A list of strings, numbers, booleans and nulls is shared until either array is modified,
+     * nested structures are copied the same way.
+     */
     JsonArray(JsonArray other) {
-        this();
-        for (Object o : other) {
-            if (o == null) {
-                list.add(null);
-            } else if (o instanceof JsonArray) {
-                list.add(((JsonArray) o).copy());
-            } else if (o instanceof JsonObject) {
-                list.add(((JsonObject) o).copy());
-            } else if (o instanceof byte[]) {
-                byte[] original = (byte[]) o;
-                byte[] copy = new byte[original.length];
-                System.arraycopy(original, 0, copy, 0, original.length);
-                list.add(copy);
+        synchronized (other) {
+            List<Object> source = other.list;
+            if (JsonObject.immutableValues(source)) {
+                other.shared = true;
+                shared = true;
+                list = source;
             } else {
-                list.add(o);
+                list = new LinkedList<Object>();
+                for (Object o : source) {
+                    list.add(JsonObject.copyValue(o));
+                }
             }
         }
     }
 
     JsonArray(Parcel source) {
         this();
-        source.readList(list, JsonArray.class.getClassLoader());
+        JsonParcels.readArray(source, list);
     }
 
 // -------------------------- STATIC METHODS --------------------------
@@ -121,21 +129,21 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
 
     private JsonArray addInternal(Object o) {
         if (o == null) {
-            list.add(null);
+            writable().add(null);
         } else if ((o instanceof String) ||
                 (o instanceof JsonStructure) ||
                 (o instanceof Boolean) ||
                 (o instanceof Long) ||
                 (o instanceof Double)) {
-            list.add(o);
+            writable().add(o);
         } else if (o instanceof byte[]) {
-            list.add(Base64.encode((byte[]) o, Base64.NO_WRAP));
+            writable().add(Base64.encode((byte[]) o, Base64.NO_WRAP));
         } else if (o instanceof Float) {
-            list.add(((Float) o).doubleValue());
+            writable().add(((Float) o).doubleValue());
         } else if ((o instanceof Integer)
                 || (o instanceof Short)
                 || (o instanceof Byte)) {
-            list.add(((Number) o).longValue());
+            writable().add(((Number) o).longValue());
         } else {
             throw new JsonException("Not a valid object");
         }
@@ -148,7 +156,48 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
         return JsonArray.decodeFully(reader);
     }
 
-    static JsonArray decodeFully(JsonReader r) {
+    /**
+     * Decodes the json content read from <code>reader</code>,
+     * the reader is consumed and closed.
+     *
+     * @param reader the reader to decode
+     * @return a new JsonArray representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonArray decode(Reader reader) {
+        JsonReader r = new JsonReader(reader);
+        r.setLenient(true);
+        return JsonArray.decodeFully(r);
+    }
+
+    /**
+     * Decodes the utf-8 encoded json contained in <code>data</code>.
+     *
+     * @param data the bytes to decode
+     * @return a new JsonArray representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonArray decode(byte[] data) {
+        Utf8JsonReader r = new Utf8JsonReader(data, 0, data.length);
+        r.setLenient(true);
+        return JsonArray.decodeFully(r);
+    }
+
+    /**
+     * Decodes the utf-8 encoded json read from <code>in</code>,
+     * the stream is consumed and closed.
+     *
+     * @param in the stream to decode
+     * @return a new JsonArray representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonArray decode(InputStream in) {
+        Utf8JsonReader r = new Utf8JsonReader(in);
+        r.setLenient(true);
+        return JsonArray.decodeFully(r);
+    }
+
+    static JsonArray decodeFully(JsonInput r) {
         try {
             JsonArray a = JsonArray.decode(r);
             if (r.peek() != JsonToken.END_DOCUMENT) {
@@ -168,7 +217,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
         }
     }
 
-    static JsonArray decode(JsonReader reader) {
+    static JsonArray decode(JsonInput reader) {
         try {
             JsonToken tok = reader.peek();
             if (tok != JsonToken.BEGIN_ARRAY) throw new JsonException("expected array");
@@ -190,16 +239,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
                         arr.add(reader.nextString());
                         break;
                     case NUMBER:
-                        String inNum = reader.nextString();
-                        try {
-                            arr.add(Long.valueOf(inNum));
-                        } catch (NumberFormatException ne) {
-                            try {
-                                arr.add(Double.valueOf(inNum));
-                            } catch (NumberFormatException ne2) {
-                                arr.addNull();
-                            }
-                        }
+                        arr.list.add(reader.nextNumber());
                         break;
                     case BEGIN_OBJECT:
                         arr.add(JsonObject.decode(reader));
@@ -228,7 +268,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      * @return this array with the new value appended
      */
     public JsonArray add(boolean value) {
-        list.add(value);
+        writable().add(value);
         return this;
     }
 
@@ -241,7 +281,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      * @return this array with the new value appended
      */
     public JsonArray add(String value) {
-        list.add(value);
+        writable().add(value);
         return this;
     }
 
@@ -252,35 +292,35 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      * @return this array with the new value appended
      */
     public JsonArray add(long value) {
-        list.add(value);
+        writable().add(value);
         return this;
     }
 
 
     public JsonArray add(double d) {
-        list.add(d);
+        writable().add(d);
         return this;
     }
 
     public JsonArray addNull() {
-        list.add(null);
+        writable().add(null);
         return this;
     }
 
     public JsonArray add(JsonObject o) {
-        list.add(o);
+        writable().add(o);
         return this;
     }
 
 
     public JsonArray add(JsonArray a) {
-        list.add(a);
+        writable().add(a);
         return this;
     }
 
 
     public JsonArray add(byte[] v) {
-        list.add(v == null ? null : Base64.encode(v, Base64.NO_WRAP));
+        writable().add(v == null ? null : Base64.encode(v, Base64.NO_WRAP));
         return this;
     }
 
@@ -296,7 +336,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
         Iterator<?> iter = that.list.iterator();
         for (Object element : list) {
             Object other = iter.next();
-            if (!element.equals(other)) return false;
+            if (element == null ? other != null : !element.equals(other)) return false;
         }
         return true;
     }
@@ -313,23 +353,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
 
     @Override
     public String encode() {
-        StringWriter w = new StringWriter();
-        JsonWriter jw = null;
-        try {
-            jw = new JsonWriter(w);
-            encode(jw);
-            return w.toString();
-        } catch (IOException e) {
-            throw new JsonException(e);
-        } finally {
-            if (jw != null) {
-                try {
-                    jw.close();
-                } catch (IOException e) {
-                    // ignored
-                }
-            }
-        }
+        return encodeText();
     }
 
 // ------------------------ INTERFACE METHODS ------------------------
@@ -341,6 +365,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
     public Iterator<Object> iterator() {
         return new Iterator<Object>() {
             Iterator<Object> iter = list.listIterator();
+            int position;
 
             @Override
             public boolean hasNext() {
@@ -349,12 +374,21 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
 
             @Override
             public Object next() {
-                return iter.next();
+                Object o = iter.next();
+                position++;
+                return o;
             }
 
             @Override
             public void remove() {
+                if (shared) {
+                    // continue on a private copy, past the element to remove
+                    ListIterator<Object> it = writable().listIterator(position - 1);
+                    it.next();
+                    iter = it;
+                }
                 iter.remove();
+                position--;
             }
         };
     }
@@ -368,7 +402,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeList(list);
+        JsonParcels.writeArray(dest, list);
     }
 
 // -------------------------- OTHER METHODS --------------------------
@@ -380,7 +414,7 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
 //    }
 
     public JsonArray append(JsonArray arr) {
-        list.addAll(arr.list);
+        writable().addAll(arr.list);
         return this;
     }
 
@@ -402,8 +436,8 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
             } else if (o instanceof Double) {
                 w.value((Double) o);
             } else if (o instanceof byte[]) {
-                String encoded = Base64.encodeToString((byte[]) o, Base64.NO_WRAP);
-                w.value(encoded);
+                byte[] binary = (byte[]) o;
+                w.binaryValue(binary, 0, binary.length);
             } else if (o instanceof JsonArray) {
                 ((JsonArray) o).encode(w);
             } else if (o instanceof JsonObject) {
@@ -618,18 +652,18 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
     }
 
     public Object remove(int index) {
-        Object o = list.remove(index);
+        Object o = writable().remove(index);
         return o;
     }
 
 
     public JsonArray set(int index, JsonArray value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
     public JsonArray set(int index, byte[] value) {
-        list.set(index, value == null ? null : Base64.encode(value, Base64.NO_WRAP));
+        writable().set(index, value == null ? null : Base64.encode(value, Base64.NO_WRAP));
         return this;
     }
 
@@ -642,12 +676,12 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      * @return the array with the new mapping
      */
     public JsonArray set(int index, boolean value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
     public JsonArray set(int index, double value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
@@ -659,18 +693,18 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      * @return the array with the new mapping
      */
     public JsonArray set(int index, long value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
     public JsonArray setNull(int index) {
-        list.set(index, null);
+        writable().set(index, null);
         return this;
     }
 
 
     public JsonArray set(int index, JsonObject value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
@@ -682,12 +716,12 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      * @return the array with the new mapping
      */
     public JsonArray set(int index, String value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
     public JsonArray set(int index, JsonStructure value) {
-        list.set(index, value);
+        writable().set(index, value);
         return this;
     }
 
@@ -702,7 +736,27 @@ public class JsonArray extends JsonStructure implements Iterable<Object>, Parcel
      */
     @Override
     public JsonArray clear(){
-        list.clear();
+        if (shared) {
+            list = new LinkedList<Object>();
+            shared = false;
+        } else {
+            list.clear();
+        }
         return this;
     }
+
+    /**
+     * Returns the list, replacing it with a private copy if it is shared.
+     */
+    private List<Object> writable() {
+        if (shared) {
+            synchronized (this) {
+                if (shared) {
+                    list = new LinkedList<Object>(list);
+                    shared = false;
+                }
+            }
+        }
+        return list;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import java.io.Writer;
+
+/**
+ * The reusable state of readers and writers: the string pool, the character buffers,
+ * the {@link com.baasbox.android.json.JsonWriter} and the in memory destinations of encoding.
+ * <p>
+ * Each thread keeps one idle context. {@link #acquire()} takes it, leaving the thread without one,
+ * and {@link #release()} gives it back, so a context is used by one reader or writer at a time:
+ * readers opened while another one is in use, or never closed, just get a new context.
+ * Buffers that grew past a few kilobytes are dropped on release instead of being retained.
+ * </p>
+ */
+final class JsonContext {
+// ------------------------------ FIELDS ------------------------------
+
+    static final int READ_BUFFER_SIZE = 1024;
+    private static final int MIN_CHARS = 64;
+    private static final int MAX_RETAINED = 8 * 1024;
+
+    private static final ThreadLocal<JsonContext> IDLE = new ThreadLocal<JsonContext>();
+
+    private StringPool strings;
+    private char[] readBuffer;
+    private char[] chars;
+
+    private JsonWriter writer;
+    private StringBuilder text;
+    private TextWriter textWriter;
+    private Utf8Writer bytes;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Takes the idle context of the calling thread, or creates a new one.
+     *
+     * @return a context to be given back through {@link #release()}
+     */
+    static JsonContext acquire() {
+        JsonContext c = IDLE.get();
+        if (c == null) {
+            return new JsonContext();
+        }
+        IDLE.set(null);
+        return c;
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private JsonContext() {
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Makes this context the idle one of the calling thread.
+     * The caller must not use it, nor anything obtained from it, afterwards.
+     */
+    void release() {
+        if (chars != null && chars.length > MAX_RETAINED) {
+            chars = null;
+        }
+        if (text != null && text.capacity() > MAX_RETAINED) {
+            text = null;
+            textWriter = null;
+        }
+        if (bytes != null && bytes.capacity() > MAX_RETAINED) {
+            bytes = null;
+        }
+        if (writer != null) {
+            writer.reset(null);
+        }
+        IDLE.set(this);
+    }
+
+    StringPool strings() {
+        if (strings == null) {
+            strings = new StringPool();
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the character buffer of a {@link com.baasbox.android.json.JsonReader},
+     * of {@link #READ_BUFFER_SIZE} chars.
+     */
+    char[] readBuffer() {
+        if (readBuffer == null) {
+            readBuffer = new char[READ_BUFFER_SIZE];
+        }
+        return readBuffer;
+    }
+
+    /**
+     * Returns the scratch buffer of a {@link com.baasbox.android.json.Utf8JsonReader},
+     * its grown replacement is given back through {@link #keepChars(char[])}.
+     */
+    char[] chars() {
+        if (chars == null) {
+            chars = new char[MIN_CHARS];
+        }
+        return chars;
+    }
+
+    void keepChars(char[] chars) {
+        this.chars = chars;
+    }
+
+    /**
+     * Returns the writer of this context, ready to write a new document to <code>out</code>.
+     */
+    JsonWriter writer(Writer out) {
+        if (writer == null) {
+            writer = new JsonWriter(out);
+        } else {
+            writer.reset(out);
+        }
+        return writer;
+    }
+
+    /**
+     * Returns an empty in memory destination whose content is returned by {@link #text()}.
+     */
+    Writer textWriter() {
+        if (text == null) {
+            text = new StringBuilder(256);
+            textWriter = new TextWriter(text);
+        } else {
+            text.setLength(0);
+        }
+        return textWriter;
+    }
+
+    String text() {
+        return text.toString();
+    }
+
+    /**
+     * Returns an empty in memory utf-8 destination.
+     */
+    Utf8Writer bytesWriter() {
+        if (bytes == null) {
+            bytes = new Utf8Writer(256);
+        } else {
+            bytes.reset();
+        }
+        return bytes;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * An unsynchronized {@link java.io.StringWriter}.
+     */
+    private static final class TextWriter extends Writer {
+        private final StringBuilder out;
+
+        TextWriter(StringBuilder out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) {
+            out.append((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            out.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            out.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void write(String str) {
+            out.append(str);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import com.baasbox.android.impl.Base64;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A streaming, token level, reader of json content.
+ * <p>
+ * It lets callers map json directly onto their own objects,
+ * without building a {@link com.baasbox.android.json.JsonObject} first.
+ * </p>
+ */
+public abstract class JsonInput implements Closeable {
+// --------------------------- CONSTRUCTORS ---------------------------
+    JsonInput() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Creates a lenient reader of the json content of <code>in</code>.
+     * Utf-8 content is read directly as bytes.
+     *
+     * @param in      the stream to read, it is closed when the reader is closed
+     * @param charset the charset of the content
+     * @return a new reader
+     * @throws UnsupportedEncodingException if the charset is not supported
+     */
+    public static JsonInput open(InputStream in, String charset) throws UnsupportedEncodingException {
+        JsonInput input;
+        if ("UTF-8".equalsIgnoreCase(charset)) {
+            input = new Utf8JsonReader(in);
+        } else {
+            input = new JsonReader(new InputStreamReader(in, charset));
+        }
+        input.setLenient(true);
+        return input;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public abstract boolean isLenient();
+
+    public abstract void setLenient(boolean lenient);
+
+    public abstract JsonToken peek() throws IOException;
+
+    public abstract void beginArray() throws IOException;
+
+    public abstract void endArray() throws IOException;
+
+    public abstract void beginObject() throws IOException;
+
+    public abstract void endObject() throws IOException;
+
+    public abstract boolean hasNext() throws IOException;
+
+    public abstract String nextName() throws IOException;
+
+    public abstract String nextString() throws IOException;
+
+    public abstract boolean nextBoolean() throws IOException;
+
+    public abstract void nextNull() throws IOException;
+
+    public abstract double nextDouble() throws IOException;
+
+    public abstract long nextLong() throws IOException;
+
+    public abstract int nextInt() throws IOException;
+
+    /**
+     * Returns the {@link JsonToken#NUMBER number} value of the next token, consuming it.
+     * Integers that fit in a long are returned as {@link java.lang.Long},
+     * any other number as a {@link java.lang.Double}.
+     *
+     * @throws IllegalStateException if the next token is not a number
+     */
+    public abstract Number nextNumber() throws IOException;
+
+    public abstract void skipValue() throws IOException;
+
+    /**
+     * Decodes the next value, a base64 string, straight into <code>sink</code>
+     * without allocating the decoded bytes.
+     * The sink is not closed.
+     *
+     * @param sink the destination of the decoded bytes
+     * @return the number of decoded bytes
+     * @throws IllegalStateException    if the next value is not a string
+     * @throws IllegalArgumentException if the string is not valid base64
+     */
+    public long nextBinary(OutputStream sink) throws IOException {
+        if (peek() != JsonToken.STRING) {
+            throw new IllegalStateException("Expected a string but was " + peek());
+        }
+        String encoded = nextString();
+        return Base64.decode(encoded, 0, encoded.length(), sink, Base64.NO_WRAP);
+    }
+}
@@ -22,12 +22,13 @@ import com.baasbox.android.BaasRuntimeException;
 import com.baasbox.android.impl.Base64;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
-import java.io.StringWriter;
+import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,42 +50,53 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
             return new JsonObject[size];
         }
     };
-    //todo lazy copying
     //todo choose when to convert binary data to base64
 
+    // taken by adopt before the locks of two objects whose lock order cannot be told
+    private static final Object TIE_LOCK = new Object();
+
     protected Map<String, Object> map;
 
+    /**
+     * True when {@link #map} may be shared with copies of this object: it must be replaced
+     * by a private copy before it is modified.
+     * Only maps of immutable values are shared, so that nested structures obtained before
+     * a copy can never change the copy.
+     */
+    private volatile boolean shared;
+
 // --------------------------- CONSTRUCTORS ---------------------------
     /**
      * Creates a new JsonObject with no mappings
      */
     public JsonObject() {
-        map = new LinkedHashMap<String, Object>();
+        map = new CompactMap();
     }
 
     protected JsonObject(Parcel source) {
         this();
-        source.readMap(map, JsonObject.class.getClassLoader());
+        JsonParcels.readObject(source, map);
     }
 
+    /**
+     * Creates a copy of <code>object</code>.
+     * Mappings of strings, numbers, booleans and nulls are shared until either object is modified,
+     * nested structures are copied the same way.
+     */
     protected JsonObject(JsonObject object) {
-        this();
-        for (Map.Entry<String, Object> e : object) {
-            String key = e.getKey();
-            Object v = e.getValue();
-            if (v == null) {
-                map.put(key, null);
-            } else if (v instanceof JsonArray) {
-                map.put(key, ((JsonArray) v).copy());
-            } else if (v instanceof JsonObject) {
-                map.put(key, ((JsonObject) v).copy());
-            } else if (v instanceof byte[]) {
-                byte[] original = (byte[]) v;
-                byte[] copy = new byte[original.length];
-                System.arraycopy(original, 0, copy, 0, original.length);
-                map.put(key, copy);
+        if (object.map instanceof LazyMap) {
+            // copying does not force decoding, reads modify the lazy map so it is never shared
+            map = ((LazyMap) object.map).copy();
+            return;
+        }
+        synchronized (object) {
+            Map<String, Object> source = object.map;
+            if (immutableValues(source.values())) {
+                object.shared = true;
+                shared = true;
+                map = source;
             } else {
-                map.put(key, v);
+                map = copyOf(source);
             }
         }
     }
@@ -117,6 +129,58 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
         return object;
     }
 
+    /**
+     * Decodes the utf-8 encoded json contained in <code>data</code> lazily:
+     * nested objects, arrays and strings are decoded only when they are first accessed.
+     * <p>
+     * The returned object keeps a reference to <code>data</code>, that must not be modified afterwards.
+     * This is convenient for large responses of which only a few fields are read.
+     * </p>
+     *
+     * @param data the bytes to decode
+     * @return a new JsonObject representation of the content
+     * @throws com.baasbox.android.json.JsonException if the content is not a valid json object
+     */
+    public static JsonObject decodeLazily(byte[] data) {
+        return LazyMap.decode(data, 0, data.length);
+    }
+
+    static boolean immutableValues(Collection<Object> values) {
+        for (Object v : values) {
+            if (v instanceof JsonStructure || v instanceof byte[]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> copyOf(Map<String, Object> source) {
+        Map<String, Object> copy = new CompactMap(source.size());
+        for (Map.Entry<String, Object> e : source.entrySet()) {
+            copy.put(e.getKey(), copyValue(e.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of a value: structures are copied, sharing what they can,
+     * binary data is duplicated.
+     */
+    static Object copyValue(Object v) {
+        if (v instanceof JsonArray) {
+            return ((JsonArray) v).copy();
+        } else if (v instanceof JsonObject) {
+            return ((JsonObject) v).copy();
+        } else if (v instanceof byte[]) {
+            byte[] original = (byte[]) v;
+            byte[] copy = new byte[original.length];
+            System.arraycopy(original, 0, copy, 0, original.length);
+            return copy;
+        } else {
+            return v;
+        }
+    }
+
     private JsonObject putInternal(String name, Object value) {
         if (name == null) throw new IllegalArgumentException("name cannot be null");
         if (value == null) {
@@ -172,7 +236,48 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
         return JsonObject.decodeFully(reader);
     }
 
-    static JsonObject decodeFully(JsonReader r) {
+    /**
+     * Decodes the json content read from <code>reader</code>,
+     * the reader is consumed and closed.
+     *
+     * @param reader the reader to decode
+     * @return a new JsonObject representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonObject decode(Reader reader) {
+        JsonReader r = new JsonReader(reader);
+        r.setLenient(true);
+        return JsonObject.decodeFully(r);
+    }
+
+    /**
+     * Decodes the utf-8 encoded json contained in <code>data</code>.
+     *
+     * @param data the bytes to decode
+     * @return a new JsonObject representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonObject decode(byte[] data) {
+        Utf8JsonReader r = new Utf8JsonReader(data, 0, data.length);
+        r.setLenient(true);
+        return JsonObject.decodeFully(r);
+    }
+
+    /**
+     * Decodes the utf-8 encoded json read from <code>in</code>,
+     * the stream is consumed and closed.
+     *
+     * @param in the stream to decode
+     * @return a new JsonObject representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonObject decode(InputStream in) {
+        Utf8JsonReader r = new Utf8JsonReader(in);
+        r.setLenient(true);
+        return JsonObject.decodeFully(r);
+    }
+
+    static JsonObject decodeFully(JsonInput r) {
         try {
             JsonObject a = JsonObject.decode(r);
             if (r.peek() != JsonToken.END_DOCUMENT) {
@@ -192,7 +297,15 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
         }
     }
 
-    static JsonObject decode(JsonReader reader) {
+    /**
+     * Decodes the object at the current position of <code>reader</code>,
+     * the reader is left after the end of the object.
+     *
+     * @param reader the reader positioned at the beginning of an object
+     * @return a new JsonObject representation of the content
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public static JsonObject decode(JsonInput reader) {
         try {
             JsonToken tok = reader.peek();
             if (tok != JsonToken.BEGIN_OBJECT) throw new JsonException("expected json object");
@@ -220,16 +333,7 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
                         propertyName = null;
                         break;
                     case NUMBER:
-                        String inNum = reader.nextString();
-                        try {
-                            o.put(propertyName, Long.valueOf(inNum));
-                        } catch (NumberFormatException ne) {
-                            try {
-                                o.put(propertyName, Double.valueOf(inNum));
-                            } catch (NumberFormatException ne2) {
-                                o.putNull(propertyName);
-                            }
-                        }
+                        o.putValue(propertyName, reader.nextNumber());
                         propertyName = null;
                         break;
                     case BEGIN_ARRAY:
@@ -337,12 +441,24 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
 
     private void putValue(String name, Object value) {
         if (name == null) throw new IllegalArgumentException("name cannot be null");
+        own();
         map.put(name, value);
-        onModify();
+        onModify(name);
     }
 
     protected void onModify(){
 
+    }
+
+    /**
+     * Invoked after the field <code>name</code> has been set or removed,
+     * with <code>null</code> when the whole content has changed.
+     * The default implementation calls {@link #onModify()}.
+     *
+     * @param name the modified field or <code>null</code>
+     */
+    protected void onModify(String name) {
+        onModify();
     }
 
      /**
@@ -390,23 +506,7 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
 
     @Override
     public String encode() {
-        StringWriter w = new StringWriter();
-        JsonWriter jw = null;
-        try {
-            jw = new JsonWriter(w);
-            encode(jw);
-            return w.toString();
-        } catch (IOException e) {
-            throw new JsonException(e);
-        } finally {
-            if (jw != null) {
-                try {
-                    jw.close();
-                } catch (IOException e) {
-                    // ignored
-                }
-            }
-        }
+        return encodeText();
     }
 
 // ------------------------ INTERFACE METHODS ------------------------
@@ -422,7 +522,12 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
      */
     @Override
     public Iterator<Map.Entry<String, Object>> iterator() {
-        return map.entrySet().iterator();
+        return new MappingIterator<Map.Entry<String, Object>>() {
+            @Override
+            Map.Entry<String, Object> element(Map.Entry<String, Object> mapping) {
+                return new Mapping(mapping);
+            }
+        };
     }
 
 // --------------------- Interface Parcelable ---------------------
@@ -434,7 +539,7 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeMap(map);
+        JsonParcels.writeObject(dest, map);
     }
 
 // -------------------------- OTHER METHODS --------------------------
@@ -446,8 +551,13 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
      */
     @Override
     public JsonObject clear() {
-        map.clear();
-        onModify();
+        if (shared) {
+            map = new CompactMap();
+            shared = false;
+        } else {
+            map.clear();
+        }
+        onModify(null);
         return this;
     }
 
@@ -478,8 +588,8 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
             } else if (v instanceof Double) {
                 w.value((Double) v);
             } else if (v instanceof byte[]) {
-                String encoded = Base64.encodeToString((byte[]) v, Base64.NO_WRAP);
-                w.value(encoded);
+                byte[] binary = (byte[]) v;
+                w.binaryValue(binary, 0, binary.length);
             } else if (v instanceof JsonArray) {
                 ((JsonArray) v).encode(w);
             } else if (v instanceof JsonObject) {
@@ -817,8 +927,11 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
      */
     public JsonObject merge(JsonObject other) {
         if (other == null) return this;
-        map.putAll(other.map);
-        onModify();
+        own();
+        for (Map.Entry<String, Object> e : other.map.entrySet()) {
+            map.put(e.getKey(), copyValue(e.getValue()));
+            onModify(e.getKey());
+        }
         return this;
     }
 
@@ -831,23 +944,107 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
      */
     public JsonObject mergeMissing(JsonObject other) {
         if (other == null) return this;
-        Set<String> fieldNames = other.fields();
-        for (String key : fieldNames) {
-            if (!map.containsKey(key)) {
-                map.put(key, other.map.get(key));
+        own();
+        for (Map.Entry<String, Object> e : other.map.entrySet()) {
+            if (!map.containsKey(e.getKey())) {
+                map.put(e.getKey(), copyValue(e.getValue()));
+                onModify(e.getKey());
             }
         }
-        onModify();
         return this;
     }
 
+    /**
+     * Moves the mappings of <code>source</code> in this object without copying them,
+     * like {@link #merge(JsonObject)} but <code>source</code> is left empty.
+     * An empty object takes over the whole content of <code>source</code>.
+     * <p>
+     * This is meant for objects that have just been decoded and are not referenced elsewhere.
+     * Both objects are locked in the same order whichever adopts the other, so that
+     * two objects adopting each other cannot deadlock.
+     * </p>
+     *
+     * @param source an object to move in
+     * @return this object with the mappings of source
+     */
+    protected JsonObject adopt(JsonObject source) {
+        if (source == null || source == this) return this;
+        int mine = System.identityHashCode(this);
+        int theirs = System.identityHashCode(source);
+        if (mine < theirs) {
+            synchronized (this) {
+                synchronized (source) {
+                    moveIn(source);
+                }
+            }
+        } else if (mine > theirs) {
+            synchronized (source) {
+                synchronized (this) {
+                    moveIn(source);
+                }
+            }
+        } else {
+            synchronized (TIE_LOCK) {
+                synchronized (this) {
+                    synchronized (source) {
+                        moveIn(source);
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    private void moveIn(JsonObject source) {
+        if (map.isEmpty()) {
+            map = source.map;
+            shared = source.shared;
+            onModify(null);
+        } else {
+            own();
+            for (Map.Entry<String, Object> e : source.map.entrySet()) {
+                map.put(e.getKey(), e.getValue());
+                onModify(e.getKey());
+            }
+        }
+        source.map = new CompactMap();
+        source.shared = false;
+    }
+
     /**
      * Returns a {@link java.util.Set} of all the keys contained in this document
      *
      * @return a set of the keys contained in this document
      */
     public Set<String> fields() {
-        return map.keySet();
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new MappingIterator<String>() {
+                    @Override
+                    String element(Map.Entry<String, Object> mapping) {
+                        return mapping.getKey();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return map.containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof String) || !map.containsKey(o)) return false;
+                JsonObject.this.remove((String) o);
+                return true;
+            }
+        };
     }
 
     /**
@@ -912,6 +1109,81 @@ public class JsonObject extends JsonStructure implements Iterable<Map.Entry<Stri
      */
     public Object remove(String name) {
         if (name == null) throw new IllegalArgumentException("name cannot be null");
-        return map.remove(name);
+        own();
+        if (!map.containsKey(name)) return null;
+        Object value = map.remove(name);
+        onModify(name);
+        return value;
+    }
+
+    /**
+     * Replaces a shared map with a private copy, before modifying it.
+     */
+    private void own() {
+        if (!shared) return;
+        synchronized (this) {
+            if (!shared) return;
+            map = new CompactMap(map);
+            shared = false;
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Iterates over the map of this object as it was when the iterator was created,
+     * without copying it even if it is shared: the map is copied only when
+     * an element is removed, and then only the private copy is modified.
+     */
+    private abstract class MappingIterator<E> implements Iterator<E> {
+        private final Map<String, Object> source = map;
+        private final Iterator<Map.Entry<String, Object>> it = source.entrySet().iterator();
+        private String current;
+
+        abstract E element(Map.Entry<String, Object> mapping);
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public E next() {
+            Map.Entry<String, Object> mapping = it.next();
+            current = mapping.getKey();
+            return element(mapping);
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) throw new IllegalStateException();
+            String name = current;
+            current = null;
+            if (map == source && !shared) {
+                it.remove();
+            } else {
+                own();
+                map.remove(name);
+            }
+            onModify(name);
+        }
+    }
+
+    /**
+     * A mapping returned by {@link #iterator()}, setting its value sets it in the object.
+     */
+    private final class Mapping extends AbstractMap.SimpleEntry<String, Object> {
+        private static final long serialVersionUID = 3759649287252421142L;
+
+        Mapping(Map.Entry<String, Object> mapping) {
+            super(mapping);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = super.setValue(value);
+            putValue(getKey(), value);
+            return old;
+        }
     }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes json structures to {@link android.os.Parcel}s with a small type tag per value,
+ * instead of the reflective {@link android.os.Parcel#writeMap(java.util.Map)},
+ * which writes class names for nested structures and boxes every value.
+ * <p>
+ * Nested objects and arrays are written inline. The names of fields are written once
+ * per structure written to the parcel, repeated names are written as an index.
+ * </p>
+ */
+final class JsonParcels {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int BINARY = 6;
+    private static final int OBJECT = 7;
+    private static final int ARRAY = 8;
+
+    private static final int NEW_KEY = -1;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private JsonParcels() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    static void writeObject(Parcel dest, Map<String, Object> map) {
+        new Writer(dest).object(map);
+    }
+
+    static void writeArray(Parcel dest, List<Object> list) {
+        new Writer(dest).array(list);
+    }
+
+    static void readObject(Parcel source, Map<String, Object> into) {
+        new Reader(source).object(into);
+    }
+
+    static void readArray(Parcel source, List<Object> into) {
+        new Reader(source).array(into);
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static final class Writer {
+        private final Parcel dest;
+        private Map<String, Integer> keys;
+
+        Writer(Parcel dest) {
+            this.dest = dest;
+        }
+
+        void object(Map<String, Object> map) {
+            dest.writeInt(map.size());
+            for (Map.Entry<String, Object> e : map.entrySet()) {
+                key(e.getKey());
+                value(e.getValue());
+            }
+        }
+
+        void array(List<Object> list) {
+            dest.writeInt(list.size());
+            for (Object o : list) {
+                value(o);
+            }
+        }
+
+        private void key(String key) {
+            if (keys == null) {
+                keys = new HashMap<String, Integer>();
+            }
+            Integer idx = keys.get(key);
+            if (idx != null) {
+                dest.writeInt(idx);
+            } else {
+                keys.put(key, keys.size());
+                dest.writeInt(NEW_KEY);
+                dest.writeString(key);
+            }
+        }
+
+        private void value(Object v) {
+            if (v == null) {
+                dest.writeInt(NULL);
+            } else if (v instanceof String) {
+                dest.writeInt(STRING);
+                dest.writeString((String) v);
+            } else if (v instanceof Boolean) {
+                dest.writeInt((Boolean) v ? TRUE : FALSE);
+            } else if (v instanceof Long) {
+                dest.writeInt(LONG);
+                dest.writeLong((Long) v);
+            } else if (v instanceof Double) {
+                dest.writeInt(DOUBLE);
+                dest.writeDouble((Double) v);
+            } else if (v instanceof byte[]) {
+                dest.writeInt(BINARY);
+                dest.writeByteArray((byte[]) v);
+            } else if (v instanceof JsonObject) {
+                dest.writeInt(OBJECT);
+                object(((JsonObject) v).map);
+            } else if (v instanceof JsonArray) {
+                dest.writeInt(ARRAY);
+                array(((JsonArray) v).list);
+            } else {
+                throw new JsonException("Not a json value: " + v.getClass());
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final Parcel source;
+        private final List<String> keys = new ArrayList<String>();
+
+        Reader(Parcel source) {
+            this.source = source;
+        }
+
+        void object(Map<String, Object> into) {
+            int size = source.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = key();
+                into.put(key, value());
+            }
+        }
+
+        void array(List<Object> into) {
+            int size = source.readInt();
+            for (int i = 0; i < size; i++) {
+                into.add(value());
+            }
+        }
+
+        private String key() {
+            int idx = source.readInt();
+            if (idx == NEW_KEY) {
+                String key = source.readString();
+                keys.add(key);
+                return key;
+            }
+            return keys.get(idx);
+        }
+
+        private Object value() {
+            int tag = source.readInt();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case LONG:
+                    return Numbers.box(source.readLong());
+                case DOUBLE:
+                    return source.readDouble();
+                case STRING:
+                    return source.readString();
+                case BINARY:
+                    return source.createByteArray();
+                case OBJECT:
+                    JsonObject o = new JsonObject();
+                    object(o.map);
+                    return o;
+                case ARRAY:
+                    JsonArray a = new JsonArray();
+                    array(a.list);
+                    return a;
+                default:
+                    throw new JsonException("Invalid parcel tag " + tag);
+            }
+        }
+    }
+}
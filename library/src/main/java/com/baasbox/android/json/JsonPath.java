@@ -0,0 +1,401 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled path that selects values out of json content.
+ * <p>
+ * Paths start with <code>$</code>, the root, followed by any number of steps:
+ * <code>.name</code> or <code>['name']</code> select a field of an object,
+ * <code>[n]</code> selects an element of an array, <code>.*</code> or <code>[*]</code>
+ * select every field or element. For example <code>$.data[*].author.name</code>
+ * selects the name of the author of every document in a response.
+ * </p>
+ * <p>
+ * A path can be evaluated against a {@link com.baasbox.android.json.JsonStructure},
+ * walking the content without intermediate lookups, or against a {@link com.baasbox.android.json.JsonInput},
+ * where every value outside the path is skipped and only the selected values are decoded.
+ * Paths are immutable and can be shared between threads.
+ * </p>
+ */
+public final class JsonPath {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int MAX_CACHED = 256;
+    private static final ConcurrentHashMap<String, JsonPath> PATHS =
+            new ConcurrentHashMap<String, JsonPath>();
+
+    private static final int NAME = 0;
+    private static final int INDEX = 1;
+    private static final int ANY = 2;
+
+    private final String path;
+    private final int[] kinds;
+    private final String[] names;
+    private final int[] indexes;
+    private final boolean definite;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private JsonPath(String path, List<Object> steps) {
+        this.path = path;
+        int size = steps.size();
+        kinds = new int[size];
+        names = new String[size];
+        indexes = new int[size];
+        boolean definite = true;
+        for (int i = 0; i < size; i++) {
+            Object step = steps.get(i);
+            if (step == null) {
+                kinds[i] = ANY;
+                definite = false;
+            } else if (step instanceof String) {
+                kinds[i] = NAME;
+                names[i] = (String) step;
+            } else {
+                kinds[i] = INDEX;
+                indexes[i] = (Integer) step;
+            }
+        }
+        this.definite = definite;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Compiles <code>path</code>, compiled paths are cached since
+     * paths are usually constants.
+     *
+     * @param path a path expression
+     * @return the compiled path
+     * @throws java.lang.IllegalArgumentException if the expression is not a valid path
+     */
+    public static JsonPath compile(String path) {
+        if (path == null) throw new IllegalArgumentException("path cannot be null");
+        JsonPath compiled = PATHS.get(path);
+        if (compiled == null) {
+            compiled = new JsonPath(path, parse(path));
+            if (PATHS.size() < MAX_CACHED) {
+                JsonPath prev = PATHS.putIfAbsent(path, compiled);
+                if (prev != null) compiled = prev;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Parses the steps of a path: a name, an {@link java.lang.Integer} index
+     * or <code>null</code> for a wildcard.
+     */
+    private static List<Object> parse(String path) {
+        if (path.length() == 0 || path.charAt(0) != '$') {
+            throw invalid(path, "must start with $");
+        }
+        List<Object> steps = new ArrayList<Object>();
+        int len = path.length();
+        int i = 1;
+        while (i < len) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int start = ++i;
+                while (i < len && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                    i++;
+                }
+                if (start == i) throw invalid(path, "empty name at " + start);
+                String name = path.substring(start, i);
+                steps.add("*".equals(name) ? null : name);
+            } else if (c == '[') {
+                int start = ++i;
+                if (i >= len) throw invalid(path, "unclosed [");
+                char q = path.charAt(i);
+                if (q == '\'' || q == '"') {
+                    int end = path.indexOf(q, start + 1);
+                    if (end == -1 || end + 1 >= len || path.charAt(end + 1) != ']') {
+                        throw invalid(path, "unclosed name at " + start);
+                    }
+                    steps.add(path.substring(start + 1, end));
+                    i = end + 2;
+                } else {
+                    int end = path.indexOf(']', start);
+                    if (end == -1) throw invalid(path, "unclosed [ at " + (start - 1));
+                    String index = path.substring(start, end);
+                    if ("*".equals(index)) {
+                        steps.add(null);
+                    } else {
+                        try {
+                            int n = Integer.parseInt(index);
+                            if (n < 0) throw invalid(path, "negative index " + n);
+                            steps.add(n);
+                        } catch (NumberFormatException e) {
+                            throw invalid(path, "invalid index " + index);
+                        }
+                    }
+                    i = end + 1;
+                }
+            } else {
+                throw invalid(path, "unexpected '" + c + "' at " + i);
+            }
+        }
+        return steps;
+    }
+
+    private static IllegalArgumentException invalid(String path, String reason) {
+        return new IllegalArgumentException("invalid path " + path + ": " + reason);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Returns true if this path selects at most one value,
+     * since it has no wildcards.
+     */
+    public boolean isDefinite() {
+        return definite;
+    }
+
+    /**
+     * Returns all the values selected by this path in <code>json</code>,
+     * in document order.
+     * Selected objects and arrays are not copied.
+     *
+     * @param json the content to evaluate, may be <code>null</code>
+     * @return a {@link com.baasbox.android.json.JsonArray} of the selected values, possibly empty
+     */
+    public JsonArray select(JsonStructure json) {
+        JsonArray result = new JsonArray();
+        if (json != null) {
+            collect(json, 0, result.list, false);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first value selected by this path in <code>json</code>.
+     *
+     * @param json the content to evaluate, may be <code>null</code>
+     * @param <T>  the expected type of the value
+     * @return the first selected value or <code>null</code> if nothing matched
+     * @throws com.baasbox.android.json.JsonException if the value is not of the expected type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T selectFirst(JsonStructure json) {
+        if (json == null) return null;
+        List<Object> result = new ArrayList<Object>(1);
+        collect(json, 0, result, true);
+        try {
+            return result.isEmpty() ? null : (T) result.get(0);
+        } catch (ClassCastException e) {
+            throw new JsonException(e);
+        }
+    }
+
+    private boolean collect(Object node, int step, List<Object> out, boolean first) {
+        if (step == kinds.length) {
+            out.add(node);
+            return first;
+        }
+        if (node instanceof JsonObject) {
+            Map<String, Object> map = ((JsonObject) node).map;
+            switch (kinds[step]) {
+                case NAME:
+                    String name = names[step];
+                    Object value = map.get(name);
+                    if (value != null || map.containsKey(name)) {
+                        return collect(value, step + 1, out, first);
+                    }
+                    return false;
+                case ANY:
+                    for (Object v : map.values()) {
+                        if (collect(v, step + 1, out, first)) return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        } else if (node instanceof JsonArray) {
+            List<Object> list = ((JsonArray) node).list;
+            switch (kinds[step]) {
+                case INDEX:
+                    int index = indexes[step];
+                    return index < list.size() && collect(list.get(index), step + 1, out, first);
+                case ANY:
+                    for (Object v : list) {
+                        if (collect(v, step + 1, out, first)) return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the value at the current position of <code>in</code>,
+     * decoding only the values selected by this path.
+     * The reader is left after the end of the value.
+     *
+     * @param in a reader positioned at the beginning of a value
+     * @return a {@link com.baasbox.android.json.JsonArray} of the selected values, possibly empty
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    public JsonArray select(JsonInput in) {
+        JsonArray result = new JsonArray();
+        try {
+            stream(in, 0, result.list, false);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the value at the current position of <code>in</code>,
+     * decoding only the first value selected by this path.
+     * The reader is left after the end of the value.
+     *
+     * @param in  a reader positioned at the beginning of a value
+     * @param <T> the expected type of the value
+     * @return the first selected value or <code>null</code> if nothing matched
+     * @throws com.baasbox.android.json.JsonException if an error happens during parsing of the content
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T selectFirst(JsonInput in) {
+        List<Object> result = new ArrayList<Object>(1);
+        try {
+            stream(in, 0, result, true);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+        try {
+            return result.isEmpty() ? null : (T) result.get(0);
+        } catch (ClassCastException e) {
+            throw new JsonException(e);
+        }
+    }
+
+    /**
+     * Consumes the value at the current position, returns true when
+     * only the first match is needed and it has been found:
+     * elements of arrays following it are skipped without being matched.
+     * The fields of an object are all matched, since a later one may repeat the name
+     * of an earlier one and replace its value.
+     */
+    private boolean stream(JsonInput in, int step, List<Object> out, boolean first) throws IOException {
+        if (step == kinds.length) {
+            out.add(readValue(in));
+            return first;
+        }
+        boolean done = false;
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                if (kinds[step] == INDEX) {
+                    in.skipValue();
+                    return false;
+                }
+                in.beginObject();
+                // a repeated name replaces the values selected through its earlier
+                // occurrence in place, as decoding keeps the last one
+                int mark = out.size();
+                Map<String, List<Object>> fields = kinds[step] == ANY
+                        ? new LinkedHashMap<String, List<Object>>() : null;
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (fields != null) {
+                        List<Object> selected = new ArrayList<Object>(1);
+                        stream(in, step + 1, selected, first);
+                        fields.put(name, selected);
+                    } else if (names[step].equals(name)) {
+                        out.subList(mark, out.size()).clear();
+                        stream(in, step + 1, out, first);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (fields != null) {
+                    for (List<Object> selected : fields.values()) {
+                        out.addAll(selected);
+                    }
+                }
+                return first && out.size() > mark;
+            case BEGIN_ARRAY:
+                if (kinds[step] == NAME) {
+                    in.skipValue();
+                    return false;
+                }
+                in.beginArray();
+                int index = kinds[step] == INDEX ? indexes[step] : -1;
+                int i = 0;
+                while (in.hasNext()) {
+                    if (!done && (index == -1 || index == i)) {
+                        done = stream(in, step + 1, out, first);
+                    } else {
+                        in.skipValue();
+                    }
+                    i++;
+                }
+                in.endArray();
+                return done;
+            case END_DOCUMENT:
+                throw new JsonException("unexpected end of document");
+            default:
+                in.skipValue();
+                return false;
+        }
+    }
+
+    private static Object readValue(JsonInput in) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                return JsonObject.decode(in);
+            case BEGIN_ARRAY:
+                return JsonArray.decode(in);
+            case STRING:
+                return in.nextString();
+            case NUMBER:
+                return in.nextNumber();
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                throw new JsonException("invalid json");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof JsonPath && path.equals(((JsonPath) o).path));
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -16,9 +16,12 @@
 
 package com.baasbox.android.json;
 
-import java.io.Closeable;
+import com.baasbox.android.impl.Base64;
+
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
@@ -173,13 +176,16 @@ import java.util.List;
  * <p>Each {@code JsonReader} may be used to read a single JSON stream. Instances
  * of this class are not thread safe.
  */
-final class JsonReader implements Closeable {
+final class JsonReader extends JsonInput {
 // ------------------------------ FIELDS ------------------------------
 
     private static final String TRUE = "true";
     private static final String FALSE = "false";
 
-    private final StringPool stringPool = new StringPool();
+    private JsonContext context = JsonContext.acquire();
+    private final StringPool stringPool = context.strings();
+    private final KeyTable keys = KeyTable.shared();
+    private final KeyTable.Counter keyCounter = new KeyTable.Counter();
 
     /**
      * The input JSON.
@@ -197,7 +203,7 @@ final class JsonReader implements Closeable {
      * We decode literals directly out of this buffer, so it must be at least as
      * long as the longest token that can be reported as a number.
      */
-    private final char[] buffer = new char[1024];
+    private final char[] buffer = context.readBuffer();
     private int pos = 0;
     private int limit = 0;
 
@@ -228,6 +234,12 @@ final class JsonReader implements Closeable {
     private int valuePos;
     private int valueLength;
 
+    /**
+     * String values are scanned only once they are read: until then this is
+     * the opening quote of the current one, and 0 otherwise.
+     */
+    private char pendingQuote;
+
     /**
      * True if we're currently handling a skipValue() call.
      */
@@ -308,9 +320,16 @@ final class JsonReader implements Closeable {
      */
     public void close() throws IOException {
         value = null;
+        pendingQuote = 0;
         token = null;
         stack.clear();
         stack.add(JsonScope.CLOSED);
+        keys.record(keyCounter);
+        if (context != null) {
+            JsonContext c = context;
+            context = null;
+            c.release();
+        }
         in.close();
     }
 
@@ -370,6 +389,7 @@ final class JsonReader implements Closeable {
                     }
                     throw syntaxError("Expected EOF");
                 } catch (EOFException e) {
+                    keys.record(keyCounter);
                     return token = JsonToken.END_DOCUMENT; // TODO: avoid throwing here?
                 }
             case CLOSED:
@@ -618,7 +638,7 @@ final class JsonReader implements Closeable {
             case '\'':
                 checkLenient(); // fall-through
             case '"':
-                name = nextString((char) quote);
+                name = nextString((char) quote, true);
                 break;
             default:
                 checkLenient();
@@ -640,10 +660,11 @@ final class JsonReader implements Closeable {
      * not include it in the returned string.
      *
      * @param quote either ' or ".
+     * @param name  true if the string is the name of a field, looked up in the shared {@link KeyTable}.
      * @throws NumberFormatException if any unicode escape sequences are
      *                               malformed.
      */
-    private String nextString(char quote) throws IOException {
+    private String nextString(char quote, boolean name) throws IOException {
         StringBuilder builder = null;
         do {
             /* the index of the first character not yet appended to the builder. */
@@ -655,7 +676,9 @@ final class JsonReader implements Closeable {
                     if (skipping) {
                         return "skipped!";
                     } else if (builder == null) {
-                        return stringPool.get(buffer, start, pos - start - 1);
+                        return name
+                                ? keys.intern(buffer, start, pos - start - 1, keyCounter)
+                                : stringPool.get(buffer, start, pos - start - 1);
                     } else {
                         builder.append(buffer, start, pos - start - 1);
                         return builder.toString();
@@ -823,7 +846,11 @@ final class JsonReader implements Closeable {
             case '\'':
                 checkLenient(); // fall-through
             case '"':
-                value = nextString((char) c);
+                if (skipping) {
+                    value = nextString((char) c, false);
+                } else {
+                    pendingQuote = (char) c;
+                }
                 return token = JsonToken.STRING;
 
             default:
@@ -881,8 +908,12 @@ final class JsonReader implements Closeable {
             value = FALSE;
             return JsonToken.BOOLEAN;
         } else {
-            value = stringPool.get(buffer, valuePos, valueLength);
-            return decodeNumber(buffer, valuePos, valueLength);
+            JsonToken token = decodeNumber(buffer, valuePos, valueLength);
+            if (token == JsonToken.STRING) {
+                value = stringPool.get(buffer, valuePos, valueLength);
+            }
+            // numbers are left in the buffer until consumed
+            return token;
         }
     }
 
@@ -977,13 +1008,61 @@ final class JsonReader implements Closeable {
     private JsonToken advance() throws IOException {
         peek();
 
+        if (pendingQuote != 0) {
+            skipString(pendingQuote);
+            pendingQuote = 0;
+        }
         JsonToken result = token;
         token = null;
         value = null;
+        valuePos = -1;
         name = null;
         return result;
     }
 
+    /**
+     * Skips a string up to and including {@code quote}, without creating it.
+     */
+    private void skipString(char quote) throws IOException {
+        do {
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == quote) {
+                    return;
+                } else if (c == '\\') {
+                    readEscapeCharacter();
+                }
+            }
+        } while (fillBuffer(1));
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Returns the current value, creating it from the buffer if needed.
+     */
+    private String value() throws IOException {
+        if (pendingQuote != 0) {
+            char quote = pendingQuote;
+            pendingQuote = 0;
+            value = nextString(quote, false);
+        }
+        if (value == null && valuePos != -1) {
+            value = stringPool.get(buffer, valuePos, valueLength);
+        }
+        return value;
+    }
+
+    @Override
+    public Number nextNumber() throws IOException {
+        peek();
+        if (token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a number but was " + token);
+        }
+        Number result = value == null ? Numbers.parse(buffer, valuePos, valueLength) : Numbers.parse(value);
+        advance();
+        return result;
+    }
+
     /**
      * Consumes the next token from the JSON stream and asserts that it is the
      * beginning of a new object.
@@ -1046,6 +1125,7 @@ final class JsonReader implements Closeable {
         if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
             throw new IllegalStateException("Expected a double but was " + token);
         }
+        value();
 
         double result = Double.parseDouble(value);
         advance();
@@ -1067,6 +1147,7 @@ final class JsonReader implements Closeable {
         if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
             throw new IllegalStateException("Expected an int but was " + token);
         }
+        value();
 
         int result;
         try {
@@ -1098,6 +1179,7 @@ final class JsonReader implements Closeable {
         if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
             throw new IllegalStateException("Expected a long but was " + token);
         }
+        value();
 
         long result;
         try {
@@ -1160,12 +1242,31 @@ final class JsonReader implements Closeable {
         if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
             throw new IllegalStateException("Expected a string but was " + peek());
         }
+        value();
 
         String result = value;
         advance();
         return result;
     }
 
+    /**
+     * The string is decoded while it is read, across buffer refills.
+     */
+    @Override
+    public long nextBinary(OutputStream sink) throws IOException {
+        if (peek() != JsonToken.STRING) {
+            throw new IllegalStateException("Expected a string but was " + peek());
+        }
+        if (pendingQuote == 0) {
+            return super.nextBinary(sink);
+        }
+        char quote = pendingQuote;
+        pendingQuote = 0;
+        long count = Base64.decode(new StringStream(quote), sink, Base64.NO_WRAP);
+        advance();
+        return count;
+    }
+
     /**
      * Skips the next value recursively. If it is an object or array, all nested
      * elements are skipped. This method is intended for use when the JSON token
@@ -1187,4 +1288,48 @@ final class JsonReader implements Closeable {
             skipping = false;
         }
     }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * The characters of the current string up to its closing quote, which is consumed,
+     * with escapes resolved; characters outside of the ascii range are replaced
+     * with a byte that is not base64.
+     */
+    private final class StringStream extends InputStream {
+        private final char quote;
+        private boolean done;
+
+        StringStream(char quote) {
+            this.quote = quote;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            int n = 0;
+            while (n < len) {
+                if (pos == limit && !fillBuffer(1)) {
+                    throw syntaxError("Unterminated string");
+                }
+                char c = buffer[pos++];
+                if (c == quote) {
+                    done = true;
+                    break;
+                } else if (c == '\\') {
+                    c = readEscapeCharacter();
+                }
+                b[off + n++] = c < 0x80 ? (byte) c : (byte) '*';
+            }
+            return n == 0 && done ? -1 : n;
+        }
+    }
 }
@@ -1,7 +1,12 @@
 package com.baasbox.android.json;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.io.Writer;
 
 /**
  * Represent JSON structured data, either a {@link com.baasbox.android.json.JsonObject}
@@ -40,7 +45,38 @@ public abstract class JsonStructure {
         return decodeFully(r);
     }
 
-    static JsonStructure decodeFully(JsonReader jr) {
+    /**
+     * Decodes a structure from its compact binary encoding,
+     * as written by {@link #encodeBinary(java.io.OutputStream, boolean)}.
+     * The stream may be read past the end of the structure, and it is not closed.
+     *
+     * @param in the stream to read
+     * @return the decoded {@link JsonObject} or {@link JsonArray}
+     * @throws IOException if the stream fails or ends before the structure
+     * @throws com.baasbox.android.json.JsonException if the content is not valid binary json
+     */
+    public static JsonStructure decodeBinary(InputStream in) throws IOException {
+        if (in == null) throw new IllegalArgumentException("in cannot be null");
+        return BinaryJson.decode(in, -1);
+    }
+
+    /**
+     * Decodes a structure from its compact binary encoding.
+     *
+     * @param data the encoded bytes
+     * @return the decoded {@link JsonObject} or {@link JsonArray}
+     * @throws com.baasbox.android.json.JsonException if the content is not valid binary json
+     */
+    public static JsonStructure decodeBinary(byte[] data) {
+        if (data == null) throw new IllegalArgumentException("data cannot be null");
+        try {
+            return BinaryJson.decode(new ByteArrayInputStream(data), data.length);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+
+    static JsonStructure decodeFully(JsonInput jr) {
         try {
             JsonToken t = jr.peek();
             switch (t) {
@@ -100,6 +136,112 @@ public abstract class JsonStructure {
      */
     public abstract String encode();
 
+    /**
+     * Writes the json representation of this structure to <code>out</code>.
+     * The writer is flushed but not closed.
+     *
+     * @param out the destination writer
+     * @throws IOException if the writer fails
+     */
+    public final void encode(Writer out) throws IOException {
+        JsonContext context = JsonContext.acquire();
+        try {
+            JsonWriter w = context.writer(out);
+            encode(w);
+            w.flush();
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Writes the utf-8 encoded json representation of this structure to <code>out</code>,
+     * without going through a charset encoder.
+     * The stream is flushed but not closed.
+     *
+     * @param out the destination stream
+     * @throws IOException if the stream fails
+     */
+    public final void encode(OutputStream out) throws IOException {
+        Utf8Writer u = new Utf8Writer(out);
+        JsonContext context = JsonContext.acquire();
+        try {
+            encode(context.writer(u));
+        } finally {
+            context.release();
+            u.finish();
+        }
+    }
+
+    /**
+     * Encodes this structure to its utf-8 encoded json representation.
+     *
+     * @return the encoded bytes
+     */
+    public final byte[] encodeBytes() {
+        JsonContext context = JsonContext.acquire();
+        try {
+            Utf8Writer u = context.bytesWriter();
+            encode(context.writer(u));
+            return u.toByteArray();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Encodes this structure to its json text, through the writer and the buffer
+     * of the calling thread's {@link com.baasbox.android.json.JsonContext}.
+     */
+    final String encodeText() {
+        JsonContext context = JsonContext.acquire();
+        try {
+            encode(context.writer(context.textWriter()));
+            return context.text();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Writes the compact binary encoding of this structure to <code>out</code>.
+     * <p>
+     * Numbers keep their type, binary values are stored raw rather than as base64 text,
+     * and with <code>keyDictionary</code> each field name is stored once and then referenced,
+     * which pays off with lists of objects that share their fields.
+     * The stream is flushed but not closed.
+     * </p>
+     *
+     * @param out           the destination stream
+     * @param keyDictionary true to store repeated field names once
+     * @throws IOException if the stream fails
+     */
+    public final void encodeBinary(OutputStream out, boolean keyDictionary) throws IOException {
+        if (out == null) throw new IllegalArgumentException("out cannot be null");
+        BinaryJson.encode(this, out, keyDictionary);
+    }
+
+    /**
+     * Encodes this structure in the compact binary encoding, using a key dictionary.
+     *
+     * @return the encoded bytes
+     */
+    public final byte[] encodeBinary() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            BinaryJson.encode(this, out, true);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+        return out.toByteArray();
+    }
+
+    abstract void encode(JsonWriter w) throws IOException;
+
     /**
      * Checks if this structure is a {@link JsonArray}
      *
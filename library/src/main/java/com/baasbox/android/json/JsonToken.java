@@ -19,35 +19,35 @@ package com.baasbox.android.json;
 /**
  * A structure, name or value type in a JSON-encoded string.
  */
-enum JsonToken {
+public enum JsonToken {
     /**
      * The opening of a JSON array. Written using {@link JsonWriter#beginObject}
-     * and read using {@link JsonReader#beginObject}.
+     * and read using {@link JsonInput#beginObject}.
      */
     BEGIN_ARRAY,
 
     /**
      * The closing of a JSON array. Written using {@link JsonWriter#endArray}
-     * and read using {@link JsonReader#endArray}.
+     * and read using {@link JsonInput#endArray}.
      */
     END_ARRAY,
 
     /**
      * The opening of a JSON object. Written using {@link JsonWriter#beginObject}
-     * and read using {@link JsonReader#beginObject}.
+     * and read using {@link JsonInput#beginObject}.
      */
     BEGIN_OBJECT,
 
     /**
      * The closing of a JSON object. Written using {@link JsonWriter#endObject}
-     * and read using {@link JsonReader#endObject}.
+     * and read using {@link JsonInput#endObject}.
      */
     END_OBJECT,
 
     /**
      * A JSON property name. Within objects, tokens alternate between names and
      * their values. Written using {@link JsonWriter#name} and read using {@link
-     * JsonReader#nextName}
+     * JsonInput#nextName}
      */
     NAME,
 
@@ -74,7 +74,7 @@ enum JsonToken {
 
     /**
      * The end of the JSON stream. This sentinel value is returned by {@link
-     * JsonReader#peek()} to signal that the JSON-encoded value has no more
+     * JsonInput#peek()} to signal that the JSON-encoded value has no more
      * tokens.
      */
     END_DOCUMENT
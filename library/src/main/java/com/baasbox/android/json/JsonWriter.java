@@ -16,8 +16,11 @@
 
 package com.baasbox.android.json;
 
+import com.baasbox.android.impl.Base64;
+
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
@@ -120,10 +123,29 @@ import java.util.List;
 final class JsonWriter implements Closeable {
 // ------------------------------ FIELDS ------------------------------
 
+    /**
+     * The replacements of the characters below 0x20, of '"' and of '\\',
+     * null for the characters written as they are.
+     */
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\f'] = "\\f";
+    }
+
     /**
      * The output data, containing at most one top-level array or object.
      */
-    private final Writer out;
+    private Writer out;
 
     private final List<JsonScope> stack = new ArrayList<JsonScope>();
 
@@ -157,6 +179,19 @@ final class JsonWriter implements Closeable {
         stack.add(JsonScope.EMPTY_DOCUMENT);
     }
 
+    /**
+     * Makes this writer ready to write a new document to <code>out</code>,
+     * with the default settings, so that it can be reused.
+     */
+    void reset(Writer out) {
+        this.out = out;
+        stack.clear();
+        stack.add(JsonScope.EMPTY_DOCUMENT);
+        indent = null;
+        separator = ":";
+        lenient = false;
+    }
+
 // --------------------- GETTER / SETTER METHODS ---------------------
 
     /**
@@ -376,8 +411,11 @@ final class JsonWriter implements Closeable {
     }
 
     private void string(String value) throws IOException {
-        out.write("\"");
-        for (int i = 0, length = value.length(); i < length; i++) {
+        out.write('"');
+        int length = value.length();
+        /* the index of the first character not yet written */
+        int start = 0;
+        for (int i = 0; i < length; i++) {
             char c = value.charAt(i);
 
             /*
@@ -391,48 +429,30 @@ final class JsonWriter implements Closeable {
              * syntax error.
              * http://code.google.com/p/google-gson/issues/detail?id=341
              */
-            switch (c) {
-                case '"':
-                case '\\':
-                    out.write('\\');
-                    out.write(c);
-                    break;
-
-                case '\t':
-                    out.write("\\t");
-                    break;
-
-                case '\b':
-                    out.write("\\b");
-                    break;
-
-                case '\n':
-                    out.write("\\n");
-                    break;
-
-                case '\r':
-                    out.write("\\r");
-                    break;
-
-                case '\f':
-                    out.write("\\f");
-                    break;
-
-                case '\u2028':
-                case '\u2029':
-                    out.write(String.format("\\u%04x", (int) c));
-                    break;
-
-                default:
-                    if (c <= 0x1F) {
-                        out.write(String.format("\\u%04x", (int) c));
-                    } else {
-                        out.write(c);
-                    }
-                    break;
+            String replacement;
+            if (c < ESCAPES.length) {
+                replacement = ESCAPES[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
             }
+            // copy the clean run in one step
+            if (start < i) {
+                out.write(value, start, i - start);
+            }
+            out.write(replacement);
+            start = i + 1;
+        }
+        if (start < length) {
+            out.write(value, start, length - start);
         }
-        out.write("\"");
+        out.write('"');
     }
 
     /**
@@ -468,6 +488,40 @@ final class JsonWriter implements Closeable {
         return this;
     }
 
+    /**
+     * Encodes {@code length} bytes of {@code data} as a base64 string,
+     * written in chunks without building the string.
+     *
+     * @return this writer.
+     */
+    public JsonWriter binaryValue(byte[] data, int offset, int length) throws IOException {
+        if (data == null) {
+            return nullValue();
+        }
+        beforeValue(false);
+        out.write('"');
+        Base64.encode(data, offset, length, out, Base64.NO_WRAP);
+        out.write('"');
+        return this;
+    }
+
+    /**
+     * Encodes the bytes read from {@code data}, until its end, as a base64 string.
+     * The stream is not closed.
+     *
+     * @return this writer.
+     */
+    public JsonWriter binaryValue(InputStream data) throws IOException {
+        if (data == null) {
+            return nullValue();
+        }
+        beforeValue(false);
+        out.write('"');
+        Base64.encode(data, out, Base64.NO_WRAP);
+        out.write('"');
+        return this;
+    }
+
     /**
      * Encodes {@code null}.
      *
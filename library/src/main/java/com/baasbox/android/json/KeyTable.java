@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A process wide table of the names of json object fields.
+ * <p>
+ * Readers look up field names here, so that the same name decoded
+ * by different responses is a single string instance.
+ * The table is bounded: it is direct mapped and a new name replaces the one in its slot.
+ * Seeded names live in a separate table and are never replaced.
+ * </p>
+ * The table is safe to use from multiple threads.
+ */
+public final class KeyTable {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * The names of the fields that BaasBox adds to its objects.
+     */
+    public static final String[] SYSTEM_FIELDS = {
+            "@rid", "@version", "@class", "id", "_author", "_creation_date",
+            "result", "data", "http_code", "bb_code", "message", "user", "name",
+            "roles", "signUpDate", "status", "visibleByTheUser", "visibleByAnonymousUsers",
+            "visibleByRegisteredUsers", "visibleByFriends", "X-BB-SESSION", "fileName",
+            "contentType", "contentLength", "attachedData", "label", "in", "out"
+    };
+
+    private static final int SLOTS = 2048;
+    private static final int SEED_SLOTS = 256;
+    private static final int FLUSH_THRESHOLD = 256;
+
+    private static final KeyTable SHARED = new KeyTable();
+
+    private final AtomicReferenceArray<String> table = new AtomicReferenceArray<String>(SLOTS);
+    private volatile String[] seeds = new String[SEED_SLOTS];
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private KeyTable() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Returns the table shared by all readers.
+     */
+    public static KeyTable shared() {
+        return SHARED;
+    }
+
+    private static int hash(char[] chars, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    private static boolean contentEquals(String s, char[] chars, int start, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Adds the names to the permanent part of the table.
+     * Names that collide with an already seeded one are ignored.
+     *
+     * @param names the names to add
+     */
+    public synchronized void seed(String... names) {
+        String[] next = seeds.clone();
+        for (String name : names) {
+            char[] chars = name.toCharArray();
+            int idx = hash(chars, 0, chars.length) & (SEED_SLOTS - 1);
+            if (next[idx] == null) {
+                next[idx] = name;
+            }
+        }
+        seeds = next;
+    }
+
+    /**
+     * Seeds the names of the fields that BaasBox adds to its objects.
+     */
+    public void seedSystemFields() {
+        seed(SYSTEM_FIELDS);
+    }
+
+    /**
+     * Returns the statistics of the table.
+     */
+    public Stats stats() {
+        int size = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (table.get(i) != null) size++;
+        }
+        for (String s : seeds) {
+            if (s != null) size++;
+        }
+        return new Stats(hits.get(), misses.get(), size);
+    }
+
+    /**
+     * Removes every name that was not seeded and resets the statistics.
+     */
+    public void clear() {
+        for (int i = 0; i < SLOTS; i++) {
+            table.set(i, null);
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Returns the name equal to {@code chars[start, start + length)}
+     * if it is in the table, null otherwise.
+     */
+    String lookup(char[] chars, int start, int length, int hash) {
+        String seeded = seeds[hash & (SEED_SLOTS - 1)];
+        if (seeded != null && contentEquals(seeded, chars, start, length)) {
+            return seeded;
+        }
+        String s = table.get(hash & (SLOTS - 1));
+        if (s != null && contentEquals(s, chars, start, length)) {
+            return s;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name equal to {@code chars[start, start + length)}, adding it if needed.
+     * Hits and misses are counted in the reader's {@code counter} and reported in batches.
+     */
+    String intern(char[] chars, int start, int length, Counter counter) {
+        int hash = hash(chars, start, length);
+        String s = lookup(chars, start, length, hash);
+        if (s != null) {
+            if (++counter.hits + counter.misses >= FLUSH_THRESHOLD) {
+                record(counter);
+            }
+            return s;
+        }
+        counter.misses++;
+        s = new String(chars, start, length);
+        table.set(hash & (SLOTS - 1), s);
+        if (counter.hits + counter.misses >= FLUSH_THRESHOLD) {
+            record(counter);
+        }
+        return s;
+    }
+
+    void record(Counter counter) {
+        if (counter.hits != 0) hits.addAndGet(counter.hits);
+        if (counter.misses != 0) misses.addAndGet(counter.misses);
+        counter.hits = 0;
+        counter.misses = 0;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Hit and miss counts of a single reader.
+     */
+    static final class Counter {
+        int hits;
+        int misses;
+    }
+
+    /**
+     * A snapshot of the usage of the table.
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final int size;
+
+        Stats(long hits, long misses, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+
+        /**
+         * Returns the fraction of lookups that found the name in the table.
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "KeyTable.Stats{hits=" + hits + ", misses=" + misses + ", size=" + size + '}';
+        }
+    }
+}
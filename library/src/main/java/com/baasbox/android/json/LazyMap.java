@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The backing map of a lazily decoded {@link com.baasbox.android.json.JsonObject}.
+ * <p>
+ * Nested objects, arrays and strings are kept as offsets into the utf-8 source
+ * and are decoded the first time they are read, through {@link #get(Object)}
+ * or while iterating, then they replace their raw form.
+ * Numbers, booleans and nulls are decoded during the scan.
+ * </p>
+ * Reads may modify the map, so like any JsonObject it must not be shared between threads.
+ */
+final class LazyMap extends AbstractMap<String, Object> {
+// ------------------------------ FIELDS ------------------------------
+
+    private final CompactMap store;
+    private Set<Map.Entry<String, Object>> entries;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private LazyMap(int capacity) {
+        store = new CompactMap(capacity);
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Decodes the object in {@code data} lazily.
+     */
+    static JsonObject decode(byte[] data, int offset, int length) {
+        Utf8JsonReader r = new Utf8JsonReader(data, offset, length);
+        r.setLenient(true);
+        try {
+            if (r.peek() != JsonToken.BEGIN_OBJECT) throw new JsonException("expected json object");
+            JsonObject o = object(r, data);
+            if (r.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonException("Not a document");
+            }
+            return o;
+        } catch (IOException e) {
+            throw new JsonException(e);
+        } finally {
+            close(r);
+        }
+    }
+
+    private static void close(Utf8JsonReader r) {
+        try {
+            r.close();
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    /**
+     * Scans the object at the current position of {@code r},
+     * recording the position of its members.
+     */
+    private static JsonObject object(Utf8JsonReader r, byte[] data) throws IOException {
+        LazyMap map = new LazyMap(0);
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonToken tok = r.peek();
+            switch (tok) {
+                case NULL:
+                    r.nextNull();
+                    map.store.put(name, null);
+                    break;
+                case BOOLEAN:
+                    map.store.put(name, r.nextBoolean());
+                    break;
+                case NUMBER:
+                    map.store.put(name, r.nextNumber());
+                    break;
+                case STRING:
+                    if (r.hasRawValue()) {
+                        map.store.put(name, new Raw(data, r.rawStart(), r.rawLength(), true));
+                        r.skipValue();
+                    } else {
+                        map.store.put(name, r.nextString());
+                    }
+                    break;
+                case BEGIN_ARRAY:
+                case BEGIN_OBJECT:
+                    int start = r.tokenStart();
+                    r.skipValue();
+                    map.store.put(name, new Raw(data, start, r.position() - start, false));
+                    break;
+                default:
+                    throw new JsonException("invalid json");
+            }
+        }
+        r.endObject();
+        JsonObject o = new JsonObject();
+        o.map = map;
+        return o;
+    }
+
+    /**
+     * Decodes the array at the current position of {@code r},
+     * objects contained in it are decoded lazily.
+     */
+    private static JsonArray array(Utf8JsonReader r, byte[] data) throws IOException {
+        JsonArray arr = new JsonArray();
+        r.beginArray();
+        while (r.hasNext()) {
+            JsonToken tok = r.peek();
+            switch (tok) {
+                case NULL:
+                    r.nextNull();
+                    arr.addNull();
+                    break;
+                case BOOLEAN:
+                    arr.add(r.nextBoolean());
+                    break;
+                case NUMBER:
+                    arr.list.add(r.nextNumber());
+                    break;
+                case STRING:
+                    arr.add(r.nextString());
+                    break;
+                case BEGIN_ARRAY:
+                    arr.add(array(r, data));
+                    break;
+                case BEGIN_OBJECT:
+                    arr.add(object(r, data));
+                    break;
+                default:
+                    throw new JsonException("invalid json");
+            }
+        }
+        r.endArray();
+        return arr;
+    }
+
+    private static Object resolve(Object value) {
+        return value instanceof Raw ? ((Raw) value).decode() : value;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Returns a deep copy of this map, values that are still raw are shared.
+     */
+    LazyMap copy() {
+        LazyMap copy = new LazyMap(store.size());
+        for (Map.Entry<String, Object> e : store.entrySet()) {
+            Object v = e.getValue();
+            copy.store.put(e.getKey(), v instanceof Raw ? v : JsonObject.copyValue(v));
+        }
+        return copy;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = store.get(key);
+        if (value instanceof Raw) {
+            value = ((Raw) value).decode();
+            store.put((String) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return resolve(store.put(key, value));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return resolve(store.remove(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return store.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return store.keySet();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    final Iterator<Map.Entry<String, Object>> it = store.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            Map.Entry<String, Object> e = it.next();
+                            Object value = e.getValue();
+                            if (value instanceof Raw) {
+                                e.setValue(((Raw) value).decode());
+                            }
+                            return e;
+                        }
+
+                        @Override
+                        public void remove() {
+                            it.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return store.size();
+                }
+
+                @Override
+                public void clear() {
+                    store.clear();
+                }
+            };
+        }
+        return entries;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A value not yet decoded: either the content of a string without escapes,
+     * or a whole object or array.
+     */
+    private static final class Raw {
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+        private final boolean string;
+
+        Raw(byte[] data, int offset, int length, boolean string) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.string = string;
+        }
+
+        Object decode() {
+            if (string) {
+                return Utf8JsonReader.decodeString(data, offset, length);
+            }
+            Utf8JsonReader r = new Utf8JsonReader(data, offset, length);
+            r.setLenient(true);
+            try {
+                return r.peek() == JsonToken.BEGIN_OBJECT ? object(r, data) : array(r, data);
+            } catch (IOException e) {
+                throw new JsonException(e);
+            } finally {
+                close(r);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+/**
+ * Decodes json numbers that have already been validated by a reader,
+ * directly from its buffer.
+ * <p>
+ * Integers that fit in a long become {@link java.lang.Long}s, anything else a {@link java.lang.Double}.
+ * Doubles with at most 15 significant digits and a small exponent are computed exactly
+ * with a single multiplication or division, the others go through {@link Double#parseDouble(String)}.
+ * </p>
+ */
+final class Numbers {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final Long[] LONGS = new Long[CACHE_HIGH - CACHE_LOW];
+
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private Numbers() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Returns a boxed long, values in a small range are shared.
+     */
+    static Long box(long value) {
+        if (value >= CACHE_LOW && value < CACHE_HIGH) {
+            int idx = (int) value - CACHE_LOW;
+            Long boxed = LONGS[idx];
+            if (boxed == null) {
+                // racy but harmless: Long is immutable
+                boxed = Long.valueOf(value);
+                LONGS[idx] = boxed;
+            }
+            return boxed;
+        }
+        return Long.valueOf(value);
+    }
+
+    static Number parse(String number) {
+        return parse(number.toCharArray(), 0, number.length());
+    }
+
+    /**
+     * Decodes the valid json number in {@code chars[offset, offset + length)}.
+     */
+    static Number parse(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = chars[i] == '-';
+        if (negative) i++;
+
+        // integer part, accumulated negatively like Long.parseLong
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        boolean fits = true;
+        for (; i < end; i++) {
+            int d = chars[i] - '0';
+            if (d < 0 || d > 9) break;
+            if (fits) {
+                if (result < multmin || result * 10 < limit + d) {
+                    fits = false;
+                } else {
+                    result = result * 10 - d;
+                }
+            }
+        }
+        if (i == end) {
+            if (fits) return box(negative ? result : -result);
+            return Double.parseDouble(new String(chars, offset, length));
+        }
+
+        // fraction and exponent
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        for (int j = negative ? offset + 1 : offset; j < end; j++) {
+            char c = chars[j];
+            if (c == '.') {
+                continue;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            }
+            if (digits > 0 || c != '0') {
+                if (++digits > MAX_EXACT_DIGITS) {
+                    return Double.parseDouble(new String(chars, offset, length));
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            }
+            if (j > i) scale--;
+        }
+        int exponent = 0;
+        int e = i;
+        while (e < end && chars[e] != 'e' && chars[e] != 'E') e++;
+        if (e < end) {
+            int k = e + 1;
+            boolean negativeExponent = chars[k] == '-';
+            if (chars[k] == '-' || chars[k] == '+') k++;
+            for (; k < end; k++) {
+                exponent = exponent * 10 + (chars[k] - '0');
+                if (exponent > 1000) {
+                    return Double.parseDouble(new String(chars, offset, length));
+                }
+            }
+            if (negativeExponent) exponent = -exponent;
+        }
+        exponent += scale;
+        if (mantissa != 0 && (exponent < -22 || exponent > 22)) {
+            return Double.parseDouble(new String(chars, offset, length));
+        }
+        return toDouble(negative, mantissa, exponent);
+    }
+
+    /**
+     * Decodes the valid json number in {@code bytes[offset, offset + length)}.
+     */
+    static Number parse(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        boolean negative = bytes[i] == '-';
+        if (negative) i++;
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        boolean fits = true;
+        for (; i < end; i++) {
+            int d = bytes[i] - '0';
+            if (d < 0 || d > 9) break;
+            if (fits) {
+                if (result < multmin || result * 10 < limit + d) {
+                    fits = false;
+                } else {
+                    result = result * 10 - d;
+                }
+            }
+        }
+        if (i == end) {
+            if (fits) return box(negative ? result : -result);
+            return Double.parseDouble(ascii(bytes, offset, length));
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        for (int j = negative ? offset + 1 : offset; j < end; j++) {
+            byte c = bytes[j];
+            if (c == '.') {
+                continue;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            }
+            if (digits > 0 || c != '0') {
+                if (++digits > MAX_EXACT_DIGITS) {
+                    return Double.parseDouble(ascii(bytes, offset, length));
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            }
+            if (j > i) scale--;
+        }
+        int exponent = 0;
+        int e = i;
+        while (e < end && bytes[e] != 'e' && bytes[e] != 'E') e++;
+        if (e < end) {
+            int k = e + 1;
+            boolean negativeExponent = bytes[k] == '-';
+            if (bytes[k] == '-' || bytes[k] == '+') k++;
+            for (; k < end; k++) {
+                exponent = exponent * 10 + (bytes[k] - '0');
+                if (exponent > 1000) {
+                    return Double.parseDouble(ascii(bytes, offset, length));
+                }
+            }
+            if (negativeExponent) exponent = -exponent;
+        }
+        exponent += scale;
+        if (mantissa != 0 && (exponent < -22 || exponent > 22)) {
+            return Double.parseDouble(ascii(bytes, offset, length));
+        }
+        return toDouble(negative, mantissa, exponent);
+    }
+
+    /**
+     * Exact when the mantissa has at most 15 digits and |exponent| <= 22,
+     * since both operands are then exactly representable.
+     */
+    private static Double toDouble(boolean negative, long mantissa, int exponent) {
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent < 0) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        return negative ? -value : value;
+    }
+
+    private static String ascii(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) bytes[offset + i];
+        }
+        return new String(chars);
+    }
+}
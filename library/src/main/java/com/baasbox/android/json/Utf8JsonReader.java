@@ -0,0 +1,1268 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import com.baasbox.android.impl.Base64;
+import com.baasbox.android.impl.BufferPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link com.baasbox.android.json.JsonInput} that parses utf-8 encoded bytes directly,
+ * from a <code>byte[]</code> or an {@link java.io.InputStream}, without a charset decoder in front.
+ * <p>
+ * The grammar, including the lenient extensions, is the same of {@link com.baasbox.android.json.JsonReader}.
+ * Names and values that are pure ascii are turned into strings with a plain widening copy,
+ * string and number values are decoded only when they are consumed, so skipped values are
+ * never materialized.
+ * </p>
+ */
+final class Utf8JsonReader extends JsonInput {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private JsonContext context = JsonContext.acquire();
+    private final StringPool stringPool = context.strings();
+    private final KeyTable keys = KeyTable.shared();
+    private final KeyTable.Counter keyCounter = new KeyTable.Counter();
+
+    /**
+     * The input JSON, null when reading from an array.
+     */
+    private final InputStream in;
+
+    private boolean lenient = false;
+
+    /**
+     * When reading from a stream this is a pooled buffer, refilled as needed,
+     * when reading from an array it is the array itself, which is never modified.
+     */
+    private byte[] buffer;
+    private final int origin;
+    private int pos;
+    private int limit;
+
+    private int bufferStartLine = 1;
+    private int bufferStartColumn = 1;
+
+    private final List<JsonScope> stack = new ArrayList<JsonScope>();
+
+    private JsonToken token;
+
+    private String name;
+
+    /*
+     * The next value is either already materialized in value, or is
+     * valueLength bytes at valuePos, not yet decoded.
+     */
+    private String value;
+    private int valuePos = -1;
+    private int valueLength;
+
+    /**
+     * When reading from a stream, string values are scanned only once they are read:
+     * until then this is the opening quote of the current one, and 0 otherwise.
+     */
+    private byte pendingQuote;
+
+    private boolean skipping = false;
+
+    /**
+     * Offset of the first byte of the last value token.
+     */
+    private int tokenStart;
+
+    private char[] chars = context.chars();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    /**
+     * Creates a new instance that reads utf-8 json from {@code in}.
+     */
+    Utf8JsonReader(InputStream in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        this.in = in;
+        this.buffer = BufferPool.shared().acquire(BUFFER_SIZE);
+        this.origin = 0;
+    }
+
+    /**
+     * Creates a new instance that reads utf-8 json from
+     * {@code length} bytes of {@code data} starting at {@code offset}.
+     */
+    Utf8JsonReader(byte[] data, int offset, int length) {
+        if (data == null) {
+            throw new NullPointerException("data == null");
+        }
+        if ((offset | length) < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.in = null;
+        this.buffer = data;
+        this.origin = offset;
+        this.pos = offset;
+        this.limit = offset + length;
+        skipBom();
+    }
+
+    {
+        push(JsonScope.EMPTY_DOCUMENT);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    private CharSequence getSnippet() {
+        StringBuilder snippet = new StringBuilder();
+        int from = Math.max(origin, pos - 20);
+        int to = Math.min(limit, pos + 20);
+        for (int i = from; i < to; i++) {
+            snippet.append((char) (buffer[i] & 0xff));
+        }
+        return snippet;
+    }
+
+    @Override
+    public boolean isLenient() {
+        return lenient;
+    }
+
+    @Override
+    public void setLenient(boolean lenient) {
+        this.lenient = lenient;
+    }
+
+// ------------------------ CANONICAL METHODS ------------------------
+
+    @Override
+    public String toString() {
+        return ((Object) this).getClass().getSimpleName() + " near " + getSnippet();
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface AutoCloseable ---------------------
+
+    /**
+     * Closes this JSON reader and the underlying {@link java.io.InputStream}.
+     */
+    @Override
+    public void close() throws IOException {
+        value = null;
+        pendingQuote = 0;
+        token = null;
+        stack.clear();
+        stack.add(JsonScope.CLOSED);
+        keys.record(keyCounter);
+        if (context != null) {
+            JsonContext c = context;
+            context = null;
+            c.keepChars(chars);
+            c.release();
+        }
+        if (in != null) {
+            byte[] b = buffer;
+            buffer = new byte[0];
+            pos = limit = 0;
+            BufferPool.shared().release(b);
+            in.close();
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + peek());
+        }
+        advance();
+    }
+
+    @Override
+    public JsonToken peek() throws IOException {
+        if (token != null) {
+            return token;
+        }
+
+        switch (peekStack()) {
+            case EMPTY_DOCUMENT:
+                replaceTop(JsonScope.NONEMPTY_DOCUMENT);
+                JsonToken firstToken = nextValue();
+                if (!lenient && token != JsonToken.BEGIN_ARRAY && token != JsonToken.BEGIN_OBJECT) {
+                    throw new IOException(
+                            "Expected JSON document to start with '[' or '{' but was " + token);
+                }
+                return firstToken;
+            case EMPTY_ARRAY:
+                return nextInArray(true);
+            case NONEMPTY_ARRAY:
+                return nextInArray(false);
+            case EMPTY_OBJECT:
+                return nextInObject(true);
+            case DANGLING_NAME:
+                return objectValue();
+            case NONEMPTY_OBJECT:
+                return nextInObject(false);
+            case NONEMPTY_DOCUMENT:
+                try {
+                    JsonToken token = nextValue();
+                    if (lenient) {
+                        return token;
+                    }
+                    throw syntaxError("Expected EOF");
+                } catch (EOFException e) {
+                    keys.record(keyCounter);
+                    return token = JsonToken.END_DOCUMENT;
+                }
+            case CLOSED:
+                throw new IllegalStateException("JsonReader is closed");
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private JsonScope peekStack() {
+        return stack.get(stack.size() - 1);
+    }
+
+    private void replaceTop(JsonScope newTop) {
+        stack.set(stack.size() - 1, newTop);
+    }
+
+    @SuppressWarnings("fallthrough")
+    private JsonToken nextInArray(boolean firstElement) throws IOException {
+        if (firstElement) {
+            replaceTop(JsonScope.NONEMPTY_ARRAY);
+        } else {
+            switch (nextNonWhitespace()) {
+                case ']':
+                    pop();
+                    return token = JsonToken.END_ARRAY;
+                case ';':
+                    checkLenient(); // fall-through
+                case ',':
+                    break;
+                default:
+                    throw syntaxError("Unterminated array");
+            }
+        }
+
+        switch (nextNonWhitespace()) {
+            case ']':
+                if (firstElement) {
+                    pop();
+                    return token = JsonToken.END_ARRAY;
+                }
+                // fall-through to handle ",]"
+            case ';':
+            case ',':
+                /* In lenient mode, a 0-length literal means 'null' */
+                checkLenient();
+                pos--;
+                value = "null";
+                return token = JsonToken.NULL;
+            default:
+                pos--;
+                return nextValue();
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (pos < limit || fillBuffer(1)) {
+            int c = buffer[pos++];
+            switch (c) {
+                case '\t':
+                case ' ':
+                case '\n':
+                case '\r':
+                    continue;
+
+                case '/':
+                    if (pos == limit && !fillBuffer(1)) {
+                        return c;
+                    }
+
+                    checkLenient();
+                    switch (buffer[pos]) {
+                        case '*':
+                            pos++;
+                            if (!skipTo("*/")) {
+                                throw syntaxError("Unterminated comment");
+                            }
+                            pos += 2;
+                            continue;
+
+                        case '/':
+                            pos++;
+                            skipToEndOfLine();
+                            continue;
+
+                        default:
+                            return c;
+                    }
+
+                case '#':
+                    checkLenient();
+                    skipToEndOfLine();
+                    continue;
+
+                default:
+                    return c;
+            }
+        }
+
+        throw new EOFException("End of input");
+    }
+
+    /**
+     * Returns true once {@code limit - pos >= minimum}. If the data is
+     * exhausted before that many bytes are available, this returns
+     * false. Arrays are never refilled.
+     */
+    private boolean fillBuffer(int minimum) throws IOException {
+        if (in == null) {
+            return limit - pos >= minimum;
+        }
+        for (int i = 0; i < pos; i++) {
+            if (buffer[i] == '\n') {
+                bufferStartLine++;
+                bufferStartColumn = 1;
+            } else {
+                bufferStartColumn++;
+            }
+        }
+
+        if (limit != pos) {
+            limit -= pos;
+            System.arraycopy(buffer, pos, buffer, 0, limit);
+        } else {
+            limit = 0;
+        }
+
+        pos = 0;
+        int total;
+        while ((total = in.read(buffer, limit, buffer.length - limit)) != -1) {
+            limit += total;
+
+            if (bufferStartLine == 1 && bufferStartColumn == 1) {
+                skipBom();
+            }
+
+            if (limit - pos >= minimum) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipBom() {
+        if (pos == origin && limit - pos >= 3
+                && buffer[pos] == (byte) 0xef
+                && buffer[pos + 1] == (byte) 0xbb
+                && buffer[pos + 2] == (byte) 0xbf) {
+            pos += 3;
+            bufferStartColumn -= 3;
+        }
+    }
+
+    private boolean skipTo(String toFind) throws IOException {
+        outer:
+        for (; pos + toFind.length() <= limit || fillBuffer(toFind.length()); pos++) {
+            for (int c = 0; c < toFind.length(); c++) {
+                if (buffer[pos + c] != toFind.charAt(c)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void skipToEndOfLine() throws IOException {
+        while (pos < limit || fillBuffer(1)) {
+            byte c = buffer[pos++];
+            if (c == '\r' || c == '\n') {
+                break;
+            }
+        }
+    }
+
+    private JsonScope pop() {
+        return stack.remove(stack.size() - 1);
+    }
+
+    private void checkLenient() throws IOException {
+        if (!lenient) {
+            throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+        }
+    }
+
+    private JsonToken objectValue() throws IOException {
+        switch (nextNonWhitespace()) {
+            case ':':
+                break;
+            case '=':
+                checkLenient();
+                if ((pos < limit || fillBuffer(1)) && buffer[pos] == '>') {
+                    pos++;
+                }
+                break;
+            default:
+                throw syntaxError("Expected ':'");
+        }
+
+        replaceTop(JsonScope.NONEMPTY_OBJECT);
+        return nextValue();
+    }
+
+    @SuppressWarnings("fallthrough")
+    private JsonToken nextInObject(boolean firstElement) throws IOException {
+        if (firstElement) {
+            switch (nextNonWhitespace()) {
+                case '}':
+                    pop();
+                    return token = JsonToken.END_OBJECT;
+                default:
+                    pos--;
+            }
+        } else {
+            switch (nextNonWhitespace()) {
+                case '}':
+                    pop();
+                    return token = JsonToken.END_OBJECT;
+                case ';':
+                case ',':
+                    break;
+                default:
+                    throw syntaxError("Unterminated object");
+            }
+        }
+
+        int quote = nextNonWhitespace();
+        switch (quote) {
+            case '\'':
+                checkLenient(); // fall-through
+            case '"':
+                name = nextString((byte) quote, false, true);
+                break;
+            default:
+                checkLenient();
+                pos--;
+                name = nextLiteral(false);
+                if (name.length() == 0) {
+                    throw syntaxError("Expected name");
+                }
+        }
+
+        replaceTop(JsonScope.DANGLING_NAME);
+        return token = JsonToken.NAME;
+    }
+
+    /**
+     * Returns the string up to but not including {@code quote}, unescaping any
+     * character escape sequences encountered along the way. The opening quote
+     * should have already been read. This consumes the closing quote.
+     * <p/>
+     * When {@code defer} is true and the string lies in the buffer without escapes,
+     * its position is recorded in valuePos and valueLength and null is returned.
+     * When {@code name} is true the string is looked up in the shared {@link KeyTable}.
+     */
+    private String nextString(byte quote, boolean defer, boolean name) throws IOException {
+        StringBuilder builder = null;
+        do {
+            int start = pos;
+            while (pos < limit) {
+                byte c = buffer[pos++];
+
+                if (c == quote) {
+                    if (skipping) {
+                        return "skipped!";
+                    } else if (builder == null) {
+                        if (defer) {
+                            valuePos = start;
+                            valueLength = pos - start - 1;
+                            return null;
+                        }
+                        return decode(start, pos - start - 1, name);
+                    } else {
+                        appendDecoded(builder, start, pos - 1);
+                        return builder.toString();
+                    }
+                } else if (c == '\\') {
+                    if (builder == null) {
+                        builder = new StringBuilder();
+                    }
+                    appendDecoded(builder, start, pos - 1);
+                    builder.appendCodePoint(readEscapeCharacter());
+                    start = pos;
+                }
+            }
+
+            if (builder == null) {
+                builder = new StringBuilder();
+            }
+            // keep a multi-byte sequence split by the end of the buffer for the next round
+            int end = completeSequences(start, pos);
+            appendDecoded(builder, start, end);
+            pos = end;
+        } while (fillBuffer(limit - pos + 1));
+
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Returns the code point of the escape sequence following a backslash:
+     * a utf-16 unit for unicode escapes, the whole character when a non ascii one is escaped.
+     */
+    private int readEscapeCharacter() throws IOException {
+        if (pos == limit && !fillBuffer(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+
+        byte escaped = buffer[pos++];
+        switch (escaped) {
+            case 'u':
+                if (pos + 4 > limit && !fillBuffer(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int result = 0;
+                for (int i = pos, end = pos + 4; i < end; i++) {
+                    int digit = Character.digit(buffer[i], 16);
+                    if (digit == -1) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    result = (result << 4) + digit;
+                }
+                pos += 4;
+                return (char) result;
+
+            case 't':
+                return '\t';
+
+            case 'b':
+                return '\b';
+
+            case 'n':
+                return '\n';
+
+            case 'r':
+                return '\r';
+
+            case 'f':
+                return '\f';
+
+            default:
+                if (escaped < 0) {
+                    // an escaped non ascii character: decode its whole sequence as is
+                    pos--;
+                    int lead = escaped & 0xff;
+                    int length = lead >= 0xf0 ? 4 : lead >= 0xe0 ? 3 : lead >= 0xc0 ? 2 : 1;
+                    if (pos + length > limit) {
+                        fillBuffer(length);
+                    }
+                    int end = pos + 1;
+                    int max = Math.min(limit, pos + length);
+                    while (end < max && isContinuation(buffer[end])) {
+                        end++;
+                    }
+                    char[] out = charsFor(length);
+                    int n = decodeUtf8(buffer, pos, end, out, 0);
+                    pos = end;
+                    if (n == 1) {
+                        return out[0];
+                    } else if (n == 2 && Character.isSurrogatePair(out[0], out[1])) {
+                        return Character.toCodePoint(out[0], out[1]);
+                    }
+                    return REPLACEMENT;
+                }
+                return escaped;
+        }
+    }
+
+    /**
+     * Reads the value up to but not including any delimiter characters. This
+     * does not consume the delimiter character.
+     *
+     * @param assignOffsetsOnly true for this method to only set the valuePos
+     *                          and valueLength fields and return a null result. This only works if
+     *                          the literal is short; a string is returned otherwise.
+     */
+    @SuppressWarnings("fallthrough")
+    private String nextLiteral(boolean assignOffsetsOnly) throws IOException {
+        ByteArrayOutputStream overflow = null;
+        valuePos = -1;
+        valueLength = 0;
+        int i = 0;
+
+        findNonLiteralCharacter:
+        while (true) {
+            for (; pos + i < limit; i++) {
+                switch (buffer[pos + i]) {
+                    case '/':
+                    case '\\':
+                    case ';':
+                    case '#':
+                    case '=':
+                        checkLenient(); // fall-through
+                    case '{':
+                    case '}':
+                    case '[':
+                    case ']':
+                    case ':':
+                    case ',':
+                    case ' ':
+                    case '\t':
+                    case '\f':
+                    case '\r':
+                    case '\n':
+                        break findNonLiteralCharacter;
+                }
+            }
+
+            if (in == null || i < buffer.length) {
+                if (fillBuffer(i + 1)) {
+                    continue;
+                } else {
+                    break;
+                }
+            }
+
+            // the literal does not fit in the buffer, it must be an unquoted string
+            if (overflow == null) {
+                overflow = new ByteArrayOutputStream();
+            }
+            overflow.write(buffer, pos, i);
+            valueLength += i;
+            pos += i;
+            i = 0;
+            if (!fillBuffer(1)) {
+                break;
+            }
+        }
+
+        String result;
+        if (assignOffsetsOnly && overflow == null) {
+            valuePos = pos;
+            result = null;
+        } else if (skipping) {
+            result = "skipped!";
+        } else if (overflow == null) {
+            result = decode(pos, i, false);
+        } else {
+            overflow.write(buffer, pos, i);
+            byte[] all = overflow.toByteArray();
+            char[] out = new char[all.length];
+            result = new String(out, 0, decodeUtf8(all, 0, all.length, out, 0));
+        }
+        valueLength += i;
+        pos += i;
+        return result;
+    }
+
+    @SuppressWarnings("fallthrough")
+    private JsonToken nextValue() throws IOException {
+        int c = nextNonWhitespace();
+        tokenStart = pos - 1;
+        switch (c) {
+            case '{':
+                push(JsonScope.EMPTY_OBJECT);
+                return token = JsonToken.BEGIN_OBJECT;
+
+            case '[':
+                push(JsonScope.EMPTY_ARRAY);
+                return token = JsonToken.BEGIN_ARRAY;
+
+            case '\'':
+                checkLenient(); // fall-through
+            case '"':
+                if (in != null && !skipping) {
+                    pendingQuote = (byte) c;
+                } else {
+                    value = nextString((byte) c, true, false);
+                }
+                return token = JsonToken.STRING;
+
+            default:
+                pos--;
+                return readLiteral();
+        }
+    }
+
+    private void push(JsonScope newTop) {
+        stack.add(newTop);
+    }
+
+    private JsonToken readLiteral() throws IOException {
+        value = nextLiteral(true);
+        if (valueLength == 0) {
+            throw syntaxError("Expected literal value");
+        }
+        token = decodeLiteral();
+        if (token == JsonToken.STRING) {
+            checkLenient();
+        }
+        return token;
+    }
+
+    private JsonToken decodeLiteral() throws IOException {
+        if (valuePos == -1) {
+            return JsonToken.STRING;
+        } else if (valueLength == 4 && literalEquals("null")) {
+            value = "null";
+            valuePos = -1;
+            return JsonToken.NULL;
+        } else if (valueLength == 4 && literalEquals(TRUE)) {
+            value = TRUE;
+            valuePos = -1;
+            return JsonToken.BOOLEAN;
+        } else if (valueLength == 5 && literalEquals(FALSE)) {
+            value = FALSE;
+            valuePos = -1;
+            return JsonToken.BOOLEAN;
+        } else {
+            // left undecoded until consumed
+            return decodeNumber(valuePos, valueLength);
+        }
+    }
+
+    private boolean literalEquals(String lowerCase) {
+        for (int i = 0; i < valueLength; i++) {
+            int c = buffer[valuePos + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether the bytes are a JSON number. Numbers are of the
+     * form -12.34e+56. Fractional and exponential parts are optional. Leading
+     * zeroes are not allowed in the value or exponential part, but are allowed
+     * in the fraction.
+     */
+    private JsonToken decodeNumber(int offset, int length) {
+        byte[] b = buffer;
+        int i = offset;
+        int end = offset + length;
+        int c = b[i];
+
+        if (c == '-') {
+            c = ++i < end ? b[i] : -1;
+        }
+
+        if (c == '0') {
+            c = ++i < end ? b[i] : -1;
+        } else if (c >= '1' && c <= '9') {
+            c = ++i < end ? b[i] : -1;
+            while (c >= '0' && c <= '9') {
+                c = ++i < end ? b[i] : -1;
+            }
+        } else {
+            return JsonToken.STRING;
+        }
+
+        if (c == '.') {
+            c = ++i < end ? b[i] : -1;
+            while (c >= '0' && c <= '9') {
+                c = ++i < end ? b[i] : -1;
+            }
+        }
+
+        if (c == 'e' || c == 'E') {
+            c = ++i < end ? b[i] : -1;
+            if (c == '+' || c == '-') {
+                c = ++i < end ? b[i] : -1;
+            }
+            if (c >= '0' && c <= '9') {
+                c = ++i < end ? b[i] : -1;
+                while (c >= '0' && c <= '9') {
+                    c = ++i < end ? b[i] : -1;
+                }
+            } else {
+                return JsonToken.STRING;
+            }
+        }
+
+        return i == end ? JsonToken.NUMBER : JsonToken.STRING;
+    }
+
+    private IOException syntaxError(String message) throws IOException {
+        throw new JsonException(message
+                + " at line " + getLineNumber() + " column " + getColumnNumber());
+    }
+
+    private int getLineNumber() {
+        int result = bufferStartLine;
+        for (int i = origin; i < pos; i++) {
+            if (buffer[i] == '\n') {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private int getColumnNumber() {
+        int result = bufferStartColumn;
+        for (int i = origin; i < pos; i++) {
+            if (buffer[i] == '\n') {
+                result = 1;
+            } else {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private JsonToken advance() throws IOException {
+        peek();
+
+        if (pendingQuote != 0) {
+            skipString(pendingQuote);
+            pendingQuote = 0;
+        }
+        JsonToken result = token;
+        token = null;
+        value = null;
+        valuePos = -1;
+        name = null;
+        return result;
+    }
+
+    /**
+     * Skips a string up to and including {@code quote}, without decoding it.
+     */
+    private void skipString(byte quote) throws IOException {
+        do {
+            while (pos < limit) {
+                byte c = buffer[pos++];
+                if (c == quote) {
+                    return;
+                } else if (c == '\\') {
+                    readEscapeCharacter();
+                }
+            }
+        } while (fillBuffer(1));
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Returns the current value, decoding it from the buffer if needed.
+     */
+    private String value() throws IOException {
+        if (pendingQuote != 0) {
+            byte quote = pendingQuote;
+            pendingQuote = 0;
+            value = nextString(quote, false, false);
+        }
+        if (value == null && valuePos != -1) {
+            value = decode(valuePos, valueLength, false);
+        }
+        return value;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        peek();
+        if (token != JsonToken.BOOLEAN) {
+            throw new IllegalStateException("Expected a boolean but was " + token);
+        }
+
+        boolean result = (value == TRUE);
+        advance();
+        return result;
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a double but was " + token);
+        }
+
+        double result = Double.parseDouble(value());
+        advance();
+        return result;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected an int but was " + token);
+        }
+
+        String v = value();
+        int result;
+        try {
+            result = Integer.parseInt(v);
+        } catch (NumberFormatException ignored) {
+            double asDouble = Double.parseDouble(v); // don't catch this NumberFormatException
+            result = (int) asDouble;
+            if ((double) result != asDouble) {
+                throw new NumberFormatException(v);
+            }
+        }
+
+        advance();
+        return result;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a long but was " + token);
+        }
+
+        String v = value();
+        long result;
+        try {
+            result = Long.parseLong(v);
+        } catch (NumberFormatException ignored) {
+            double asDouble = Double.parseDouble(v); // don't catch this NumberFormatException
+            result = (long) asDouble;
+            if ((double) result != asDouble) {
+                throw new NumberFormatException(v);
+            }
+        }
+
+        advance();
+        return result;
+    }
+
+    @Override
+    public Number nextNumber() throws IOException {
+        peek();
+        if (token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a number but was " + token);
+        }
+        Number result = value == null ? Numbers.parse(buffer, valuePos, valueLength) : Numbers.parse(value);
+        advance();
+        return result;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        peek();
+        if (token != JsonToken.NAME) {
+            throw new IllegalStateException("Expected a name but was " + peek());
+        }
+        String result = name;
+        advance();
+        return result;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        peek();
+        if (token != JsonToken.NULL) {
+            throw new IllegalStateException("Expected null but was " + token);
+        }
+
+        advance();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            throw new IllegalStateException("Expected a string but was " + peek());
+        }
+
+        String result = value();
+        advance();
+        return result;
+    }
+
+    /**
+     * The string is decoded while it is read, across buffer refills,
+     * or right from the array when reading from one.
+     */
+    @Override
+    public long nextBinary(OutputStream sink) throws IOException {
+        if (peek() != JsonToken.STRING) {
+            throw new IllegalStateException("Expected a string but was " + peek());
+        }
+        long count;
+        if (pendingQuote != 0) {
+            byte quote = pendingQuote;
+            pendingQuote = 0;
+            count = Base64.decode(new StringStream(quote), sink, Base64.NO_WRAP);
+        } else if (hasRawValue()) {
+            count = Base64.decode(buffer, valuePos, valueLength, sink, Base64.NO_WRAP);
+        } else {
+            return super.nextBinary(sink);
+        }
+        advance();
+        return count;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        skipping = true;
+        try {
+            int count = 0;
+            do {
+                JsonToken token = advance();
+                if (token == JsonToken.BEGIN_ARRAY || token == JsonToken.BEGIN_OBJECT) {
+                    count++;
+                } else if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+                    count--;
+                }
+            } while (count != 0);
+        } finally {
+            skipping = false;
+        }
+    }
+
+// ------------------------- RAW ACCESS -------------------------
+    /*
+     * Offsets into the source array, used to record values without decoding them.
+     * They are meaningful only when reading from an array.
+     */
+
+    /**
+     * Returns the offset of the first byte of the value that {@link #peek()} returned.
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the offset of the next byte to be read, after {@link #skipValue()}
+     * this is the end of the skipped value.
+     */
+    int position() {
+        return pos;
+    }
+
+    /**
+     * Returns true if the current string value is still undecoded
+     * in {@code [rawStart(), rawStart() + rawLength())}
+     */
+    boolean hasRawValue() {
+        return token == JsonToken.STRING && value == null && valuePos != -1;
+    }
+
+    int rawStart() {
+        return valuePos;
+    }
+
+    int rawLength() {
+        return valueLength;
+    }
+
+// ---------------------------- UTF-8 ----------------------------
+
+    /**
+     * Decodes {@code length} utf-8 bytes of {@code src} that contain no escapes.
+     */
+    static String decodeString(byte[] src, int start, int length) {
+        char[] out = new char[length];
+        return new String(out, 0, decodeUtf8(src, start, start + length, out, 0));
+    }
+
+    private char[] charsFor(int length) {
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        return chars;
+    }
+
+    /**
+     * Decodes {@code length} bytes of the buffer into a pooled string,
+     * names of fields are looked up in the shared {@link KeyTable}.
+     */
+    private String decode(int start, int length, boolean name) {
+        char[] out = charsFor(length);
+        int n = 0;
+        int i = start;
+        int end = start + length;
+        // ascii fast path
+        while (i < end) {
+            byte b = buffer[i];
+            if (b < 0) break;
+            out[n++] = (char) b;
+            i++;
+        }
+        if (i < end) {
+            n = decodeUtf8(buffer, i, end, out, n);
+        }
+        return name ? keys.intern(out, 0, n, keyCounter) : stringPool.get(out, 0, n);
+    }
+
+    private void appendDecoded(StringBuilder builder, int start, int end) {
+        if (end <= start) return;
+        char[] out = charsFor(end - start);
+        builder.append(out, 0, decodeUtf8(buffer, start, end, out, 0));
+    }
+
+    /**
+     * Returns the end of the last complete utf-8 sequence in {@code [start, end)}.
+     */
+    private int completeSequences(int start, int end) {
+        int i = end - 1;
+        int back = 0;
+        while (i >= start && back < 3 && (buffer[i] & 0xc0) == 0x80) {
+            i--;
+            back++;
+        }
+        if (i < start) return end;
+        int lead = buffer[i] & 0xff;
+        int need = lead >= 0xf0 ? 4 : lead >= 0xe0 ? 3 : lead >= 0xc0 ? 2 : 1;
+        return end - i < need ? i : end;
+    }
+
+    /**
+     * Decodes utf-8 bytes in {@code [start, end)} into {@code out} starting at {@code n},
+     * malformed input is replaced with U+FFFD. Never produces more chars than bytes.
+     *
+     * @return the number of chars in {@code out}
+     */
+    private static int decodeUtf8(byte[] src, int start, int end, char[] out, int n) {
+        int i = start;
+        while (i < end) {
+            int b = src[i++] & 0xff;
+            if (b < 0x80) {
+                out[n++] = (char) b;
+            } else if (b < 0xc2) {
+                out[n++] = REPLACEMENT;
+            } else if (b < 0xe0) {
+                if (i < end && isContinuation(src[i])) {
+                    out[n++] = (char) (((b & 0x1f) << 6) | (src[i++] & 0x3f));
+                } else {
+                    out[n++] = REPLACEMENT;
+                }
+            } else if (b < 0xf0) {
+                if (i + 1 < end && isContinuation(src[i]) && isContinuation(src[i + 1])) {
+                    int cp = ((b & 0x0f) << 12) | ((src[i] & 0x3f) << 6) | (src[i + 1] & 0x3f);
+                    i += 2;
+                    out[n++] = cp < 0x800 || (cp >= 0xd800 && cp <= 0xdfff) ? REPLACEMENT : (char) cp;
+                } else {
+                    out[n++] = REPLACEMENT;
+                }
+            } else if (b < 0xf5) {
+                if (i + 2 < end && isContinuation(src[i]) && isContinuation(src[i + 1]) && isContinuation(src[i + 2])) {
+                    int cp = ((b & 0x07) << 18) | ((src[i] & 0x3f) << 12) | ((src[i + 1] & 0x3f) << 6) | (src[i + 2] & 0x3f);
+                    i += 3;
+                    if (cp < 0x10000 || cp > 0x10ffff) {
+                        out[n++] = REPLACEMENT;
+                    } else {
+                        cp -= 0x10000;
+                        out[n++] = (char) (0xd800 + (cp >> 10));
+                        out[n++] = (char) (0xdc00 + (cp & 0x3ff));
+                    }
+                } else {
+                    out[n++] = REPLACEMENT;
+                }
+            } else {
+                out[n++] = REPLACEMENT;
+            }
+        }
+        return n;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * The bytes of the current string up to its closing quote, which is consumed,
+     * with escapes resolved; characters outside of the ascii range are replaced
+     * with a byte that is not base64.
+     */
+    private final class StringStream extends InputStream {
+        private final byte quote;
+        private boolean done;
+
+        StringStream(byte quote) {
+            this.quote = quote;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            int n = 0;
+            while (n < len) {
+                if (pos == limit && !fillBuffer(1)) {
+                    throw syntaxError("Unterminated string");
+                }
+                byte c = buffer[pos++];
+                if (c == quote) {
+                    done = true;
+                    break;
+                } else if (c == '\\') {
+                    int e = readEscapeCharacter();
+                    c = e < 0x80 ? (byte) e : (byte) '*';
+                }
+                b[off + n++] = c;
+            }
+            return n == 0 && done ? -1 : n;
+        }
+    }
+}
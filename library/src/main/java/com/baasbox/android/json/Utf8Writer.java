@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.json;
+
+import com.baasbox.android.impl.BufferPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A writer that encodes characters as utf-8 straight into a byte buffer,
+ * without a charset encoder.
+ * <p>
+ * Runs of ascii characters are copied with a single loop, other characters
+ * are encoded by hand and unpaired surrogates become '?', like {@link java.lang.String#getBytes(String)} does.
+ * When writing to a stream the buffer is borrowed from the shared {@link com.baasbox.android.impl.BufferPool}
+ * and returned by {@link #close()}, otherwise the buffer grows to hold the whole content.
+ * </p>
+ */
+final class Utf8Writer extends Writer {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The destination, null when the content is kept in memory.
+     */
+    private final OutputStream out;
+    private byte[] buffer;
+    private int count;
+    private char highSurrogate;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * Creates a writer that keeps the encoded content in memory.
+     */
+    Utf8Writer(int capacity) {
+        this.out = null;
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Creates a writer that encodes to <code>out</code>.
+     */
+    Utf8Writer(OutputStream out) {
+        this.out = out;
+        this.buffer = BufferPool.shared().acquire(BUFFER_SIZE);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Override
+    public void write(int c) throws IOException {
+        if (count + 4 > buffer.length) {
+            makeRoom(4);
+        }
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (count == buffer.length) {
+                makeRoom(1);
+            }
+            // ascii fast path, bounded by the free space of the buffer
+            int stop = Math.min(end, i + buffer.length - count);
+            byte[] b = buffer;
+            int n = count;
+            while (i < stop) {
+                char c = chars[i];
+                if (c >= 0x80 || highSurrogate != 0) break;
+                b[n++] = (byte) c;
+                i++;
+            }
+            count = n;
+            if (i < stop) {
+                if (count + 4 > buffer.length) {
+                    makeRoom(4);
+                }
+                encode(chars[i++]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (count == buffer.length) {
+                makeRoom(1);
+            }
+            int stop = Math.min(end, i + buffer.length - count);
+            byte[] b = buffer;
+            int n = count;
+            while (i < stop) {
+                char c = str.charAt(i);
+                if (c >= 0x80 || highSurrogate != 0) break;
+                b[n++] = (byte) c;
+                i++;
+            }
+            count = n;
+            if (i < stop) {
+                if (count + 4 > buffer.length) {
+                    makeRoom(4);
+                }
+                encode(str.charAt(i++));
+            }
+        }
+    }
+
+    /**
+     * Encodes a single character, the buffer has room for at least four bytes.
+     */
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (c >= '\uDC00' && c <= '\uDFFF') {
+                int cp = 0x10000 + ((high - 0xD800) << 10) + (c - 0xDC00);
+                buffer[count++] = (byte) (0xf0 | (cp >> 18));
+                buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (cp & 0x3f));
+                return;
+            }
+            buffer[count++] = '?';
+        }
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xc0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (c >= '\uD800' && c <= '\uDBFF') {
+            highSurrogate = c;
+        } else if (c >= '\uDC00' && c <= '\uDFFF') {
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xe0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buffer[count++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void makeRoom(int needed) throws IOException {
+        if (out != null) {
+            out.write(buffer, 0, count);
+            count = 0;
+        } else {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + needed));
+        }
+    }
+
+    /**
+     * Empties an in memory writer, keeping its buffer.
+     */
+    void reset() {
+        count = 0;
+        highSurrogate = 0;
+    }
+
+    /**
+     * Returns the size of the buffer.
+     */
+    int capacity() {
+        return buffer == null ? 0 : buffer.length;
+    }
+
+    /**
+     * Returns the encoded content of an in memory writer.
+     */
+    byte[] toByteArray() {
+        byte[] bytes = Arrays.copyOf(buffer, count + (highSurrogate != 0 ? 1 : 0));
+        if (highSurrogate != 0) {
+            bytes[count] = '?';
+        }
+        return bytes;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Flushes the content and returns the pooled buffer, without closing the stream.
+     * The writer cannot be used afterwards.
+     */
+    void finish() throws IOException {
+        if (out == null || buffer == null) {
+            return;
+        }
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            write('?');
+        }
+        try {
+            flush();
+        } finally {
+            byte[] b = buffer;
+            buffer = null;
+            BufferPool.shared().release(b);
+        }
+    }
+
+    /**
+     * Flushes the content, returns the pooled buffer and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
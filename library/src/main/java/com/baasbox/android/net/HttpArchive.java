@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.net;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary on-disk format shared by {@link com.baasbox.android.net.RecordingClient}
+ * and {@link com.baasbox.android.net.ReplayClient}.
+ * <p>
+ * An archive is a magic header followed by a sequence of entries, each one
+ * holding a request key (method, url and body checksum) and the recorded
+ * response (status, headers and body). Bodies larger than {@link #DEFLATE_THRESHOLD}
+ * are stored deflated when that makes them smaller.
+ * </p>
+ */
+final class HttpArchive {
+// ------------------------------ FIELDS ------------------------------
+
+    private static final int MAGIC = 0x42424152;
+    private static final int VERSION = 1;
+    private static final int DEFLATE_THRESHOLD = 512;
+
+    private static final byte BODY_NONE = 0;
+    private static final byte BODY_RAW = 1;
+    private static final byte BODY_DEFLATED = 2;
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+
+// --------------------------- CONSTRUCTORS ---------------------------
+    private HttpArchive() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void write(DataOutputStream out, Entry entry) throws IOException {
+        out.writeByte(entry.method);
+        out.writeUTF(entry.url);
+        out.writeLong(entry.requestChecksum);
+        out.writeShort(entry.status);
+        out.writeUTF(entry.reason == null ? "" : entry.reason);
+        out.writeShort(entry.headers.length / 2);
+        for (String h : entry.headers) {
+            out.writeUTF(h == null ? "" : h);
+        }
+        writeBody(out, entry.body);
+    }
+
+    private static void writeBody(DataOutputStream out, byte[] body) throws IOException {
+        if (body == null) {
+            out.writeByte(BODY_NONE);
+            return;
+        }
+        if (body.length > DEFLATE_THRESHOLD) {
+            byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                out.writeByte(BODY_DEFLATED);
+                out.writeInt(body.length);
+                out.writeInt(deflated.length);
+                out.write(deflated);
+                return;
+            }
+        }
+        out.writeByte(BODY_RAW);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    static List<Entry> read(File file) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a recorded http archive: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported archive version " + version);
+            }
+            for (;;) {
+                int method = in.read();
+                if (method == -1) break;
+                entries.add(readEntry(in, method));
+            }
+            return entries;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in, int method) throws IOException {
+        String url = in.readUTF();
+        long checksum = in.readLong();
+        int status = in.readUnsignedShort();
+        String reason = in.readUTF();
+        int headerCount = in.readUnsignedShort();
+        String[] headers = new String[headerCount * 2];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = in.readUTF();
+        }
+        byte[] body;
+        switch (in.readByte()) {
+            case BODY_NONE:
+                body = null;
+                break;
+            case BODY_RAW:
+                body = new byte[in.readInt()];
+                in.readFully(body);
+                break;
+            case BODY_DEFLATED:
+                int length = in.readInt();
+                byte[] deflated = new byte[in.readInt()];
+                in.readFully(deflated);
+                body = inflate(deflated, length);
+                break;
+            default:
+                throw new IOException("Corrupted archive entry for " + url);
+        }
+        return new Entry(method, url, checksum, status, reason, headers, body);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[length];
+            int off = 0;
+            while (off < length) {
+                int n = inflater.inflate(out, off, length - off);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("Truncated archive body");
+                }
+                off += n;
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted archive body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        if (in == null) return null;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    static long checksum(byte[] body) {
+        if (body == null || body.length == 0) return 0;
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return crc.getValue();
+    }
+
+    static String key(int method, String url) {
+        return method + " " + url;
+    }
+
+    static String key(int method, String url, long checksum) {
+        return method + " " + url + " " + checksum;
+    }
+
+    static String[] headersOf(HttpResponse response) {
+        Header[] all = response.getAllHeaders();
+        String[] headers = new String[all.length * 2];
+        for (int i = 0; i < all.length; i++) {
+            headers[2 * i] = all[i].getName();
+            headers[2 * i + 1] = all[i].getValue();
+        }
+        return headers;
+    }
+
+    /**
+     * Rebuilds a response from a recorded entry, serving the body from <code>content</code>.
+     */
+    static HttpResponse toResponse(Entry entry, InputStream content) {
+        BasicHttpResponse response = new BasicHttpResponse(
+                new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), entry.status, entry.reason));
+        String contentType = null;
+        for (int i = 0; i < entry.headers.length; i += 2) {
+            String name = entry.headers[i];
+            if (CONTENT_ENCODING.equalsIgnoreCase(name)) {
+                // bodies are stored already decoded
+                continue;
+            }
+            if (CONTENT_TYPE.equalsIgnoreCase(name)) {
+                contentType = entry.headers[i + 1];
+            }
+            response.addHeader(name, entry.headers[i + 1]);
+        }
+        if (entry.body != null) {
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(content);
+            entity.setContentLength(entry.body.length);
+            entity.setContentType(contentType);
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    static final class Entry {
+        final int method;
+        final String url;
+        final long requestChecksum;
+        final int status;
+        final String reason;
+        final String[] headers;
+        final byte[] body;
+
+        Entry(int method, String url, long requestChecksum, int status, String reason, String[] headers, byte[] body) {
+            this.method = method;
+            this.url = url;
+            this.requestChecksum = requestChecksum;
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
@@ -57,7 +57,7 @@ public class HttpRequest {
         return sb.toString();
     }
 
-    private static String methodToString(int method) {
+    static String methodToString(int method) {
         String methodName;
         switch (method) {
             case GET:
@@ -93,9 +93,35 @@ public class OkClient implements RestClient{
         }
     }
 
+    private static class StreamingRequestBody extends RequestBody{
+        MediaType media;
+        StreamingBody body;
+        StreamingRequestBody(String ct,StreamingBody body){
+            this.media=MediaType.parse(ct);
+            this.body=body;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return media;
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            body.writeTo(sink.outputStream());
+        }
+    }
+
     private RequestBody buildBody(String contentType,InputStream bodyData) {
         if (bodyData==null){
             return RequestBody.create(MediaType.parse("application/json;charset=" + charset), "{}");
+        } else if (bodyData instanceof StreamingBody){
+            return new StreamingRequestBody(contentType,(StreamingBody)bodyData);
         } else {
             return new InputRequestBody(contentType,bodyData);
         }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.net;
+
+import android.content.Context;
+
+import com.baasbox.android.BaasBox;
+import com.baasbox.android.BaasException;
+import com.baasbox.android.BaasIOException;
+import com.baasbox.android.BaasRuntimeException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A {@link com.baasbox.android.net.RestClient} that forwards every request to
+ * another client and records each request/response pair in an archive on disk.
+ * <p>
+ * The archive can later be served by a {@link com.baasbox.android.net.ReplayClient},
+ * to exercise the sdk without a live server:
+ * </p>
+ * <pre>
+ *     <code>
+ *     BaasBox.builder(context)
+ *            .setRestClient(new RecordingClient(new OkClient(), archive))
+ *            .init();
+ *     </code>
+ * </pre>
+ */
+public class RecordingClient implements RestClient {
+// ------------------------------ FIELDS ------------------------------
+
+    private final RestClient delegate;
+    private final File archive;
+    private final Object lock = new Object();
+    private DataOutputStream out;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * Creates a new recording client
+     *
+     * @param delegate the client that executes the requests, cannot be null
+     * @param archive  the file recorded exchanges are appended to
+     */
+    public RecordingClient(RestClient delegate, File archive) {
+        if (delegate == null) throw new IllegalArgumentException("delegate cannot be null");
+        if (archive == null) throw new IllegalArgumentException("archive cannot be null");
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface RestClient ---------------------
+
+    @Override
+    public void init(Context context, BaasBox.Config config) {
+        delegate.init(context, config);
+        synchronized (lock) {
+            try {
+                boolean fresh = !archive.exists() || archive.length() == 0;
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(archive, true)));
+                if (fresh) {
+                    HttpArchive.writeHeader(out);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new BaasRuntimeException("Unable to open archive " + archive, e);
+            }
+        }
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws BaasException {
+        try {
+            byte[] requestBody = HttpArchive.readFully(request.body);
+            if (requestBody != null) {
+                request.body = new ByteArrayInputStream(requestBody);
+            }
+            HttpResponse response = delegate.execute(request);
+            HttpEntity entity = response.getEntity();
+            byte[] body = entity == null ? null : HttpArchive.readFully(entity.getContent());
+            HttpArchive.Entry entry = new HttpArchive.Entry(request.method, request.url,
+                    HttpArchive.checksum(requestBody),
+                    response.getStatusLine().getStatusCode(),
+                    response.getStatusLine().getReasonPhrase(),
+                    HttpArchive.headersOf(response), body);
+            append(entry);
+            return HttpArchive.toResponse(entry, body == null ? null : new ByteArrayInputStream(body));
+        } catch (IOException e) {
+            throw new BaasIOException(e);
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private void append(HttpArchive.Entry entry) throws IOException {
+        synchronized (lock) {
+            if (out == null) return;
+            HttpArchive.write(out, entry);
+            out.flush();
+        }
+    }
+
+    /**
+     * Closes the underlying archive, no more exchanges will be recorded.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+                out = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.net;
+
+import android.content.Context;
+
+import com.baasbox.android.BaasBox;
+import com.baasbox.android.BaasException;
+import com.baasbox.android.BaasIOException;
+import com.baasbox.android.BaasRuntimeException;
+import org.apache.http.HttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link com.baasbox.android.net.RestClient} that never touches the network, but
+ * serves the responses recorded by a {@link com.baasbox.android.net.RecordingClient}.
+ * <p>
+ * Requests are matched by method, url and request body; when the body does not match
+ * any recording (eg. multipart boundaries) the first recording with the same method and url is used.
+ * Repeated requests are answered with the recorded responses in order, the last one
+ * is served again once they are exhausted.
+ * </p>
+ * <p>
+ * Latency and bandwidth can be shaped to emulate a real connection:
+ * </p>
+ * <pre>
+ *     <code>
+ *     BaasBox.builder(context)
+ *            .setRestClient(new ReplayClient(archive)
+ *                                .setLatency(150)
+ *                                .setBandwidth(64 * 1024))
+ *            .init();
+ *     </code>
+ * </pre>
+ */
+public class ReplayClient implements RestClient {
+// ------------------------------ FIELDS ------------------------------
+
+    private final File archive;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile Map<String, Recorded> exact;
+    private volatile Map<String, Recorded> loose;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * Creates a new replaying client
+     *
+     * @param archive an archive written by a {@link com.baasbox.android.net.RecordingClient}
+     */
+    public ReplayClient(File archive) {
+        if (archive == null) throw new IllegalArgumentException("archive cannot be null");
+        this.archive = archive;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * Sets the delay before each response is returned, defaults to 0.
+     *
+     * @param millis the latency in milliseconds
+     * @return this client
+     */
+    public ReplayClient setLatency(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("latency cannot be negative");
+        latencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sets the maximum rate at which response bodies are delivered,
+     * 0, the default, means unlimited.
+     *
+     * @param bytesPerSecond the bandwidth in bytes per second
+     * @return this client
+     */
+    public ReplayClient setBandwidth(long bytesPerSecond) {
+        if (bytesPerSecond < 0) throw new IllegalArgumentException("bandwidth cannot be negative");
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface RestClient ---------------------
+
+    @Override
+    public void init(Context context, BaasBox.Config config) {
+        List<HttpArchive.Entry> entries;
+        try {
+            entries = HttpArchive.read(archive);
+        } catch (IOException e) {
+            throw new BaasRuntimeException("Unable to read archive " + archive, e);
+        }
+        Map<String, Recorded> exact = new HashMap<String, Recorded>();
+        Map<String, Recorded> loose = new HashMap<String, Recorded>();
+        for (HttpArchive.Entry e : entries) {
+            record(exact, HttpArchive.key(e.method, e.url, e.requestChecksum), e);
+            record(loose, HttpArchive.key(e.method, e.url), e);
+        }
+        this.exact = exact;
+        this.loose = loose;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws BaasException {
+        if (exact == null) throw new IllegalStateException("client not initialized");
+        try {
+            byte[] requestBody = HttpArchive.readFully(request.body);
+            long checksum = HttpArchive.checksum(requestBody);
+            Recorded recorded = exact.get(HttpArchive.key(request.method, request.url, checksum));
+            if (recorded == null) {
+                recorded = loose.get(HttpArchive.key(request.method, request.url));
+            }
+            if (recorded == null) {
+                // the headers are left out, they carry the session token
+                throw new BaasIOException("No recorded response for "
+                        + HttpRequest.methodToString(request.method) + " " + request.url);
+            }
+            HttpArchive.Entry entry = recorded.next();
+            delay(latencyMillis);
+            InputStream content = null;
+            if (entry.body != null) {
+                content = new ByteArrayInputStream(entry.body);
+                if (bytesPerSecond > 0) {
+                    content = new ThrottledInputStream(content, bytesPerSecond);
+                }
+            }
+            return HttpArchive.toResponse(entry, content);
+        } catch (IOException e) {
+            throw new BaasIOException(e);
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static void record(Map<String, Recorded> index, String key, HttpArchive.Entry entry) {
+        Recorded r = index.get(key);
+        if (r == null) {
+            r = new Recorded();
+            index.put(key, r);
+        }
+        r.entries.add(entry);
+    }
+
+    private static void delay(long millis) throws InterruptedIOException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while replaying");
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static final class Recorded {
+        final List<HttpArchive.Entry> entries = new ArrayList<HttpArchive.Entry>();
+        final AtomicInteger cursor = new AtomicInteger();
+
+        HttpArchive.Entry next() {
+            int i = cursor.getAndIncrement();
+            return entries.get(Math.min(i, entries.size() - 1));
+        }
+    }
+
+    private static final class ThrottledInputStream extends FilterInputStream {
+        private final long bytesPerSecond;
+        private long start = -1;
+        private long delivered;
+
+        ThrottledInputStream(InputStream in, long bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            throttle(1);
+            int b = super.read();
+            if (b != -1) delivered++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            // never hand out more than a tenth of a second worth of data at once
+            int chunk = (int) Math.max(1, Math.min(count, bytesPerSecond / 10));
+            throttle(chunk);
+            int read = super.read(buffer, offset, chunk);
+            if (read > 0) delivered += read;
+            return read;
+        }
+
+        private void throttle(int next) throws InterruptedIOException {
+            long now = System.nanoTime();
+            if (start == -1) start = now;
+            long due = start + ((delivered + next) * 1000000000L) / bytesPerSecond;
+            if (due > now) {
+                delay((due - now) / 1000000L);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2014. BaasBox
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.baasbox.android.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A request body that can write itself directly to the transport.
+ * <p>
+ * {@link com.baasbox.android.net.RestClient}s should check the
+ * {@link com.baasbox.android.net.HttpRequest#body} of a request for this type
+ * and use {@link #writeTo(java.io.OutputStream)}, to avoid copying the content.
+ * Clients that are not aware of it can still consume it as a plain
+ * {@link java.io.InputStream}, at the cost of buffering the whole body.
+ * </p>
+ */
+public abstract class StreamingBody extends InputStream {
+// ------------------------------ FIELDS ------------------------------
+
+    private InputStream buffered;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Returns the length in bytes of this body
+     *
+     * @return the length or -1 if it is not known in advance
+     * @throws IOException
+     */
+    public abstract long contentLength() throws IOException;
+
+    /**
+     * Writes the content of this body to <code>out</code>.
+     * The stream is flushed but not closed.
+     *
+     * @param out the destination stream
+     * @throws IOException
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    private InputStream buffered() throws IOException {
+        if (buffered == null) {
+            long length = contentLength();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int) length : 256);
+            writeTo(out);
+            buffered = new ByteArrayInputStream(out.toByteArray());
+        }
+        return buffered;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return buffered().read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        return buffered().read(buffer, offset, length);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return buffered().skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffered == null ? 0 : buffered.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffered = null;
+    }
+}